@@ -0,0 +1,162 @@
+package elevator;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Dispatches hall calls by the mode of the traffic, which a
+ * {@link TrafficClassifier} detects from the calls the controller reports
+ * (see {@link #record(Elevator[], int, int, int, long)}):
+ * <ul>
+ * <li>inter-floor: the earliest estimated time of arrival, as
+ * {@link EtaDispatch}.
+ * <li>up-peak: lobby return and express zoning. The floors above the lobby
+ * are divided into one zone of consecutive floors per available elevator;
+ * a call above the lobby goes to the elevator of its zone unless another
+ * one arrives more than a second earlier, and idle elevators return to
+ * the lobby (see {@link #getHomeFloor(Elevator[], Elevator)}). Calls at the
+ * lobby go to the earliest elevator, and a lobby passenger who has entered
+ * a destination goes to the elevator of the zone of the destination with
+ * the same slack (see {@link #extraCost(Elevator[], Elevator, int, int)}).
+ * <li>down-peak: sectoring. A down call goes to the elevator of the sector
+ * of its floor, with the same slack, and idle elevators wait at the top of
+ * their sectors. Up calls go to the earliest elevator.
+ * </ul>
+ */
+public class AdaptiveDispatch extends EtaDispatch {
+
+    /**
+     * How much later than the earliest elevator the elevator of the zone of
+     * a call may arrive and still take the call, in milliseconds
+     */
+    public static final long SLACK = 1000;
+    private final TrafficClassifier classifier = new TrafficClassifier();
+
+    /**
+     * Creates the dispatcher for elevators of the given velocity.
+     *
+     * @param velocity the velocity in floors per millisecond, 0 for the
+     * default velocity
+     */
+    public AdaptiveDispatch(double velocity) {
+        super(velocity);
+    }
+
+    @Override
+    public String getName() {
+        return "adaptive";
+    }
+
+    /**
+     * Returns the classifier of the traffic.
+     *
+     * @return the traffic classifier
+     */
+    public TrafficClassifier getClassifier() {
+        return classifier;
+    }
+
+    /**
+     * Reports a new call to the classifier, before it is assigned.
+     */
+    @Override
+    public void record(Elevator[] elevators, int floor, int dir, int target, long now) {
+        classifier.record(floor, dir, now);
+    }
+
+    @Override
+    public Elevator select(Elevator[] elevators, int floor, int dir, Random random) {
+        Elevator best = super.select(elevators, floor, dir, random);
+        TrafficClassifier.Mode mode = classifier.getMode();
+        if (best == null || mode == TrafficClassifier.Mode.INTERFLOOR
+                || (mode == TrafficClassifier.Mode.UP_PEAK && floor == 0)
+                || (mode == TrafficClassifier.Mode.DOWN_PEAK && dir != -1)) {
+            return best;
+        }
+        Elevator zoned = getZoneElevator(elevators, floor);
+        if (zoned != null && eta(zoned, floor, dir) <= eta(best, floor, dir) + SLACK) {
+            return zoned;
+        }
+        return best;
+    }
+
+    /**
+     * Returns the elevator whose zone (up-peak) or sector (down-peak)
+     * contains the given floor: the floors 1 to the top floor are divided
+     * evenly among the elevators that are not stopped, in the order of their
+     * numbers.
+     *
+     * @param elevators the elevators of the building; may contain null slots
+     * @param floor the floor
+     * @return the elevator, or null for the lobby or if all are stopped
+     */
+    public Elevator getZoneElevator(Elevator[] elevators, int floor) {
+        ArrayList<Elevator> available = available(elevators);
+        if (floor <= 0 || available.isEmpty()) {
+            return null;
+        }
+        int topFloor = available.get(0).getTopFloor();
+        return available.get((floor - 1) * available.size() / topFloor);
+    }
+
+    /**
+     * Returns the slack for all but the elevator of the zone of the
+     * destination of a lobby passenger in up-peak, none otherwise.
+     */
+    @Override
+    public double extraCost(Elevator[] elevators, Elevator elevator, int floor, int target) {
+        if (floor != 0 || target <= 0 || classifier.getMode() != TrafficClassifier.Mode.UP_PEAK) {
+            return 0;
+        }
+        Elevator zoned = getZoneElevator(elevators, target);
+        return zoned == null || zoned == elevator ? 0 : SLACK;
+    }
+
+    private static ArrayList<Elevator> available(Elevator[] elevators) {
+        ArrayList<Elevator> available = new ArrayList<>();
+        for (Elevator elevator : elevators) {
+            if (elevator != null && !elevator.isStop()) {
+                available.add(elevator);
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Returns the floor where the given elevator waits when it is idle in
+     * the current mode: the lobby in up-peak, the top of its sector in
+     * down-peak.
+     *
+     * @param elevators the elevators of the building; may contain null slots
+     * @param elevator the idle elevator
+     * @return the floor, or -1 to leave the elevator where it is
+     */
+    @Override
+    public int getHomeFloor(Elevator[] elevators, Elevator elevator) {
+        switch (classifier.getMode()) {
+            case UP_PEAK:
+                return 0;
+            case DOWN_PEAK:
+                int home = -1;
+                for (int floor = 1; floor <= elevator.getTopFloor(); floor++) {
+                    if (getZoneElevator(elevators, floor) == elevator) {
+                        home = floor;
+                    }
+                }
+                return home;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Returns the metrics of the dispatch as " traffic <i>mode</i> switches
+     * <i>count</i>": the current traffic mode and the number of switches.
+     *
+     * @return the metrics
+     */
+    @Override
+    public String getStats() {
+        return " traffic " + classifier.getMode() + " switches " + classifier.getSwitches();
+    }
+}
@@ -0,0 +1,381 @@
+package elevator;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * A self-contained simulated building: the state of its elevators, the
+ * simulator that drives them, the controller that dispatches them and the
+ * ElevatorIO that accepts commands for them, all configured per instance. A
+ * building does not use the static configuration and the static streams of
+ * the Elevators application, so one JVM can run many buildings side by side
+ * (see {@link Buildings}), each with its own clock and its own TCP port.
+ * <p>
+ * A building has no GUI and no RMI interface of its own. A headless
+ * Elevators application runs as one building that reads the standard input
+ * (or its TCP socket) and prints to the standard output.
+ * <p>
+ * A building with a virtual clock and a seed (see {@link #setSeed(long)}) is
+ * deterministic: its inbound commands can be recorded (see
+ * {@link #record(String)}) and replayed as a script with identical positions
+ * and dispatch decisions.
+ */
+public class Building {
+
+    private final String name;
+    private final int numberOfElevators;
+    private final int topFloor;
+    private final FleetState fleet;
+    private final Elevator[] allElevators;
+    private final ElevatorSimulator simulator;
+    private final ElevatorController controller;
+    private final ElevatorIO io;
+    private final boolean virtual;
+    private final SimulationClock clock;
+    private Long seed;
+    private int inPort = 0;
+    private int outPort = 0;
+    private boolean console = false;
+    private boolean virtualThreads = false;
+
+    /**
+     * Creates a building with the given elevators and connects its controller
+     * directly to its ElevatorIO (no TCP socket).
+     *
+     * @param name the name of the building, used for its threads and messages
+     * @param numberOfElevators the number of elevators
+     * @param topFloor the number of the top floor
+     * @param step the movement step of the elevators in floor units per tick
+     * @param fixed true to keep positions as fixed-point numbers
+     * @param rate the number of ticks per second, 0 for as fast as possible
+     * @param virtual true to simulate with a virtual clock
+     */
+    public Building(String name, int numberOfElevators, int topFloor, double step,
+            boolean fixed, double rate, boolean virtual) {
+        this.name = name;
+        this.numberOfElevators = numberOfElevators;
+        this.topFloor = topFloor;
+        this.virtual = virtual;
+        fleet = new FleetState(numberOfElevators, topFloor, fixed);
+        // the controller indexes its elevators by number, hence one more slot
+        allElevators = new Elevator[numberOfElevators + 1];
+        for (int i = 0; i < numberOfElevators; i++) {
+            allElevators[i] = new Elevator(fleet, i + 1);
+        }
+        if (virtual && rate == 0) {
+            rate = ElevatorSimulator.DefaultRate;
+        }
+        clock = virtual ? new VirtualClock(rate) : new WallClock();
+        simulator = new ElevatorSimulator(allElevators, fleet, step, rate, clock);
+        simulator.setName("ElevatorSimulator " + name);
+        controller = new ElevatorController(allElevators, clock);
+        io = new ElevatorIO(this, allElevators, simulator);
+        controller.connect(io);
+        io.setController(controller);
+        io.setClock(clock);
+        simulator.connect(io);
+    }
+
+    /**
+     * Returns the name of the building.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of elevators of the building.
+     *
+     * @return the number of elevators
+     */
+    public int getNumberOfElevators() {
+        return numberOfElevators;
+    }
+
+    /**
+     * Returns the number of the top floor of the building.
+     *
+     * @return the top floor
+     */
+    public int getTopFloor() {
+        return topFloor;
+    }
+
+    /**
+     * Returns the state of the elevators of the building.
+     *
+     * @return the fleet state
+     */
+    public FleetState getFleet() {
+        return fleet;
+    }
+
+    /**
+     * Returns the elevators of the building, indexed by elevator number - 1.
+     *
+     * @return the elevators
+     */
+    public Elevator[] getElevators() {
+        return allElevators;
+    }
+
+    /**
+     * Returns the simulator of the building.
+     *
+     * @return the simulator
+     */
+    public ElevatorSimulator getSimulator() {
+        return simulator;
+    }
+
+    /**
+     * Returns the controller of the building.
+     *
+     * @return the controller
+     */
+    public ElevatorController getController() {
+        return controller;
+    }
+
+    /**
+     * Returns the ElevatorIO of the building.
+     *
+     * @return the ElevatorIO
+     */
+    public ElevatorIO getIO() {
+        return io;
+    }
+
+    /**
+     * Makes the building accept commands from a client that connects to the
+     * given TCP port(s) when started.
+     *
+     * @param inPort the input port number
+     * @param outPort the output port number, may be the same as the input port
+     */
+    public void listen(int inPort, int outPort) {
+        this.inPort = inPort;
+        this.outPort = outPort;
+    }
+
+    /**
+     * Returns the input port of the building, 0 if it does not listen.
+     *
+     * @return the input port
+     */
+    public int getInPort() {
+        return inPort;
+    }
+
+    /**
+     * Returns the output port of the building, 0 if it does not listen.
+     *
+     * @return the output port
+     */
+    public int getOutPort() {
+        return outPort;
+    }
+
+    /**
+     * Makes the building accept commands from the standard input when started
+     * (unless it listens on a TCP port). At most one building of a JVM should
+     * read the standard input.
+     *
+     * @param console true to read the standard input
+     */
+    public void setConsole(boolean console) {
+        this.console = console;
+    }
+
+    /**
+     * Seeds the random choices of the controller. With a virtual clock, also
+     * makes the clock sequential, so that the simulation is deterministic.
+     *
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        controller.setSeed(seed);
+        if (clock instanceof VirtualClock) {
+            ((VirtualClock) clock).setSequential(true);
+        }
+    }
+
+    /**
+     * Makes the controller of the building process the events of every
+     * elevator as an actor on a fixed pool of threads (see
+     * <code>ElevatorController.useActors</code>).
+     *
+     * @param threads the number of threads, 0 for the number of processors
+     */
+    public void useActors(int threads) {
+        controller.useActors(threads);
+    }
+
+    /**
+     * Makes the controller run its queue workers and the reader of the
+     * commands of the building run on virtual threads, if the Java runtime
+     * supports them (see <code>ElevatorController.useVirtualThreads</code>).
+     *
+     * @param virtual true to use virtual threads
+     */
+    public void useVirtualThreads(boolean virtual) {
+        virtualThreads = virtual;
+        controller.useVirtualThreads(virtual);
+    }
+
+    /**
+     * Makes the controller assign an elevator to a passenger who enters a
+     * destination at once (see
+     * <code>ElevatorController.useDestinationDispatch</code>).
+     *
+     * @param destination true for the destination dispatch
+     */
+    public void useDestinationDispatch(boolean destination) {
+        controller.useDestinationDispatch(destination);
+    }
+
+    /**
+     * Makes the controller park elevators that have been idle for the given
+     * time where the next hall call is expected (see
+     * <code>ElevatorController.useParking</code>), for elevators at the
+     * velocity of the simulation.
+     *
+     * @param idleMillis the time an elevator is idle before it is parked in
+     * milliseconds, 0 to leave idle elevators where they are
+     */
+    public void setParking(long idleMillis) {
+        controller.useParking(idleMillis, simulator.getVelocity());
+    }
+
+    /**
+     * Selects the strategy that chooses the elevator for a hall call (see
+     * {@link DispatchStrategy#forName(String, double)}), for elevators at the
+     * velocity of the simulation.
+     *
+     * @param name the name of the strategy, "heuristic", "eta", "adaptive",
+     * "zoned" or "lookahead"
+     * @throws IllegalArgumentException if there is no strategy with the name
+     */
+    public void setDispatch(String name) {
+        controller.setDispatchStrategy(DispatchStrategy.forName(name, simulator.getVelocity()));
+    }
+
+    /**
+     * Makes the controller collect the hall calls of a window of the given
+     * length and assign them jointly (see
+     * <code>ElevatorController.useBatchDispatch</code>), with the default
+     * latency budget.
+     *
+     * @param windowMillis the length of the window in milliseconds, 0 to
+     * assign every call when it is pressed
+     */
+    public void setBatchWindow(long windowMillis) {
+        controller.useBatchDispatch(windowMillis, ElevatorController.DEFAULT_BATCH_BUDGET);
+    }
+
+    /**
+     * Makes the controller move pending hall calls to elevators that can
+     * reach them sooner (see <code>ElevatorController.useReassignment</code>),
+     * with a hysteresis of one door dwell.
+     *
+     * @param periodMillis the period of the pass in milliseconds, 0 to keep
+     * hall calls at their elevators
+     */
+    public void setReassignment(long periodMillis) {
+        controller.useReassignment(periodMillis, EtaDispatch.DWELL);
+    }
+
+    /**
+     * Sets how long the doors stay open when an elevator stops (see
+     * <code>ElevatorController.setDoorDwell</code>).
+     *
+     * @param dwellMillis the dwell in milliseconds
+     * @param minimumDwellMillis the dwell in milliseconds if the elevator has
+     * a call at another floor, at most the dwell
+     * @throws IllegalArgumentException if the minimum dwell is negative or
+     * longer than the dwell
+     */
+    public void setDoorDwell(long dwellMillis, long minimumDwellMillis) {
+        controller.setDoorDwell(dwellMillis, minimumDwellMillis);
+    }
+
+    /**
+     * Records the inbound commands of the building (from its input stream or
+     * script) with their time steps to the given file, preceded by the seed
+     * if the building is seeded. The recording is a script that replays the
+     * run.
+     *
+     * @param fileName the name of the recording
+     * @throws IOException if the file cannot be created
+     */
+    public void record(String fileName) throws IOException {
+        PrintWriter recorder = new PrintWriter(new FileWriter(fileName), true);
+        recorder.println("# recorded by " + name + ": " + numberOfElevators
+                + " elevators, top floor " + topFloor + ", "
+                + simulator.getRate() + " time steps per second");
+        if (seed != null) {
+            recorder.println("# seed " + seed);
+        }
+        io.setRecorder(recorder);
+    }
+
+    /**
+     * Sets whether to print positions of moving elevators.
+     *
+     * @param positionOutput true to print positions
+     */
+    public void setPositionOutput(boolean positionOutput) {
+        simulator.setPositionOutput(positionOutput);
+    }
+
+    /**
+     * Schedules the commands of a script file (see
+     * {@link ElevatorIO#loadScript(String, SimulationClock)}). With a virtual
+     * clock, the building halts when the script is done and the elevators are
+     * idle.
+     *
+     * @param fileName the name of the script file
+     * @throws IOException if the script cannot be read
+     */
+    public void loadScript(String fileName) throws IOException {
+        io.loadScript(fileName, simulator.getClock());
+        simulator.setHaltWhenIdle(virtual);
+    }
+
+    /**
+     * Starts the simulation thread and, if the building listens on a port or
+     * reads the standard input, the i/o thread (a virtual thread if
+     * requested, see {@link #useVirtualThreads(boolean)}).
+     */
+    public void start() {
+        simulator.start();
+        if (inPort > 0 || console) {
+            if (virtualThreads && VirtualThreads.isAvailable()) {
+                VirtualThreads.newThread(name + " io", io, true).start();
+                return;
+            }
+            io.setDaemon(true);
+            io.start();
+        }
+    }
+
+    /**
+     * Stops the simulation of the building.
+     */
+    public void halt() {
+        simulator.halt();
+    }
+
+    /**
+     * Waits until the simulation of the building has halted.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void join() throws InterruptedException {
+        simulator.join();
+    }
+}
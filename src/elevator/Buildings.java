@@ -0,0 +1,192 @@
+package elevator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Runs several independent simulated buildings in one JVM. Each
+ * {@link Building} has its own elevators, simulator, clock and controller,
+ * and accepts commands from a client that connects to its own TCP port: the
+ * first building listens on the base port, the second on the base port + 1,
+ * and so on. Without a base port, the buildings only run their script.
+ * <p>
+ * Usage: <code>java elevator.Buildings [-count n] [-port basePort]
+ * [-number numberOfElevators] [-top topFloor] [-precision value] [-rate value]
+ * [-virtual] [-fixed] [-nopos] [-parallel threads] [-threshold elevators]
+ * [-seed value] [-actors threads] [-vthreads] [-dispatch name] [-batch millis] [-reassign millis] [-dwell millis] [-mindwell millis] [-destination] [-park millis] [-script file]</code>
+ * <p>
+ * The options have the same meaning as for {@link Elevators}, and apply to
+ * all buildings. Defaults to 2 buildings with 5 elevators and the top floor 6.
+ * The application exits when all buildings have halted, i.e. on the "quit"
+ * command from every client or, with <code>-virtual</code>, when every
+ * building has run the script to the end.
+ */
+public class Buildings {
+
+    public static final String USAGE = "USAGE: java elevator.Buildings [-count n] [-port basePort]"
+            + " [-number numberOfElevators] [-top topFloor] [-precision value] [-rate value]"
+            + " [-virtual] [-fixed] [-nopos] [-parallel threads] [-threshold elevators] [-seed value] [-actors threads] [-vthreads] [-dispatch name] [-batch millis] [-reassign millis] [-dwell millis] [-mindwell millis] [-destination] [-park millis] [-script file]";
+
+    public static void main(String[] args) {
+        int count = 2;
+        int port = 0;
+        int numberOfElevators = 5;
+        int topFloor = 6;
+        double step = Elevators.step;
+        double rate = ElevatorSimulator.DefaultRate;
+        boolean virtual = false;
+        boolean fixed = false;
+        boolean posOutput = true;
+        int parallelism = 1;
+        int threshold = ElevatorSimulator.DefaultThreshold;
+        String script = null;
+        Long seed = null;
+        int actors = -1;
+        boolean virtualThreads = false;
+        String dispatch = "heuristic";
+        int batch = 0;
+        int reassign = 0;
+        long dwell = ElevatorController.DEFAULT_DOOR_DWELL;
+        long minDwell = -1;
+        boolean destination = false;
+        int park = 0;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i].toLowerCase()) {
+                    case "-count":
+                        count = Integer.parseInt(args[++i]);
+                        break;
+                    case "-port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "-number":
+                        numberOfElevators = Integer.parseInt(args[++i]);
+                        break;
+                    case "-top":
+                        topFloor = Integer.parseInt(args[++i]);
+                        break;
+                    case "-precision":
+                        step = Double.parseDouble(args[++i]);
+                        break;
+                    case "-rate":
+                        rate = Double.parseDouble(args[++i]);
+                        break;
+                    case "-virtual":
+                        virtual = true;
+                        break;
+                    case "-fixed":
+                        fixed = true;
+                        break;
+                    case "-nopos":
+                        posOutput = false;
+                        break;
+                    case "-parallel":
+                        parallelism = Integer.parseInt(args[++i]);
+                        break;
+                    case "-threshold":
+                        threshold = Integer.parseInt(args[++i]);
+                        break;
+                    case "-seed":
+                        seed = Long.valueOf(args[++i]);
+                        break;
+                    case "-actors":
+                        actors = Integer.parseInt(args[++i]);
+                        break;
+                    case "-vthreads":
+                        virtualThreads = true;
+                        break;
+                    case "-dispatch":
+                        dispatch = args[++i];
+                        break;
+                    case "-batch":
+                        batch = Integer.parseInt(args[++i]);
+                        break;
+                    case "-reassign":
+                        reassign = Integer.parseInt(args[++i]);
+                        break;
+                    case "-dwell":
+                        dwell = Long.parseLong(args[++i]);
+                        break;
+                    case "-mindwell":
+                        minDwell = Long.parseLong(args[++i]);
+                        break;
+                    case "-destination":
+                        destination = true;
+                        break;
+                    case "-park":
+                        park = Integer.parseInt(args[++i]);
+                        break;
+                    case "-script":
+                        script = args[++i];
+                        break;
+                    default:
+                        System.err.println(USAGE);
+                        System.exit(args[i].startsWith("-h") ? 0 : 1);
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("illegal parameters" + Elevators.EOL + USAGE);
+            System.exit(1);
+        }
+        if (count <= 0 || numberOfElevators <= 0 || topFloor < 1 || step <= 0 || rate < 0) {
+            System.err.println("illegal parameters" + Elevators.EOL + USAGE);
+            System.exit(1);
+        }
+        if (fixed && FleetState.toUnits(step) == 0) {
+            System.err.println("precision " + step + " is below the resolution of -fixed"
+                    + Elevators.EOL + USAGE);
+            System.exit(1);
+        }
+        ArrayList<Building> buildings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Building building = new Building("building" + (i + 1), numberOfElevators,
+                    topFloor, step, fixed, rate, virtual);
+            building.getSimulator().setParallelism(parallelism, threshold);
+            building.setPositionOutput(posOutput);
+            if (seed != null) {
+                building.setSeed(seed);
+            }
+            if (actors >= 0) {
+                building.useActors(actors);
+            }
+            building.useVirtualThreads(virtualThreads);
+            building.useDestinationDispatch(destination);
+            try {
+                building.setDispatch(dispatch);
+                building.setBatchWindow(batch);
+                building.setReassignment(reassign);
+                building.setDoorDwell(dwell, minDwell < 0 ? dwell : minDwell);
+                building.setParking(park);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage() + Elevators.EOL + USAGE);
+                System.exit(1);
+            }
+            if (port > 0) {
+                building.listen(port + i, port + i);
+            }
+            if (script != null) {
+                try {
+                    building.loadScript(script);
+                } catch (IOException e) {
+                    System.err.println("Cannot read the script " + script + ". Bye, bye.");
+                    System.exit(1);
+                }
+            }
+            buildings.add(building);
+        }
+        System.err.println("Starting " + count + " buildings with " + numberOfElevators
+                + " elevators and " + (topFloor + 1) + " floors"
+                + (port > 0 ? " on ports " + port + "-" + (port + count - 1) : "")
+                + (virtual ? " (virtual clock)" : ""));
+        for (Building building : buildings) {
+            building.start();
+        }
+        try {
+            for (Building building : buildings) {
+                building.join();
+            }
+        } catch (InterruptedException e) {
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,115 @@
+package elevator;
+
+import java.util.Random;
+
+/**
+ * Chooses the elevator that serves a hall call. The controller claims the
+ * call in its {@link HallCallTable}, asks the strategy for an elevator and
+ * queues the call there (see <code>ElevatorController.pressButton</code>).
+ * A strategy is called concurrently for different calls, while the
+ * elevators move, and should not block. Strategies that learn from the
+ * traffic, keep elevators to zones or send idle elevators home override the
+ * default methods, which the controller calls for every strategy.
+ * <p>
+ * Strategies are selected by name with {@link #forName(String, double)}:
+ * "heuristic" (the default), "eta", "adaptive", "zoned" or "lookahead".
+ */
+public interface DispatchStrategy {
+
+    /**
+     * Chooses the elevator that serves the hall call at the given floor in
+     * the given direction.
+     *
+     * @param elevators the elevators of the building; may contain null slots
+     * @param floor the floor of the call
+     * @param dir the direction of the call, 1 for up and -1 for down
+     * @param random the (possibly seeded) random numbers of the controller,
+     * for strategies that break ties at random
+     * @return the elevator, or null if no elevator can serve the call
+     */
+    Elevator select(Elevator[] elevators, int floor, int dir, Random random);
+
+    /**
+     * Returns the name of the strategy, as accepted by
+     * {@link #forName(String, double)}.
+     *
+     * @return the name
+     */
+    String getName();
+
+    /**
+     * Reports a new call, before it is assigned. Does nothing by default.
+     *
+     * @param elevators the elevators of the building; may contain null slots
+     * @param floor the floor of the call
+     * @param dir the direction of the call, 1 for up and -1 for down
+     * @param target the destination of the passenger, -1 for a hall call
+     * @param time the time of the call in milliseconds of the clock
+     */
+    default void record(Elevator[] elevators, int floor, int dir, int target, long time) {
+    }
+
+    /**
+     * Returns the time the controller adds to the estimated time of arrival
+     * of the given elevator when it assigns or moves a call, e.g. for an
+     * elevator outside the zone of the call. None by default.
+     *
+     * @param elevators the elevators of the building; may contain null slots
+     * @param elevator the elevator
+     * @param floor the floor of the call
+     * @param target the destination of the passenger, -1 for a hall call
+     * @return the time in milliseconds
+     */
+    default double extraCost(Elevator[] elevators, Elevator elevator, int floor, int target) {
+        return 0;
+    }
+
+    /**
+     * Returns the floor where the given elevator waits when it is idle.
+     * None by default.
+     *
+     * @param elevators the elevators of the building; may contain null slots
+     * @param elevator the idle elevator
+     * @return the floor, or -1 to leave the elevator where it is (or to the
+     * parking policy of the controller)
+     */
+    default int getHomeFloor(Elevator[] elevators, Elevator elevator) {
+        return -1;
+    }
+
+    /**
+     * Returns the metrics of the strategy, appended to those of the
+     * controller. Empty by default.
+     *
+     * @return the metrics, each preceded by a blank
+     */
+    default String getStats() {
+        return "";
+    }
+
+    /**
+     * Creates the strategy with the given name.
+     *
+     * @param name "heuristic", "eta", "adaptive", "zoned" or "lookahead"
+     * @param velocity the velocity of the elevators in floors per
+     * millisecond, used to estimate travel times (0 if unknown)
+     * @return the strategy
+     * @throws IllegalArgumentException if there is no strategy with the name
+     */
+    static DispatchStrategy forName(String name, double velocity) {
+        switch (name.toLowerCase()) {
+            case "heuristic":
+                return new HeuristicDispatch();
+            case "eta":
+                return new EtaDispatch(velocity);
+            case "adaptive":
+                return new AdaptiveDispatch(velocity);
+            case "zoned":
+                return new ZonedDispatch(velocity);
+            case "lookahead":
+                return new LookaheadDispatch(velocity);
+            default:
+                throw new IllegalArgumentException("Unknown dispatch strategy " + name);
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package elevator;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.swing.JComponent;
 
@@ -30,6 +30,9 @@ import javax.swing.JComponent;
  * still).
  * <li>The current position of the elevator scale (the level indicator)
  * </ul>
+ * The state components are kept in a {@link FleetState} shared by all
+ * elevators of the building; an object with this class is a view of one
+ * elevator in the fleet state that adds synchronization and range checking.
  *
  * @author Vlad Vlassov, IMIT/KTH, Stockholm, Sweden
  * @version 1.0
@@ -48,23 +51,39 @@ public class Elevator {
      */
     protected Object doorLock = new Object();
     // private fields
-    private int boxdir = 0;
-    private int doordir = 0;
-    private double boxpos = 0;
-    private int scalepos = 0;
-    private int doorstat = DoorStatus.CLOSED;
+    private final FleetState fleet;
+    private final int index;
     private int topFloor = 0;
     private int number = 0;
 
-    private ElevatorObserver currentObserver;
+    private volatile ElevatorObserver currentObserver;
     private final AtomicBoolean stop = new AtomicBoolean();
     private int queueTopFloor = -1;
     private int queueBotFloor = -1;
+    /**
+     * The position of the cabin when the observers were last notified, i.e.
+     * the start of the next movement to check for floor crossings. Only
+     * accessed by the thread that moves the cabin.
+     */
+    private double lastPosition = 0.0;
+    /**
+     * Tolerance for rounding errors of positions: a cabin within this distance
+     * of a floor has reached the floor.
+     */
+    private static final double EPSILON = 1e-6;
 
     private JComponent window;
     private JComponent scale;
 
-    private final ArrayList<ElevatorObserver> observers = new ArrayList();
+    /**
+     * The queued observers, keyed by the floor and the direction of their
+     * buttons. Also the lock of the queue.
+     */
+    private final StopSet<ElevatorObserver> observers;
+    /**
+     * Called when the door stops, i.e. it is completely open or closed
+     */
+    private volatile Runnable doorListener;
 
     /**
      * Constructs an instance of <code>Elevator</code> that represents the
@@ -76,10 +95,30 @@ public class Elevator {
      * <code>Elevator</code>
      */
     public Elevator(int number) {
-        scalepos = 0;
-        boxpos = 0.0;
-        this.topFloor = Elevators.topFloor;
+        this(new FleetState(1, Elevators.topFloor, Elevators.fixed), 0, number);
+    }
+
+    /**
+     * Constructs an instance of <code>Elevator</code> that represents the
+     * elevator with the given number whose state is kept in the given fleet
+     * state at the index (number - 1).
+     *
+     * @param fleet the state of all elevators of the building
+     * @param number the integer number of the elevator represented by this
+     * <code>Elevator</code>
+     */
+    public Elevator(FleetState fleet, int number) {
+        this(fleet, number - 1, number);
+    }
+
+    private Elevator(FleetState fleet, int index, int number) {
+        this.fleet = fleet;
+        this.index = index;
+        this.topFloor = fleet.getTopFloor();
         this.number = number;
+        observers = new StopSet<>(topFloor);
+        fleet.setPosition(index, 0.0);
+        fleet.scale[index] = 0;
     }
 
     /**
@@ -91,85 +130,233 @@ public class Elevator {
      * queued for handling.
      */
     void registerObserver(ElevatorObserver observer) {
+        ElevatorObserver interrupted = null;
         synchronized (observers) {
-            for (ElevatorObserver observer1 : observers) {
-                if (observer1.getButton().getFloor() == observer.getButton().getFloor()
-                        && (observer1.getButton().getDir() == observer.getButton().getDir()
-                        || observers.isEmpty())) {
-                    return;
+            // read once, the queue workers and the door cycle clear it
+            ElevatorObserver current = currentObserver;
+            ElevatorObserver parking = null;
+            if (isParkingStop(current) && isQueued(current)) {
+                // any stop, even another parking stop, replaces the parking stop
+                parking = current;
+                observers.remove(parking, parking.getButton().getFloor(), parking.getButton().getDir());
+                currentObserver = current = null;
+            }
+            if (!observers.add(observer, observer.getButton().getFloor(), observer.getButton().getDir())
+                    && parking == null) {
+                return;
+            }
+            updateQueueBotTopStatus();
+
+            if (current == null) {
+                currentObserver = observer;
+                interrupted = parking;
+            } else {
+                int currentDir = current.getButton().getDir();
+                int currentFloor = current.getButton().getFloor();
+
+                if ((currentDir == observer.getButton().getDir())
+                        && ((currentDir == -1) && (currentFloor < observer.getButton().getFloor())
+                        || ((currentDir == 1) && (currentFloor > observer.getButton().getFloor())))
+                        || (observer.getButton().isPanelButton()
+                        && (!current.getButton().isPanelButton()
+                        || ((currentDir == -1) && observer.getButton().getFloor() - Getpos() > currentFloor - Getpos())
+                        || ((currentDir == 1) && observer.getButton().getFloor() - Getpos() < currentFloor - Getpos())))
+                        || (currentFloor == 0 && observer.getButton().getDir() == -1)) {
+                    currentObserver = observer;
+                    interrupted = current;
+                } else if (observer.getButton().isPanelButton() && current != observer) {
+                    interrupted = current;
                 }
             }
-            observers.add(observer);
-            Collections.sort(observers, Comparable::compareTo);
         }
+        if (interrupted != null) {
+            interrupted.interruptWait();
+        }
+    }
 
-        updateQueueBotTopStatus();
-
-        if (currentObserver == null) {
-            currentObserver = observer;
-            return;
+    private void updateQueueBotTopStatus() {
+        synchronized (observers) {
+            if (observers.isEmpty()) {
+                queueTopFloor = queueBotFloor = getCurrentFloor();
+            } else {
+                queueTopFloor = observers.highestFloor();
+                queueBotFloor = observers.lowestFloor();
+            }
         }
-        int currentDir = currentObserver.getButton().getDir();
-        int currentFloor = currentObserver.getButton().getFloor();
+    }
+
+    /**
+     * Checks whether the given observer is queued. Must be called while
+     * holding the lock of the queue.
+     */
+    private boolean isQueued(ElevatorObserver observer) {
+        return observer != null && observers.contains(observer,
+                observer.getButton().getFloor(), observer.getButton().getDir());
+    }
 
-        if ((currentDir == observer.getButton().getDir())
-                && ((currentDir == -1) && (currentFloor < observer.getButton().getFloor())
-                || ((currentDir == 1) && (currentFloor > observer.getButton().getFloor())))
-                || (observer.getButton().isPanelButton()
-                && (!currentObserver.getButton().isPanelButton()
-                || ((currentDir == -1) && observer.getButton().getFloor() - Getpos() > currentObserver.getButton().getFloor() - Getpos())
-                || ((currentDir == 1) && observer.getButton().getFloor() - Getpos() < currentObserver.getButton().getFloor() - Getpos())))
-                || (currentObserver.getButton().getFloor() == 0 && observer.getButton().getDir() == -1)) {
-            ElevatorObserver tempObserver = currentObserver;
-            currentObserver = observer;
-            tempObserver.interruptWait();
+    /**
+     * Checks whether the given observer is a parking stop: a stop without a
+     * button pressed and without a direction, where the elevator waits for
+     * calls with closed doors (see <code>ElevatorController.useParking</code>).
+     *
+     * @param observer the observer, may be null
+     * @return true if the observer is a parking stop
+     */
+    static boolean isParkingStop(ElevatorObserver observer) {
+        return observer != null && !observer.getButton().isPanelButton()
+                && observer.getButton().getDir() == 0;
+    }
+
+    /**
+     * Checks whether the elevator has nothing to do: no stops queued, or
+     * only the parking stop it is heading for.
+     *
+     * @return true if the elevator is idle
+     */
+    boolean isIdle() {
+        synchronized (observers) {
+            return observers.isEmpty() || isParking();
         }
-        if (observer.getButton().isPanelButton() && currentObserver != observer) {
-            currentObserver.interruptWait();
+    }
+
+    /**
+     * Checks whether the elevator is heading for a parking stop, which any
+     * other stop replaces. The dispatch strategies treat such an elevator as
+     * idle.
+     *
+     * @return true if the elevator is parking
+     */
+    boolean isParking() {
+        synchronized (observers) {
+            ElevatorObserver current = currentObserver;
+            return isParkingStop(current) && isQueued(current) && observers.size() == 1;
         }
+    }
 
+    /**
+     * Counts the floors between the given floors where the elevator has
+     * queued stops.
+     *
+     * @param from the lowest floor, inclusive
+     * @param to the highest floor, inclusive
+     * @return the number of floors with stops
+     */
+    int countStops(int from, int to) {
+        synchronized (observers) {
+            return observers.countFloors(from, to);
+        }
     }
 
-    private void updateQueueBotTopStatus() {
-        try {
-            queueTopFloor = observers.get(observers.size() - 1).getButton().getFloor();
-        } catch (Exception e) {
-            queueTopFloor = getCurrentFloor();
+    /**
+     * Checks whether an observer is queued at a floor other than the given
+     * one.
+     *
+     * @param floor the floor
+     * @return true if the elevator has a stop at another floor
+     */
+    boolean isQueuedElsewhere(int floor) {
+        synchronized (observers) {
+            int lowest = observers.lowestFloor();
+            return lowest >= 0 && (lowest != floor || observers.highestFloor() != floor);
         }
-        try {
-            queueBotFloor = observers.get(0).getButton().getFloor();
-        } catch (Exception e) {
-            queueBotFloor = getCurrentFloor();
+    }
+
+    /**
+     * Fetches the observer queued at the given floor in the given direction.
+     *
+     * @param floor the floor
+     * @param dir the direction
+     * @return the observer, or null if there is none
+     */
+    ElevatorObserver getQueuedObserver(int floor, int dir) {
+        synchronized (observers) {
+            return observers.get(floor, dir);
         }
     }
 
     /**
-     * Fetches the current observer that is being handled, if any.
+     * Removes an observer from the queue unless it is being handled, e.g. to
+     * queue its button at another elevator.
      *
-     * @return The current observer that is being handled.
+     * @param observer The observer to remove (same reference).
+     * @param force true to remove the observer even if it is being handled
+     * (if the elevator has been stopped)
+     * @return true if the observer has been removed
      */
-    ElevatorObserver getCurrentObserver() {
-        return currentObserver;
+    boolean withdrawObserver(ElevatorObserver observer, boolean force) {
+        synchronized (observers) {
+            if (observer == currentObserver) {
+                if (!force) {
+                    return false;
+                }
+                currentObserver = null;
+            }
+            boolean removed = observers.remove(observer, observer.getButton().getFloor(),
+                    observer.getButton().getDir());
+            updateQueueBotTopStatus();
+            return removed;
+        }
     }
 
     /**
-     * This method should be used to avoid duplication of events.
+     * Removes all observers of hall buttons from the queue at once, e.g.
+     * when the elevator is stopped, so that other elevators can take them.
+     * The observers of panel buttons stay queued.
      *
-     * @param button The button to look for in the queue.
-     * @return True if a button can be match to an existing one in the queue.
+     * @return the removed observers, by floor
      */
-    boolean containsButton(ElevatorButton button) {
+    List<ElevatorObserver> drainHallObservers() {
+        ArrayList<ElevatorObserver> drained = new ArrayList<>();
         synchronized (observers) {
-            for (ElevatorObserver tempObserver : observers) {
-                if (tempObserver.getButton().getFloor() != button.getFloor()
-                        || tempObserver.getButton().getDir() != button.getDir()
-                        || tempObserver.getButton().isPanelButton() != button.isPanelButton()) {
+            for (ElevatorObserver observer : observers.toList()) {
+                if (observer.getButton().isPanelButton()) {
                     continue;
                 }
-                return true;
+                observers.remove(observer, observer.getButton().getFloor(), observer.getButton().getDir());
+                if (observer == currentObserver) {
+                    currentObserver = null;
+                }
+                drained.add(observer);
             }
-            return false;
+            updateQueueBotTopStatus();
         }
+        return drained;
+    }
+
+    /**
+     * Returns the buttons of the queued observers, e.g. to forecast the
+     * route of the elevator.
+     *
+     * @return the buttons, by floor
+     */
+    List<ElevatorButton> getQueuedButtons() {
+        ArrayList<ElevatorButton> buttons = new ArrayList<>();
+        synchronized (observers) {
+            for (ElevatorObserver observer : observers.toList()) {
+                buttons.add(observer.getButton());
+            }
+        }
+        return buttons;
+    }
+
+    /**
+     * Returns a copy of the state of the cabin, the door and the scale of
+     * this elevator as a fleet of one (see {@link FleetState#slice(int)}),
+     * e.g. to forecast the route of the elevator.
+     *
+     * @return the copy
+     */
+    FleetState copyState() {
+        return fleet.slice(index);
+    }
+
+    /**
+     * Fetches the current observer that is being handled, if any.
+     *
+     * @return The current observer that is being handled.
+     */
+    ElevatorObserver getCurrentObserver() {
+        return currentObserver;
     }
 
     /**
@@ -181,29 +368,21 @@ public class Elevator {
     ElevatorObserver getNextUpObserver() {
         ElevatorObserver tempObserver = null;
 
+        ElevatorObserver current;
         synchronized (observers) {
-            if (currentObserver != null && observers.contains(currentObserver)) {
-                return currentObserver;
+            current = currentObserver;
+            if (isQueued(current)) {
+                return current;
             }
-
-            for (ElevatorObserver observer : observers) {
-                int tempFloor = observer.getButton().getFloor();
-
-                if ((currentObserver != null && currentObserver.getButton().getFloor() < tempFloor)
-                        || (tempObserver != null && tempFloor > tempObserver.getButton().getFloor())) {
-                    break;
-                }
-                if (tempFloor > Getpos()) {
-                    tempObserver = observer;
-                }
+            // the closest floor above, not beyond the floor of the current observer
+            tempObserver = observers.above(Getpos(), current != null
+                    ? current.getButton().getFloor() : topFloor);
+            if (tempObserver != null) {
+                currentObserver = current = tempObserver;
             }
         }
 
-        if (tempObserver != null) {
-            currentObserver = tempObserver;
-        }
-
-        if (currentObserver != null && currentObserver.getButton().getFloor() == 0) {
+        if (current != null && current.getButton().getFloor() == 0) {
             ElevatorObserver specialCaseObserver = getNextDownObserver();
             if (specialCaseObserver != null) {
                 return specialCaseObserver;
@@ -225,63 +404,192 @@ public class Elevator {
         ElevatorObserver tempObserver = null;
 
         synchronized (observers) {
-            if (observers.contains(currentObserver)) {
-                return currentObserver;
+            ElevatorObserver current = currentObserver;
+            if (isQueued(current)) {
+                return current;
             }
-            for (ElevatorObserver observer : observers) {
-                int tempFloor = observer.getButton().getFloor();
-
-                if ((currentObserver != null && currentObserver.getButton().getFloor() < tempFloor)
-                        || (tempObserver != null && tempFloor < tempObserver.getButton().getFloor())) {
-                    break;
-                }
-                if (tempFloor < Getpos()) {
-                    tempObserver = observer;
+            // the closest floor below, not beyond the floor of the current observer
+            tempObserver = observers.below(Getpos(), current != null
+                    ? current.getButton().getFloor() : topFloor);
+            if (tempObserver == null && isAtFloor()) {
+                // a stop at the floor of the cabin, queued while it was heading elsewhere
+                int floor = getCurrentFloor();
+                ElevatorObserver here = observers.below(floor + 1, floor);
+                if (here != null && here.getButton().getFloor() == floor) {
+                    tempObserver = here;
                 }
             }
-
-        }
-
-        if (tempObserver != null) {
-            currentObserver = tempObserver;
+            if (tempObserver != null) {
+                currentObserver = tempObserver;
+            }
         }
 
         return tempObserver;
     }
 
     /**
-     * Sets position of the elevator cabin to the specified double value.
+     * Sets position of the elevator cabin to the specified double value. The
+     * cabin jumps to the position, so the observers are signalled only if the
+     * position is at a floor.
      *
      * @param f float position to be set.
      */
     public void Setpos(double f) {
+        if (setPosition(f)) {
+            lastPosition = f;
+            long floor = Math.round(f);
+            if (Math.abs(f - floor) < EPSILON) {
+                signalFloor((int) floor);
+            }
+        } else {
+            lastPosition = fleet.getPosition(index);
+        }
+    }
+
+    /**
+     * Sets the position without signalling the observers.
+     *
+     * @return false if the position is out of range (and has been clamped)
+     */
+    private boolean setPosition(double f) {
         if (f < 0) {
             System.err.println("In Setpos: Position out of range = " + f);
-            boxpos = 0;
-            return;
+            fleet.setPosition(index, 0);
+            return false;
         }
         if (f > topFloor) {
             System.err.println("In Setpos: Position out of range = " + f);
-            boxpos = topFloor;
-            return;
+            fleet.setPosition(index, topFloor);
+            return false;
         }
+        fleet.setPosition(index, f);
+        return true;
+    }
 
-        if (f % 1 < 0.04 || f % 1 > 0.97) {
-            ElevatorObserver observer = null;
-            synchronized (observers) {
-                for (ElevatorObserver observerTemp : observers) {
-                    observer = observerTemp;
-                    if (observer != null) {
-                        break;
-                    }
-                }
+    /**
+     * Called by the simulation thread after it has moved the cabin in the
+     * fleet state. Signals the observers for each floor crossed by the move.
+     *
+     * @param f the new position of the cabin
+     */
+    void positionChanged(double f) {
+        notifyPosition(f);
+    }
+
+    /**
+     * Signals the first queued observer once for each floor crossed by the
+     * move of the cabin from the last notified position to the given one, in
+     * the order of crossing. A floor is crossed when the cabin reaches it
+     * (within <code>EPSILON</code>) coming from the other side, so a cabin
+     * leaving a floor does not signal it again, and a step longer than one
+     * floor signals every floor in between. Must not be called while holding
+     * the <code>motorLock</code>, since the observer may send a command to the
+     * motor.
+     */
+    private void notifyPosition(double f) {
+        double from = lastPosition;
+        lastPosition = f;
+        if (f > from) {
+            int last = (int) Math.floor(f + EPSILON);
+            for (int floor = (int) Math.floor(from + EPSILON) + 1; floor <= last; floor++) {
+                signalFloor(floor);
             }
-            if (observer != null) {
-                observer.signalPosition((int) Math.round(f));
+        } else if (f < from) {
+            int last = (int) Math.ceil(f - EPSILON);
+            for (int floor = (int) Math.ceil(from - EPSILON) - 1; floor >= last; floor--) {
+                signalFloor(floor);
             }
         }
+    }
+
+    /**
+     * Signals the first queued observer, if any, that the cabin has reached
+     * the given floor.
+     */
+    private void signalFloor(int floor) {
+        ElevatorObserver observer;
+        synchronized (observers) {
+            observer = observers.first();
+            if (observer == null) {
+                return;
+            }
+        }
+        observer.signalPosition(floor);
+    }
+
+    /**
+     * Performs one time step of the motor: moves the cabin one
+     * <code>step</code> in the current direction and stops the motor at the
+     * bottom or the top floor. The read-modify-write is done under the
+     * <code>motorLock</code>, the observers are signalled after the lock is
+     * released. Called by the animation Timer of the GUI or by
+     * the simulation thread of a headless Elevators.
+     *
+     * @param step the movement step in floor units
+     * @return true if the position of the cabin has changed
+     */
+    boolean stepMotor(double step) {
+        double position;
+        synchronized (motorLock) {
+            if (!fleet.move(index, step)) {
+                return false;
+            }
+            position = fleet.getPosition(index);
+        }
+        notifyPosition(position);
+        return true;
+    }
+
+    /**
+     * Performs one time step of the door: opens or closes the door by one
+     * "degree of openness" and stops the door when it is completely open or
+     * closed. The read-modify-write is done under the <code>doorLock</code>,
+     * the door listener is called after the lock is released.
+     *
+     * @return true if the state of the door has changed
+     */
+    boolean stepDoor() {
+        synchronized (doorLock) {
+            int dir = fleet.doorDirection[index];
+            if (dir == Elevators.STOP) {
+                return false;
+            }
+            int stat = fleet.doorStatus[index];
+            if (stat == DoorStatus.CLOSED && dir == Elevators.CLOSE) {
+                dir = Elevators.STOP;
+            }
+            if (stat == DoorStatus.OPEN4 && dir == Elevators.OPEN) {
+                dir = Elevators.STOP;
+            }
+            Setdoorstat(stat + dir);
+            Setdoor(dir);
+            if (dir != Elevators.STOP) {
+                return true;
+            }
+        }
+        doorStopped();
+        return false;
+    }
+
+    /**
+     * Sets the listener that is called when the door of the elevator stops,
+     * i.e. when it is completely open or closed.
+     *
+     * @param listener the listener, or null for none
+     */
+    void setDoorListener(Runnable listener) {
+        doorListener = listener;
+    }
 
-        boxpos = f;
+    /**
+     * Called by the thread that moves the door when the door has stopped.
+     * Calls the door listener, if any.
+     */
+    void doorStopped() {
+        Runnable listener = doorListener;
+        if (listener != null) {
+            listener.run();
+        }
     }
 
     /**
@@ -312,7 +620,17 @@ public class Elevator {
      * @return The current closest floor.
      */
     int getCurrentFloor() {
-        return (int) Math.round(boxpos);
+        return (int) Math.round(fleet.getPosition(index));
+    }
+
+    /**
+     * Checks whether the cabin is at a floor (exactly, with fixed-point
+     * positions).
+     *
+     * @return true if the cabin is at a floor
+     */
+    boolean isAtFloor() {
+        return fleet.isAtFloor(index);
     }
 
     /**
@@ -323,7 +641,7 @@ public class Elevator {
      */
     void removeObserver(ElevatorObserver observer) {
         synchronized (observers) {
-            observers.remove(observer);
+            observers.remove(observer, observer.getButton().getFloor(), observer.getButton().getDir());
             if (observer == currentObserver) {
                 currentObserver = null;
             }
@@ -331,6 +649,15 @@ public class Elevator {
         }
     }
 
+    /**
+     * Returns the number of the top floor served by this elevator.
+     *
+     * @return the top floor
+     */
+    public int getTopFloor() {
+        return topFloor;
+    }
+
     public int getNumber() {
         return number;
     }
@@ -348,15 +675,15 @@ public class Elevator {
     public void Setdoorstat(int s) {
         if (s < DoorStatus.CLOSED) {
             System.err.println("In Setdoorstat: Doorstatus out of range = " + s);
-            doorstat = DoorStatus.CLOSED;
+            fleet.doorStatus[index] = (byte) DoorStatus.CLOSED;
             return;
         }
         if (s > DoorStatus.OPEN4) {
             System.err.println("In Setdoorstat: Doorstatus out of range = " + s);
-            doorstat = DoorStatus.OPEN4;
+            fleet.doorStatus[index] = (byte) DoorStatus.OPEN4;
             return;
         }
-        doorstat = s;
+        fleet.doorStatus[index] = (byte) s;
     }
 
     /**
@@ -368,9 +695,9 @@ public class Elevator {
     public void Setdir(int d) {
         if (d < -1 || d > 1) {
             System.err.println("In Setdir: Direction out of range = " + d);
-            boxdir = 0;
+            fleet.direction[index] = (byte) 0;
         } else {
-            boxdir = d;
+            fleet.direction[index] = (byte) d;
         }
     }
 
@@ -383,9 +710,9 @@ public class Elevator {
     public void Setdoor(int d) {
         if (d < -1 || d > 1) {
             System.err.println("In Setdoor: Direction out of range = " + d);
-            doordir = 0;
+            fleet.doorDirection[index] = (byte) 0;
         } else {
-            doordir = d;
+            fleet.doorDirection[index] = (byte) d;
         }
     }
 
@@ -398,7 +725,7 @@ public class Elevator {
         if (s < 0 || s > topFloor) {
             System.err.println("In Setscale: Scalevalue out of range = " + s);
         } else {
-            scalepos = s;
+            fleet.scale[index] = s;
         }
     }
 
@@ -430,7 +757,7 @@ public class Elevator {
      * units".
      */
     public double Getpos() {
-        return boxpos;
+        return fleet.getPosition(index);
     }
 
     /**
@@ -440,7 +767,7 @@ public class Elevator {
      * @return the integer code of the current state of the door.
      */
     public int Getdoorstat() {
-        return doorstat;
+        return fleet.doorStatus[index];
     }
 
     /**
@@ -450,7 +777,7 @@ public class Elevator {
      * @return the integer code of the cabin movement direction.
      */
     public int Getdir() {
-        return boxdir;
+        return fleet.direction[index];
     }
 
     /**
@@ -460,7 +787,7 @@ public class Elevator {
      * @return the the integer code of the door movement direction.
      */
     public int Getdoor() {
-        return doordir;
+        return fleet.doorDirection[index];
     }
 
     /**
@@ -470,7 +797,7 @@ public class Elevator {
      * scale.
      */
     public int Getscalepos() {
-        return scalepos;
+        return fleet.scale[index];
     }
 
     /**
@@ -517,12 +844,7 @@ public class Elevator {
         }
         ElevatorObserver observer = null;
         synchronized (observers) {
-            for (ElevatorObserver observerTemp : observers) {
-                observer = observerTemp;
-                if (observer != null) {
-                    break;
-                }
-            }
+            observer = observers.first();
         }
         if (observer != null) {
             observer.signalStop();
@@ -3,12 +3,24 @@ package elevator;
 import java.io.PrintWriter;
 import java.net.Socket;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * The controller must accept actions events from the elevators (button
@@ -18,18 +30,101 @@ import java.util.concurrent.locks.ReentrantLock;
  * implemented as a multithreaded application. The velocity of elevators can be
  * controlled "by-hand" with a special control slider in the Elevators GUI, so
  * the timing requirements (deadlines) can be really hard.
+ * <p>
+ * By default, a new queue worker thread is started whenever an elevator gets
+ * work, and the thread blocks until the elevator arrives. When the elevator
+ * stops, the worker ends and the door cycle of the elevator takes over: a
+ * state machine driven by the status of the doors and by timeouts of the
+ * clock, which starts a new worker when the doors have closed, so no thread
+ * waits while the doors are open (see {@link #setDoorDwell(long, long)}).
+ * In the actor mode (see {@link #useActors(int)}), every elevator is
+ * an actor with a mailbox of events (queue changed, floor reached, doors
+ * closed) that is processed on a small fixed pool of threads, so the number of
+ * threads does not grow with the traffic. The "stats" command prints the
+ * number of threads and the depth of the mailboxes (see {@link #getStats()}).
+ * Alternatively, the queue workers and the button handlers can keep the
+ * blocking style but run on virtual threads (see
+ * {@link #useVirtualThreads(boolean)}), which are cheap to block; the workers
+ * do not block while holding a monitor, so they do not pin their carrier.
  *
  * @author Gabriel
  */
 public class ElevatorController implements Runnable {
 
-    private final ArrayList activeElevators = new ArrayList();
+    private final Set<Elevator> activeElevators = ConcurrentHashMap.newKeySet();
     private final Elevator[] allElevators;
     private Socket socket;
     private PrintWriter stream;
-    private final AtomicBoolean shouldStop = new AtomicBoolean();
-    private final Lock lock;
-    private final Condition[] condition;
+    /**
+     * Whether the queue worker of the elevator is to stop at the floor of
+     * its current observer, 1 if so, by the number of the elevator
+     */
+    private final AtomicIntegerArray shouldStop;
+    private final SimulationClock clock;
+    private final int topFloor;
+    private volatile Random random = new Random();
+    private final AtomicReferenceArray<Arrival> arrivals;
+    private final DoorCycle[] doorCycles;
+    private volatile long doorDwell = DEFAULT_DOOR_DWELL;
+    private volatile long minimumDwell = DEFAULT_DOOR_DWELL;
+    /**
+     * The default time the doors stay open in milliseconds
+     */
+    public static final long DEFAULT_DOOR_DWELL = 3000;
+    /**
+     * The time the doors may take to open or close in milliseconds, after
+     * which the door cycle goes on without their status
+     */
+    private static final long DOOR_TIMEOUT = 1000;
+    private final HallCallTable hallCalls;
+    private final PassengerTable passengers = new PassengerTable();
+    private volatile boolean destinationDispatch = false;
+    private final Set<Integer> boardingRetries = ConcurrentHashMap.newKeySet();
+    private volatile DispatchStrategy dispatchStrategy = new HeuristicDispatch();
+    private final EtaDispatch defaultEta = new EtaDispatch(0);
+    private final ArrayList<int[]> batch = new ArrayList<>();
+    private volatile long batchWindow = 0;
+    private volatile long batchBudget = DEFAULT_BATCH_BUDGET;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong greedyBatches = new AtomicLong();
+    private final AtomicLong solveNanos = new AtomicLong();
+    private final AtomicLong batchedCalls = new AtomicLong();
+    private final AtomicLong solvedCalls = new AtomicLong();
+    private final AtomicLong solvedCost = new AtomicLong();
+    /**
+     * The default latency budget of the batch assignment in nanoseconds
+     */
+    public static final long DEFAULT_BATCH_BUDGET = 2000000;
+    private volatile long reassignPeriod = 0;
+    private volatile long hysteresis = EtaDispatch.DWELL;
+    private final AtomicBoolean reassignScheduled = new AtomicBoolean();
+    private final AtomicBoolean reassigning = new AtomicBoolean();
+    private final AtomicLong reassignments = new AtomicLong();
+    private final AtomicLong drainedCalls = new AtomicLong();
+    private final AtomicLong destinationAssignments = new AtomicLong();
+    private final ParkingPolicy parking;
+    private volatile long parkingDelay = 0;
+    private volatile double millisPerFloor = 1 / EtaDispatch.DEFAULT_VELOCITY;
+    /**
+     * The time each elevator has fallen idle, <code>BUSY</code> while it has
+     * work and <code>PARKED</code> once it has been parked
+     */
+    private final AtomicLongArray idleSince;
+    private static final long BUSY = Long.MIN_VALUE;
+    private static final long PARKED = -1;
+    private final AtomicBoolean parkingScheduled = new AtomicBoolean();
+    private final AtomicLong parkingPasses = new AtomicLong();
+    private final AtomicLong parkingMoves = new AtomicLong();
+    private final AtomicLong parkingGain = new AtomicLong();
+    private final AtomicLong homeReturns = new AtomicLong();
+    private CarActor[] actors;
+    private ThreadPoolExecutor pool;
+    private final AtomicInteger liveThreads = new AtomicInteger();
+    private final AtomicLong createdThreads = new AtomicLong();
+    private final AtomicInteger mailboxDepth = new AtomicInteger();
+    private final AtomicInteger maxMailboxDepth = new AtomicInteger();
+    private final AtomicLong messages = new AtomicLong();
+    private volatile boolean virtualThreads = false;
 
     /**
      * Initializes synchronization tools for the elevators.
@@ -37,17 +132,411 @@ public class ElevatorController implements Runnable {
      * @param elevators The elevators to be controlled and synchronized.
      */
     public ElevatorController(Elevator[] elevators) {
+        this(elevators, new WallClock());
+    }
+
+    /**
+     * Initializes synchronization tools for the elevators which are simulated
+     * with the given clock. The dwell of doors is measured with the clock and
+     * the queue workers tell the clock when they run and when they block, so
+     * a virtual clock can advance when all of them are blocked.
+     *
+     * @param elevators The elevators to be controlled and synchronized.
+     * @param clock The clock of the simulation.
+     */
+    public ElevatorController(Elevator[] elevators, SimulationClock clock) {
         if (elevators == null || elevators.length == 0) {
             throw new IllegalArgumentException("Illegal set of elevators to "
                     + "be controlled.");
         }
-        this.lock = new ReentrantLock();
         this.allElevators = elevators;
-        shouldStop.getAndSet(false);
-        condition = new Condition[elevators.length];
-        for (int i = 0; i < elevators.length; i++) {
-            condition[i] = lock.newCondition();
+        this.topFloor = elevators[0].getTopFloor();
+        this.clock = clock;
+        shouldStop = new AtomicIntegerArray(elevators.length + 1);
+        arrivals = new AtomicReferenceArray<>(elevators.length + 1);
+        hallCalls = new HallCallTable(topFloor);
+        parking = new ParkingPolicy(topFloor);
+        idleSince = new AtomicLongArray(elevators.length + 1);
+        for (int i = 0; i < idleSince.length(); i++) {
+            idleSince.set(i, BUSY);
+        }
+        doorCycles = new DoorCycle[elevators.length + 1];
+        for (Elevator elevator : elevators) {
+            if (elevator != null) {
+                DoorCycle doors = new DoorCycle(elevator);
+                doorCycles[elevator.getNumber()] = doors;
+                elevator.setDoorListener(doors::doorStopped);
+            }
+        }
+    }
+
+    /**
+     * Sets how long the doors stay open when an elevator stops at a floor,
+     * measured from the time they are completely open. A call at the floor
+     * while the doors are open keeps them open for the dwell again. If the
+     * elevator has a call at another floor, the doors close as soon as they
+     * have been open for the minimum dwell. Defaults to 3 seconds for both,
+     * i.e. no early close.
+     *
+     * @param dwellMillis the dwell in milliseconds of the clock
+     * @param minimumDwellMillis the minimum dwell in milliseconds, at most
+     * the dwell
+     */
+    public void setDoorDwell(long dwellMillis, long minimumDwellMillis) {
+        if (minimumDwellMillis < 0 || dwellMillis < minimumDwellMillis) {
+            throw new IllegalArgumentException("Illegal door dwell " + dwellMillis
+                    + " or minimum dwell " + minimumDwellMillis);
         }
+        minimumDwell = minimumDwellMillis;
+        doorDwell = dwellMillis;
+    }
+
+    /**
+     * Switches the controller to the actor mode: every elevator becomes an
+     * actor whose events are processed on a fixed pool of the given number of
+     * threads. Must be called before the first button is pressed.
+     *
+     * @param threads the number of threads of the pool, 0 for the number of
+     * available processors
+     */
+    public void useActors(int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("Illegal number of threads " + threads);
+        }
+        if (threads == 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ElevatorController-" + createdThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        actors = new CarActor[allElevators.length];
+        for (int i = 0; i < allElevators.length; i++) {
+            if (allElevators[i] != null) {
+                actors[allElevators[i].getNumber()] = new CarActor(allElevators[i]);
+            }
+        }
+    }
+
+    /**
+     * Makes the controller run the queue workers and the tasks passed to
+     * {@link #dispatch(Runnable)} on virtual threads instead of platform
+     * threads. Has no effect in the actor mode, or if the Java runtime does
+     * not support virtual threads (see {@link #isVirtualThreadsAvailable()}).
+     *
+     * @param virtual true to use virtual threads
+     */
+    public void useVirtualThreads(boolean virtual) {
+        virtualThreads = virtual;
+    }
+
+    /**
+     * Checks whether the queue workers run on virtual threads.
+     *
+     * @return true if virtual threads are requested and available
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads && VirtualThreads.isAvailable();
+    }
+
+    /**
+     * Checks whether the Java runtime supports virtual threads (Java 21 and
+     * later).
+     *
+     * @return true if virtual threads are available
+     */
+    public static boolean isVirtualThreadsAvailable() {
+        return VirtualThreads.isAvailable();
+    }
+
+    /**
+     * Starts a thread, virtual or platform, that runs the given task and is
+     * counted in the metrics while it runs.
+     */
+    private void startThread(Runnable task) {
+        liveThreads.incrementAndGet();
+        VirtualThreads.newThread("ElevatorController-" + createdThreads.incrementAndGet(), () -> {
+            try {
+                task.run();
+            } finally {
+                liveThreads.decrementAndGet();
+            }
+        }, virtualThreads).start();
+    }
+
+    /**
+     * Sets the strategy that chooses the elevator for a hall call (see
+     * {@link DispatchStrategy}). Defaults to the heuristic dispatch.
+     *
+     * @param strategy the dispatch strategy
+     */
+    public void setDispatchStrategy(DispatchStrategy strategy) {
+        if (strategy == null) {
+            throw new IllegalArgumentException("No dispatch strategy");
+        }
+        dispatchStrategy = strategy;
+    }
+
+    /**
+     * Returns the strategy that chooses the elevator for a hall call.
+     *
+     * @return the dispatch strategy
+     */
+    public DispatchStrategy getDispatchStrategy() {
+        return dispatchStrategy;
+    }
+
+    /**
+     * Switches the controller to the batch dispatch: the hall calls pressed
+     * within a window of the given length are collected and assigned
+     * jointly, minimizing the sum of the estimated times of arrival of the
+     * elevators (see {@link EtaDispatch}) with the Hungarian method. An
+     * elevator may take several calls of a window; every further call costs
+     * a door dwell more. If the solution takes longer than the latency
+     * budget, the calls of the window are assigned one at a time by the
+     * dispatch strategy instead; on a sequential virtual clock (a seeded
+     * run, see <code>VirtualClock.setSequential</code>) the budget is not
+     * enforced, so that the run is deterministic. The windows, their calls,
+     * the solve time and the cost are counted in the metrics (see
+     * {@link #getStats()}).
+     *
+     * @param windowMillis the length of the window in milliseconds of the
+     * clock, 0 to assign every call when it is pressed
+     * @param budgetNanos the latency budget of the solution in nanoseconds
+     */
+    public void useBatchDispatch(long windowMillis, long budgetNanos) {
+        if (windowMillis < 0 || budgetNanos <= 0) {
+            throw new IllegalArgumentException("Illegal batch window " + windowMillis
+                    + " or budget " + budgetNanos);
+        }
+        batchBudget = budgetNanos;
+        batchWindow = windowMillis;
+    }
+
+    /**
+     * Makes the controller move pending hall calls to elevators that can now
+     * reach them sooner: periodically while calls are pending, whenever an
+     * elevator runs out of work and when an elevator is stopped. A call is
+     * moved if another elevator's estimated time of arrival (see
+     * {@link EtaDispatch}) is earlier by more than the hysteresis, and not
+     * again within the hysteresis, so calls do not ping-pong between
+     * elevators. An elevator takes at most one call per pass, since its
+     * estimates change with the call. The calls of a stopped elevator are
+     * always moved. The call
+     * an elevator is heading for is never moved.
+     *
+     * @param periodMillis the period of the pass in milliseconds of the clock,
+     * 0 to keep hall calls at their elevators
+     * @param hysteresisMillis the least gain and the least time between two
+     * moves of a call in milliseconds
+     */
+    public void useReassignment(long periodMillis, long hysteresisMillis) {
+        if (periodMillis < 0 || hysteresisMillis < 0) {
+            throw new IllegalArgumentException("Illegal reassignment period " + periodMillis
+                    + " or hysteresis " + hysteresisMillis);
+        }
+        hysteresis = hysteresisMillis;
+        reassignPeriod = periodMillis;
+    }
+
+    /**
+     * Makes the controller park idle elevators where the next hall call is
+     * expected: when elevators have been idle for the given time, they are
+     * sent to the floors that minimize the expected travel time from the
+     * next call to the closest idle elevator, as predicted from the demand
+     * the parking policy has learned from the hall calls so far (see
+     * {@link ParkingPolicy}). Elevators that have work are not taken into
+     * account. The elevators move only if the expected travel time improves
+     * by more than half a floor. A parking elevator keeps its doors closed
+     * and is idle for the dispatch; any call replaces its parking stop.
+     *
+     * @param idleMillis the time an elevator is idle before it is parked in
+     * milliseconds of the clock, 0 to leave idle elevators where they are
+     * @param velocity the velocity of the elevators in floors per
+     * millisecond, 0 if unknown
+     */
+    public void useParking(long idleMillis, double velocity) {
+        if (idleMillis < 0 || velocity < 0) {
+            throw new IllegalArgumentException("Illegal parking delay " + idleMillis
+                    + " or velocity " + velocity);
+        }
+        millisPerFloor = 1 / (velocity > 0 ? velocity : EtaDispatch.DEFAULT_VELOCITY);
+        parkingDelay = idleMillis;
+    }
+
+    /**
+     * Returns the policy that learns the demand of the floors from the hall
+     * calls, which are counted whether parking is on or off. Its state can
+     * be saved and restored with snapshots.
+     *
+     * @return the parking policy
+     */
+    public ParkingPolicy getParkingPolicy() {
+        return parking;
+    }
+
+    /**
+     * Returns the number of times an idle elevator has been sent to a
+     * parking floor.
+     *
+     * @return the number of parking moves
+     */
+    public long getParkingMoves() {
+        return parkingMoves.get();
+    }
+
+    /**
+     * Returns the average improvement of the expected travel time from the
+     * next hall call to an idle elevator by the parking passes that have
+     * moved elevators, as predicted by the parking policy.
+     *
+     * @return the average improvement in milliseconds, 0 if no elevator has
+     * been parked
+     */
+    public long getParkingGain() {
+        long passes = parkingPasses.get();
+        return passes == 0 ? 0 : parkingGain.get() / passes;
+    }
+
+    /**
+     * Switches the controller to the destination dispatch: a passenger who
+     * enters a destination (see {@link #pressDestination(int, int)}) is
+     * assigned an elevator at once, which picks the passenger up and takes
+     * the passenger to the destination without a panel button. Passengers
+     * with the same destination are grouped into the same elevator as long
+     * as it has room. Otherwise, a passenger who enters a destination
+     * presses the hall button and, on boarding, the panel button, as with
+     * conventional buttons.
+     *
+     * @param destination true for the destination dispatch
+     */
+    public void useDestinationDispatch(boolean destination) {
+        destinationDispatch = destination;
+    }
+
+    /**
+     * Returns the passengers who have entered their destinations, with their
+     * waiting and journey times.
+     *
+     * @return the passenger table
+     */
+    public PassengerTable getPassengers() {
+        return passengers;
+    }
+
+    /**
+     * Returns the number of hall calls taken from elevators stopped by their
+     * stop buttons and handed back to the dispatch.
+     *
+     * @return the number of drained calls
+     */
+    public long getDrainedCalls() {
+        return drainedCalls.get();
+    }
+
+    /**
+     * Returns the hall calls of the building: the lamps of the hall buttons,
+     * the elevators assigned to the calls and the waiting times.
+     *
+     * @return the hall call table
+     */
+    public HallCallTable getHallCalls() {
+        return hallCalls;
+    }
+
+    /**
+     * Returns the number of controller threads alive: the threads of the pool
+     * in the actor mode, otherwise the queue workers and dispatched tasks
+     * that are running.
+     *
+     * @return the number of live threads
+     */
+    public int getLiveThreads() {
+        return pool != null ? pool.getPoolSize() : liveThreads.get();
+    }
+
+    /**
+     * Returns the metrics of the controller threads as "threads <i>live</i>
+     * created <i>total</i> mailbox <i>depth</i> max <i>depth</i> messages
+     * <i>count</i> calls <i>pending</i> served <i>count</i> wait <i>average</i>
+     * p95 <i>percentile</i> maxwait <i>longest</i> moved <i>count</i>": the
+     * number of threads alive and created so
+     * far, the current and the largest total depth of the mailboxes, the
+     * number of events processed (the mailbox figures are 0 unless in the
+     * actor mode), and the number of pending and served hall calls with their
+     * average, 95th percentile and longest waiting time in milliseconds and
+     * the number of calls moved to another elevator. If stopped elevators
+     * have handed hall calls back to the dispatch, " drained <i>count</i>"
+     * follows: the number of these calls. If passengers have
+     * entered destinations, " passengers <i>delivered</i> waiting
+     * <i>count</i> pwait <i>average</i> journey <i>average</i> assigned
+     * <i>count</i>" follows: the number of passengers who have reached their
+     * destination and who are waiting, their average waiting and journey
+     * time in milliseconds, and the number of passengers assigned an
+     * elevator on entering their destination.
+     * If idle elevators have been parked, " parked <i>moves</i> gain
+     * <i>average</i>" follows: the number of elevators sent to a parking
+     * floor and the average improvement of the expected travel time from the
+     * next call to an idle elevator in milliseconds, as predicted by the
+     * parking policy. The metrics of the dispatch strategy follow (see
+     * {@link DispatchStrategy#getStats()}), e.g. " traffic <i>mode</i>
+     * switches <i>count</i>" with the adaptive dispatch, and if idle
+     * elevators have been sent to the home floor of the strategy,
+     * " returns <i>count</i>" with their number. With the batch
+     * dispatch, " batches <i>count</i> batched <i>count</i> greedy
+     * <i>count</i> solve <i>average</i> cost <i>average</i>" follows: the
+     * number of windows, of the hall calls collected in them, of the windows
+     * assigned one call at a time because the solution overran the budget,
+     * the average solve time in microseconds and the average estimated time
+     * of arrival of a jointly assigned call in milliseconds.
+     *
+     * @return the metrics
+     */
+    public String getStats() {
+        return "threads " + getLiveThreads() + " created " + createdThreads.get()
+                + " mailbox " + mailboxDepth.get() + " max " + maxMailboxDepth.get()
+                + " messages " + messages.get()
+                + " calls " + hallCalls.getPending() + " served " + hallCalls.getServed()
+                + " wait " + hallCalls.getAverageWait() + " p95 " + hallCalls.getPercentileWait(95)
+                + " maxwait " + hallCalls.getMaxWait() + " moved " + reassignments.get()
+                + (drainedCalls.get() == 0 ? "" : " drained " + drainedCalls.get())
+                + (passengers.getDelivered() + passengers.getWaiting() + passengers.getRiding() == 0 ? ""
+                : " passengers " + passengers.getDelivered() + " waiting " + passengers.getWaiting()
+                + " pwait " + passengers.getAverageWait() + " journey " + passengers.getAverageJourney()
+                + " assigned " + destinationAssignments.get())
+                + (parkingPasses.get() == 0 ? "" : " parked " + getParkingMoves()
+                + " gain " + getParkingGain())
+                + dispatchStrategy.getStats()
+                + (homeReturns.get() == 0 ? "" : " returns " + homeReturns.get())
+                + (batches.get() == 0 ? "" : " batches " + batches.get() + " batched " + batchedCalls.get()
+                + " greedy " + greedyBatches.get() + " solve " + solveNanos.get() / batches.get() / 1000
+                + " cost " + (solvedCalls.get() == 0 ? 0 : solvedCost.get() / solvedCalls.get()));
+    }
+
+    /**
+     * Runs a task that may block, such as handling a button pressed in the
+     * GUI: on the pool in the actor mode, otherwise on a new (virtual)
+     * thread.
+     *
+     * @param task the task to run
+     */
+    public void dispatch(Runnable task) {
+        if (pool != null) {
+            pool.execute(task);
+            return;
+        }
+        startThread(task);
+    }
+
+    /**
+     * Seeds the random choices of the controller, so that a run with a
+     * sequential virtual clock is reproducible.
+     *
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        random = new Random(seed);
     }
 
     /**
@@ -67,6 +556,17 @@ public class ElevatorController implements Runnable {
         }
     }
 
+    /**
+     * Connects the controller to the elevators in the same JVM, i.e. the
+     * commands are executed by the given ElevatorIO directly rather than sent
+     * via a TCP socket. Used by a headless Elevators.
+     *
+     * @param io The ElevatorIO that executes the commands.
+     */
+    public void connect(ElevatorIO io) {
+        stream = new PrintWriter(io.getLocalWriter(), true);
+    }
+
     /**
      * Tries to create and connect to the localhost socket. This method is used
      * for development only. Use createSocket method instead.
@@ -91,187 +591,526 @@ public class ElevatorController implements Runnable {
     public void pressButton(int currentFloor, int dir) {
         System.out.println("Button pressed on floor " + currentFloor);
 
-        if (currentFloor > Elevators.MaxTopFloor || currentFloor < 0
+        if (currentFloor > topFloor || currentFloor < 0
                 || dir < -1 || dir > 1) {
             throw new IllegalArgumentException("Invalid arguments "
                     + "for button event.");
         }
-        Elevator elevator = null;
-        ElevatorButton button = new ElevatorButton(currentFloor, dir, false);
+        long now = clock.currentTimeMillis();
+        if (!hallCalls.claim(currentFloor, dir, now)) {
+            // pending already, i.e. assigned or being assigned to an elevator
+            return;
+        }
+        parking.record(currentFloor, now);
+        dispatchStrategy.record(allElevators, currentFloor, dir, -1, now);
+        scheduleReassignment();
+        long window = batchWindow;
+        if (window > 0) {
+            boolean first;
+            synchronized (batch) {
+                first = batch.isEmpty();
+                batch.add(new int[]{currentFloor, dir});
+            }
+            if (first) {
+                clock.schedule(window, this::assignBatch);
+            }
+            return;
+        }
+        assignHallCall(currentFloor, dir);
+    }
+
+    /**
+     * Schedules the next reassignment pass, unless it is scheduled already.
+     */
+    private void scheduleReassignment() {
+        long period = reassignPeriod;
+        if (period > 0 && reassignScheduled.compareAndSet(false, true)) {
+            clock.schedule(period, () -> {
+                reassignScheduled.set(false);
+                reassignHallCalls();
+                if (hallCalls.getPending() > 0 && isAnyAvailable()) {
+                    scheduleReassignment();
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the estimates of the times of arrival of the given strategy,
+     * or those of the ETA dispatch at the default velocity if it does not
+     * estimate them.
+     */
+    private EtaDispatch etaOf(DispatchStrategy strategy) {
+        return strategy instanceof EtaDispatch ? (EtaDispatch) strategy : defaultEta;
+    }
+
+    private boolean isAnyAvailable() {
+        for (Elevator elevator : allElevators) {
+            if (elevator != null && !elevator.isStop()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves the pending hall calls that another elevator can reach sooner by
+     * more than the hysteresis (see {@link #useReassignment(long, long)}).
+     * Does nothing if reassignment is off or a pass is running.
+     */
+    private void reassignHallCalls() {
+        if (reassignPeriod == 0 || !reassigning.compareAndSet(false, true)) {
+            return;
+        }
         try {
-            startTimer();
+            DispatchStrategy strategy = dispatchStrategy;
+            EtaDispatch eta = etaOf(strategy);
+            long now = clock.currentTimeMillis();
+            // an elevator takes one call per pass, its estimates are stale after
+            boolean[] taken = new boolean[allElevators.length + 1];
+            for (HallCallTable.HallCall call : hallCalls.getPendingCalls()) {
+                if (call.getStatus() != HallCallTable.Status.ASSIGNED) {
+                    continue;
+                }
+                int floor = call.getFloor();
+                int dir = call.getDir();
+                Elevator from = allElevators[call.getCar() - 1];
+                ElevatorObserver observer = from.getQueuedObserver(floor, dir);
+                if (observer == null || observer.getButton().isPanelButton()
+                        || passengers.isPickup(from.getNumber(), floor, dir)) {
+                    continue;
+                }
+                boolean stopped = from.isStop();
+                if (!stopped && now - call.getMoved() < hysteresis) {
+                    continue;
+                }
+                // a call leaves its zone only as a new call would
+                double current = stopped ? Double.POSITIVE_INFINITY
+                        : eta.eta(from, floor, dir) + strategy.extraCost(allElevators, from, floor, -1);
+                Elevator best = null;
+                double bestEta = current - hysteresis;
+                for (Elevator elevator : allElevators) {
+                    if (elevator == null || elevator == from || elevator.isStop()
+                            || taken[elevator.getNumber()]) {
+                        continue;
+                    }
+                    double time = eta.eta(elevator, floor, dir)
+                            + strategy.extraCost(allElevators, elevator, floor, -1);
+                    if (time < bestEta) {
+                        best = elevator;
+                        bestEta = time;
+                    }
+                }
+                if (best == null || !from.withdrawObserver(observer, stopped)) {
+                    continue;
+                }
+                if (!hallCalls.reassign(floor, dir, from.getNumber(), best.getNumber(), now)) {
+                    // served meanwhile
+                    continue;
+                }
+                taken[best.getNumber()] = true;
+                reassignments.incrementAndGet();
+                best.registerObserver(new InnerObserver(best, new ElevatorButton(floor, dir, false)));
+                handleButtonQueue(best);
+            }
+        } finally {
+            reassigning.set(false);
+        }
+    }
 
-            if (allElevators.length == 1) {
-                if (allElevators[0].isStop()) {
+    /**
+     * Assigns the hall calls collected in a batch window jointly, or one at a
+     * time if the solution overruns the latency budget.
+     */
+    private void assignBatch() {
+        ArrayList<int[]> calls;
+        synchronized (batch) {
+            calls = new ArrayList<>(batch);
+            batch.clear();
+        }
+        if (calls.isEmpty()) {
+            return;
+        }
+        ArrayList<Elevator> cars = new ArrayList<>();
+        for (Elevator elevator : allElevators) {
+            if (elevator != null && !elevator.isStop()) {
+                cars.add(elevator);
+            }
+        }
+        EtaDispatch eta = etaOf(dispatchStrategy);
+        long start = System.nanoTime();
+        int[] solution = null;
+        double[][] cost = null;
+        int n = calls.size();
+        int m = cars.size();
+        if (m > 0) {
+            // every car once for each call it may take, a dwell more each time
+            int copies = (n + m - 1) / m;
+            cost = new double[n][m * copies];
+            for (int i = 0; i < n; i++) {
+                for (int c = 0; c < m; c++) {
+                    double time = eta.eta(cars.get(c), calls.get(i)[0], calls.get(i)[1]);
+                    for (int k = 0; k < copies; k++) {
+                        cost[i][k * m + c] = time + k * EtaDispatch.DWELL;
+                    }
+                }
+            }
+            // a seeded run on a sequential virtual clock must not depend on real time
+            boolean sequential = clock instanceof VirtualClock && ((VirtualClock) clock).isSequential();
+            solution = HungarianAssignment.solve(cost, start + (sequential ? Long.MAX_VALUE / 2 : batchBudget));
+        }
+        long nanos = System.nanoTime() - start;
+        batches.incrementAndGet();
+        solveNanos.addAndGet(nanos);
+        batchedCalls.addAndGet(n);
+        if (solution == null) {
+            greedyBatches.incrementAndGet();
+            for (int[] call : calls) {
+                assignHallCall(call[0], call[1]);
+            }
+        } else {
+            double total = 0;
+            for (int i = 0; i < n; i++) {
+                total += cost[i][solution[i]];
+                assignHallCall(calls.get(i)[0], calls.get(i)[1], cars.get(solution[i] % m));
+            }
+            solvedCalls.addAndGet(n);
+            solvedCost.addAndGet(Math.round(total));
+        }
+    }
+
+    /**
+     * Assigns a claimed hall call to the elevator chosen by the dispatch
+     * strategy and queues it there.
+     */
+    private void assignHallCall(int currentFloor, int dir) {
+        startTimer();
+        try {
+            assignHallCall(currentFloor, dir,
+                    dispatchStrategy.select(allElevators, currentFloor, dir, random));
+        } finally {
+            stopTimer();
+        }
+    }
+
+    /**
+     * Queues a claimed hall call at the given elevator. Without an elevator,
+     * the call stays pending unassigned until an elevator is released (see
+     * {@link #assignUnassignedCalls()}).
+     */
+    private void assignHallCall(int currentFloor, int dir, Elevator elevator) {
+        startTimer();
+        try {
+            if (elevator == null) {
+                hallCalls.unassign(currentFloor, dir);
+                return;
+            }
+            ElevatorButton button = new ElevatorButton(currentFloor, dir, false);
+            InnerObserver observer = new InnerObserver(elevator, button);
+            hallCalls.assign(currentFloor, dir, elevator.getNumber());
+            elevator.registerObserver(observer);
+
+            handleButtonQueue(elevator);
+        } finally {
+            stopTimer();
+        }
+    }
+
+    /**
+     * For as long there is observers queued in the elevator, this method will
+     * handle any movement command (such as doors, engine) for the elevator.
+     * Note: This method runs on a separate thread if it's not already handling
+     * the elevator.
+     *
+     * @param elevator The elevator to handle the queue for.
+     */
+    public void handleButtonQueue(Elevator elevator) {
+        if (!elevator.isIdle()) {
+            // no longer idle or parked
+            idleSince.set(elevator.getNumber(), BUSY);
+        }
+        if (doorCycles[elevator.getNumber()].call()) {
+            // the door cycle goes on with the queue when the doors have closed
+            return;
+        }
+        if (actors != null) {
+            actors[elevator.getNumber()].post(Event.WAKE, null);
+            return;
+        }
+        if (!activeElevators.add(elevator)) {
+            return;
+        }
+        clock.wake(() -> {
+            clock.enter();
+            startThread(() -> work(elevator));
+        });
+    }
+
+    /**
+     * Serves the queue of the given elevator until it is empty, the
+     * elevator stops or the doors open: the queue worker of the elevator.
+     */
+    private void work(Elevator elevator) {
+        boolean doorsOpened = false;
+        try {
+            ElevatorObserver observer = elevator.getNextUpObserver();
+            if (observer == null) {
+                observer = elevator.getNextDownObserver();
+            }
+            while (observer != null) {
+                if (elevator.isStop()) {
                     return;
                 }
-                elevator = allElevators[0];
-            } else {
-                double movingDistance = Double.MAX_VALUE;
-                double emptyDistance = Double.MAX_VALUE;
-                double floorDistance = Double.MAX_VALUE;
-                Elevator emptyElevator = null;
-                Elevator movingElevator = null;
-                Elevator floorElevator = null;
-
-                for (int i = 0; i < allElevators.length - 1; i++) {
-                    Elevator tempElevator = allElevators[i];
-                    if (tempElevator.isStop()) {
-                        continue;
-                    } else if (tempElevator.containsButton(button)) {
+                int dir = 0;
+
+                if (elevator.Getpos() - 0.001 < observer.getButton().getFloor()) {
+                    dir = 1;
+                } else if (elevator.Getpos() + 0.001 > observer.getButton().getFloor()) {
+                    dir = -1;
+                }
+                boolean isOnAFloor = elevator.isAtFloor();
+                if (dir != 0 && (!isOnAFloor || elevator.getCurrentFloor() != observer.getButton().getFloor())) {
+                    stream.println("m " + elevator.getNumber() + " " + dir);
+                    observer.waitPosition();
+                    if (elevator.isStop()) {
+                        // stopped meanwhile, the hall calls have been drained
+                        shouldStop.set(elevator.getNumber(), 0);
                         return;
                     }
+                } else if (isOnAFloor) {
+                    shouldStop.set(elevator.getNumber(), 1);
+                }
 
-                    double tempDistance = Math.abs(currentFloor - tempElevator.Getpos());
-                    if (tempElevator.getCurrentObserver() != null
-                            && tempElevator.getCurrentObserver().getButton().getDir() == dir) {
-                        if (tempDistance < movingDistance) {
-                            movingElevator = tempElevator;
-                            movingDistance = tempDistance;
-                        }
-                    } else if (tempElevator.getCurrentObserver() == null) {
-                        if (tempDistance < 0.5) {
-                            emptyElevator = tempElevator;
-                            break;
-                        }
-                        if (tempDistance < emptyDistance) {
-                            emptyElevator = tempElevator;
-                            emptyDistance = tempDistance;
-                        }
-                    } else if (tempElevator.getCurrentObserver().getButton().getDir() == 1) {
-                        int tempFloorDistance = (tempElevator.getQueueTopFloor() - tempElevator.getCurrentFloor())
-                                + (tempElevator.getQueueTopFloor() - currentFloor);
-                        if (tempFloorDistance < floorDistance) {
-                            floorDistance = tempFloorDistance;
-                            floorElevator = tempElevator;
-                        }
+                if (shouldStop.getAndSet(elevator.getNumber(), 0) == 1) {
+                    elevator.removeObserver(observer);
+                    if (Elevator.isParkingStop(observer)) {
+                        // parked, the doors stay closed
+                        stream.println("m " + elevator.getNumber() + " 0");
                     } else {
-                        int tempFloorDistance = (tempElevator.getCurrentFloor() - tempElevator.getQueueBotFloor())
-                                + (currentFloor - tempElevator.getQueueBotFloor());
-                        if (tempFloorDistance < floorDistance || floorElevator == null) {
-                            floorDistance = tempFloorDistance;
-                            floorElevator = tempElevator;
-                        }
+                        serveHallCall(elevator, observer);
+                        stopElevator(elevator);
+                        // the door cycle starts a new worker when the doors have closed
+                        doorsOpened = true;
+                        return;
                     }
+                } else if (!observer.getButton().isPanelButton()) {
+                    elevator.removeObserver(observer);
+                    reassignHallCall(elevator, observer);
                 }
-                boolean needToChangeCurrentDir = true;
-                if ((movingElevator != null && dir == -1 && currentFloor < movingElevator.Getpos())
-                        || (movingElevator != null && dir == 1 && currentFloor > movingElevator.Getpos())) {
-                    needToChangeCurrentDir = false;
-                }
-                if (movingElevator != null && movingElevator.getCurrentObserver().getButton().getDir() == dir
-                        && (!needToChangeCurrentDir)) {
-                    elevator = movingElevator;
-                } else if (emptyElevator != null) {
-                    elevator = emptyElevator;
-                } else if (movingElevator != null && movingDistance < floorDistance) {
-                    elevator = movingElevator;
-                } else if (floorElevator != null) {
-                    elevator = floorElevator;
-                } else if (movingElevator != null) {
-                    elevator = movingElevator;
+
+                if (dir == 1) {
+                    observer = elevator.getNextUpObserver();
+                    if (observer == null) {
+                        observer = elevator.getNextDownObserver();
+                    }
                 } else {
-                    Random random = new Random();
-                    int index = random.nextInt(allElevators.length - 1);
-                    elevator = allElevators[index];
+                    observer = elevator.getNextDownObserver();
+
+                    if (observer == null) {
+                        observer = elevator.getNextUpObserver();
+                    }
                 }
+            }
+        } finally {
+            activeElevators.remove(elevator);
+            if (doorsOpened && !doorCycles[elevator.getNumber()].isBusy()) {
+                // the doors have closed before this worker ended
+                handleButtonQueue(elevator);
+            } else if (!doorsOpened) {
+                scheduleParking(elevator);
+            }
+            reassignHallCalls();
+            clock.leave();
+        }
+    }
 
-                InnerObserver observer = new InnerObserver(elevator, button);
-                elevator.registerObserver(observer);
+    /**
+     * Clears the hall call at the floor of the given observer in its
+     * direction, if the elevator that stops there has been assigned to it,
+     * and lets the passengers leave and board.
+     */
+    private void serveHallCall(Elevator elevator, ElevatorObserver observer) {
+        long now = clock.currentTimeMillis();
+        hallCalls.serve(observer.getButton().getFloor(), observer.getButton().getDir(),
+                elevator.getNumber(), now);
+        boardPassengers(elevator, observer, now);
+    }
 
-                handleButtonQueue(elevator);
+    /**
+     * Assigns the hall call of an observer that an elevator gives up to an
+     * elevator again (possibly the same), keeping the time of the press. The
+     * pickup of the destination passengers assigned to the elevator stays
+     * with the elevator unless it has been stopped. A parking stop is
+     * dropped.
+     */
+    private void reassignHallCall(Elevator elevator, ElevatorObserver observer) {
+        if (Elevator.isParkingStop(observer)) {
+            return;
+        }
+        int floor = observer.getButton().getFloor();
+        int dir = observer.getButton().getDir();
+        int number = elevator.getNumber();
+        if (passengers.isPickup(number, floor, dir)) {
+            keepPickup(elevator, floor, dir);
+            HallCallTable.HallCall call = hallCalls.get(floor, dir);
+            if (call == null || call.getCar() != number) {
+                // a pickup of destination passengers only
+                return;
+            }
+        }
+        System.out.println("Button pressed on floor " + floor);
+        assignHallCall(floor, dir);
+    }
+
+    /**
+     * Called to enter a destination: a passenger at the given floor wants to
+     * go to the target floor. With the destination dispatch (see
+     * {@link #useDestinationDispatch(boolean)}), the passenger is assigned
+     * the elevator with the least cost at once: its estimated time of
+     * arrival at the floor (see {@link EtaDispatch}) plus, for a stop it
+     * does not make anyway, at the floor or at the target, a dwell for the
+     * new passenger and for each passenger it carries or is assigned. An
+     * elevator with open doors at the floor makes the stop anyway. The
+     * dispatch strategy may add to the cost (see
+     * {@link DispatchStrategy#extraCost(Elevator[], Elevator, int, int)}),
+     * e.g. the zoned dispatch for the elevators outside the zones of the
+     * trip. A full
+     * elevator is chosen only if all are full. Otherwise, the passenger
+     * presses the hall button, as with {@link #pressButton(int, int)}.
+     *
+     * @param floor The floor of the passenger.
+     * @param target The destination of the passenger.
+     * @return the number of the assigned elevator, 0 if none has been
+     * assigned yet
+     */
+    public int pressDestination(int floor, int target) {
+        if (floor > topFloor || floor < 0 || target > topFloor || target < 0
+                || floor == target) {
+            throw new IllegalArgumentException("Invalid arguments "
+                    + "for destination entry.");
+        }
+        int dir = target > floor ? 1 : -1;
+        long now = clock.currentTimeMillis();
+        if (!destinationDispatch) {
+            // the passenger presses the panel button on boarding
+            passengers.add(floor, target, 0, now);
+            pressButton(floor, dir);
+            return 0;
+        }
+        parking.record(floor, now);
+        dispatchStrategy.record(allElevators, floor, dir, target, now);
+        int car = assignPassenger(floor, target, now);
+        if (car > 0) {
+            destinationAssignments.incrementAndGet();
+        }
+        return car;
+    }
+
+    /**
+     * Assigns a passenger of the destination dispatch to an elevator and
+     * queues the pickup there.
+     *
+     * @return the number of the elevator, 0 if none can take the passenger
+     */
+    private int assignPassenger(int floor, int target, long pressed) {
+        int dir = target > floor ? 1 : -1;
+        Elevator elevator = selectCar(floor, target, dir);
+        if (elevator == null) {
+            // all elevators are stopped, the passenger takes any
+            passengers.add(floor, target, 0, pressed);
+            pressButton(floor, dir);
+            return 0;
+        }
+        passengers.add(floor, target, elevator.getNumber(), pressed);
+        elevator.registerObserver(new InnerObserver(elevator, new ElevatorButton(floor, dir, false)));
+        handleButtonQueue(elevator);
+        return elevator.getNumber();
+    }
+
+    /**
+     * Returns the elevator with the least cost for a passenger, preferring
+     * elevators with room (see {@link #pressDestination(int, int)}).
+     */
+    private Elevator selectCar(int floor, int target, int dir) {
+        DispatchStrategy strategy = dispatchStrategy;
+        EtaDispatch eta = etaOf(strategy);
+        int capacity = passengers.getCapacity();
+        Elevator best = null;
+        boolean bestFull = true;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (Elevator elevator : allElevators) {
+            if (elevator == null || elevator.isStop()) {
+                continue;
+            }
+            int number = elevator.getNumber();
+            int load = passengers.getLoad(number);
+            double cost = eta.eta(elevator, floor, dir) + strategy.extraCost(allElevators, elevator, floor, target);
+            boolean boarding = doorCycles[number].isBusy() && elevator.isAtFloor()
+                    && elevator.getCurrentFloor() == floor;
+            if (elevator.getQueuedObserver(floor, dir) == null && !boarding) {
+                cost += EtaDispatch.DWELL * (1 + load);
+            }
+            if (!passengers.isTarget(number, target) && elevator.countStops(target, target) == 0) {
+                cost += EtaDispatch.DWELL * (1 + load);
+            }
+            boolean full = load >= capacity;
+            if (best == null || (bestFull && !full) || (full == bestFull && cost < bestCost)) {
+                best = elevator;
+                bestFull = full;
+                bestCost = cost;
             }
-        } finally {
-            stopTimer();
         }
+        return best;
     }
 
     /**
-     * For as long there is observers queued in the elevator, this method will
-     * handle any movement command (such as doors, engine) for the elevator.
-     * Note: This method runs on a separate thread if it's not already handling
-     * the elevator.
-     *
-     * @param elevator The elevator to handle the queue for.
+     * Keeps the pickup of the destination passengers waiting at the floor
+     * for the elevator queued, or assigns them to other elevators if the
+     * elevator has been stopped.
      */
-    public void handleButtonQueue(Elevator elevator) {
-        synchronized (activeElevators) {
-            if (activeElevators.contains(elevator)) {
-                return;
-            }
-            activeElevators.add(elevator);
+    private void keepPickup(Elevator elevator, int floor, int dir) {
+        if (!elevator.isStop()) {
+            elevator.registerObserver(new InnerObserver(elevator, new ElevatorButton(floor, dir, false)));
+            return;
+        }
+        for (PassengerTable.Passenger passenger : passengers.withdraw(elevator.getNumber(), floor, dir)) {
+            assignPassenger(floor, passenger.getTarget(), passenger.getPressed());
         }
-        new Thread(() -> {
-            try {
-                ElevatorObserver observer = elevator.getNextUpObserver();
-                if (observer == null) {
-                    observer = elevator.getNextDownObserver();
-                }
-                while (observer != null) {
-                    if (elevator.isStop()) {
-                        return;
-                    }
-                    int dir = 0;
-
-                    if (elevator.Getpos() - 0.001 < observer.getButton().getFloor()) {
-                        dir = 1;
-                    } else if (elevator.Getpos() + 0.001 > observer.getButton().getFloor()) {
-                        dir = -1;
-                    }
-                    boolean isOnAFloor = elevator.Getpos() % 1 < 0.04 || elevator.Getpos() % 1 > 0.97;
-                    if (dir != 0 && (!isOnAFloor || elevator.getCurrentFloor() != observer.getButton().getFloor())) {
-                        stream.println("m " + elevator.getNumber() + " " + dir);
-                        observer.waitPosition();
-                    } else if (isOnAFloor) {
-                        shouldStop.set(true);
-                    }
-
-                    if (shouldStop.get()) {
-                        shouldStop.set(false);
-                        elevator.removeObserver(observer);
-                        stopElevator(elevator);
-                    } else if (!observer.getButton().isPanelButton()) {
-                        elevator.removeObserver(observer);
-                        pressButton(observer.getButton().getFloor(), observer.getButton().getDir());
-                    }
-
-                    if (dir == 1) {
-                        observer = elevator.getNextUpObserver();
-                        if (observer == null) {
-                            observer = elevator.getNextDownObserver();
-                        }
-                    } else {
-                        observer = elevator.getNextDownObserver();
-
-                        if (observer == null) {
-                            observer = elevator.getNextUpObserver();
-                        }
-                    }
-                }
-            } finally {
-                synchronized (activeElevators) {
-                    activeElevators.remove(elevator);
-                }
-            }
-        }).start();
     }
 
-    private void simulateDoors(Elevator elevator) {
-        stream.println("d " + elevator.getNumber() + " 1");
-        try {
-            Thread.sleep(3000);
-        } catch (InterruptedException ex) {
-            System.err.println("Interrupted while opening the doors for "
-                    + "elevator " + elevator.getNumber() + ". Error: "
-                    + ex.getMessage());
+    /**
+     * Lets the passengers of the elevator stopping at the floor leave and,
+     * at a hall stop, the passengers waiting there board and press the
+     * panel buttons of their destinations. The stops of the destinations are
+     * queued without a direction, so they do not share the queue entry of a
+     * hall call. The passengers who do not fit try again when the elevator
+     * has left, once per elevator, floor and direction.
+     */
+    private void boardPassengers(Elevator elevator, ElevatorObserver observer, long now) {
+        int floor = observer.getButton().getFloor();
+        int dir = observer.getButton().getDir();
+        int number = elevator.getNumber();
+        passengers.alight(number, floor, now);
+        if (observer.getButton().isPanelButton()) {
+            return;
         }
-        stream.println("d " + elevator.getNumber() + " -1");
-        try {
-            Thread.sleep(1000);
-        } catch (InterruptedException ex) {
-            System.err.println("Interrupted while closing the doors for "
-                    + "elevator " + elevator.getNumber() + ". Error: "
-                    + ex.getMessage());
+        List<PassengerTable.Passenger> boarded = passengers.board(number, floor, dir, now);
+        for (PassengerTable.Passenger passenger : boarded) {
+            elevator.registerObserver(new InnerObserver(elevator,
+                    new ElevatorButton(passenger.getTarget(), 0, true)));
+        }
+        int retry = ((number * (topFloor + 1)) + floor) * 2 + (dir > 0 ? 1 : 0);
+        if ((passengers.isPickup(number, floor, dir) || passengers.isPickup(0, floor, dir))
+                && boardingRetries.add(retry)) {
+            clock.schedule(doorDwell + DOOR_TIMEOUT, () -> {
+                boardingRetries.remove(retry);
+                for (PassengerTable.Passenger passenger : passengers.withdraw(number, floor, dir)) {
+                    assignPassenger(floor, passenger.getTarget(), passenger.getPressed());
+                }
+                if (passengers.isPickup(0, floor, dir)) {
+                    pressButton(floor, dir);
+                }
+            });
         }
     }
 
@@ -298,7 +1137,9 @@ public class ElevatorController implements Runnable {
             if (floor == Elevators.SPECIAL_FOR_STOP) {
                 immediateStopElevator(elevator);
                 return;
-            } else if (elevator.isStop()) {
+            }
+            boolean released = elevator.isStop();
+            if (released) {
                 elevator.setStop(false);
             }
 
@@ -306,19 +1147,201 @@ public class ElevatorController implements Runnable {
             InnerObserver observer = new InnerObserver(elevator, button);
             elevator.registerObserver(observer);
             handleButtonQueue(elevator);
+            if (released) {
+                assignUnassignedCalls();
+            }
         } finally {
             stopTimer();
         }
     }
 
+    /**
+     * Assigns the hall calls no elevator could take while all were stopped,
+     * now that an elevator has been released.
+     */
+    private void assignUnassignedCalls() {
+        for (HallCallTable.HallCall call : hallCalls.getPendingCalls()) {
+            if (call.getStatus() == HallCallTable.Status.UNASSIGNED
+                    && hallCalls.reclaim(call.getFloor(), call.getDir())) {
+                assignHallCall(call.getFloor(), call.getDir());
+            }
+        }
+    }
+
+    /**
+     * Stops the elevator and hands its hall calls back to the dispatch, so
+     * that other elevators take them; its car calls stay queued until the
+     * elevator is released by a panel button. A stopped elevator is not
+     * chosen by the dispatch strategies; while all elevators are stopped,
+     * the hall calls stay pending unassigned until one is released.
+     */
     private void immediateStopElevator(Elevator elevator) {
         elevator.setStop(true);
         stream.println("m " + elevator.getNumber() + " 0");
+        Arrival arrival = arrivals.get(elevator.getNumber());
+        if (arrival != null) {
+            // the queue worker gives up whatever it waits for
+            complete(arrival, false);
+        }
+        for (ElevatorObserver observer : elevator.drainHallObservers()) {
+            if (!Elevator.isParkingStop(observer)) {
+                drainedCalls.incrementAndGet();
+            }
+            reassignHallCall(elevator, observer);
+        }
+        reassignHallCalls();
+    }
+
+    /**
+     * Notes that the elevator has run out of work and schedules a parking
+     * pass for when it has been idle for the parking delay, unless one is
+     * scheduled already or the elevator has been parked. If the dispatch
+     * strategy has a home floor for the elevator (see
+     * {@link DispatchStrategy#getHomeFloor(Elevator[], Elevator)}), it
+     * returns there at once instead.
+     */
+    private void scheduleParking(Elevator elevator) {
+        if (elevator.isStop() || !elevator.isIdle()) {
+            return;
+        }
+        int home = dispatchStrategy.getHomeFloor(allElevators, elevator);
+        if (home >= 0) {
+            if (idleSince.compareAndSet(elevator.getNumber(), BUSY, PARKED)
+                    && !(elevator.isAtFloor() && elevator.getCurrentFloor() == home)) {
+                homeReturns.incrementAndGet();
+                elevator.registerObserver(new InnerObserver(elevator, new ElevatorButton(home, 0, false)));
+                handleButtonQueue(elevator);
+            }
+            return;
+        }
+        long delay = parkingDelay;
+        if (delay == 0 || !idleSince.compareAndSet(elevator.getNumber(), BUSY, clock.currentTimeMillis())) {
+            return;
+        }
+        if (parkingScheduled.compareAndSet(false, true)) {
+            clock.schedule(delay, this::parkIdleElevators);
+        }
+    }
+
+    /**
+     * Sends the elevators that have been idle for the parking delay to the
+     * floors the parking policy chooses for them (see
+     * {@link #useParking(long, double)}). The elevators parked before stay
+     * where they are and the others take the best floors left one at a
+     * time, unless parking all idle elevators anew is better by more than a
+     * floor, e.g. when the demand has shifted. Then the lowest elevator takes
+     * the lowest floor and so on, which minimizes the travel on a line.
+     */
+    private void parkIdleElevators() {
+        parkingScheduled.set(false);
+        long delay = parkingDelay;
+        if (delay == 0) {
+            return;
+        }
+        long now = clock.currentTimeMillis();
+        long next = Long.MAX_VALUE;
+        ArrayList<Elevator> idle = new ArrayList<>();
+        ArrayList<Double> positions = new ArrayList<>();
+        int due = 0;
+        for (Elevator elevator : allElevators) {
+            if (elevator == null || elevator.isStop() || !elevator.isIdle()
+                    || doorCycles[elevator.getNumber()].isBusy()) {
+                continue;
+            }
+            long since = idleSince.get(elevator.getNumber());
+            if (since == BUSY) {
+                continue;
+            }
+            if (since != PARKED) {
+                if (now - since < delay) {
+                    next = Math.min(next, since + delay);
+                    continue;
+                }
+                due++;
+            }
+            // a parking elevator is where it is heading
+            ElevatorObserver current = elevator.getCurrentObserver();
+            double position = elevator.isParking() && current != null
+                    ? current.getButton().getFloor() : elevator.Getpos();
+            int i = 0;
+            while (i < positions.size() && positions.get(i) <= position) {
+                i++;
+            }
+            idle.add(i, elevator);
+            positions.add(i, position);
+        }
+        if (next != Long.MAX_VALUE && parkingScheduled.compareAndSet(false, true)) {
+            clock.schedule(next - now, this::parkIdleElevators);
+        }
+        if (due == 0) {
+            return;
+        }
+        double[] demand = parking.getDemand(now);
+        int[] joint = ParkingPolicy.place(demand, idle.size());
+        if (joint == null) {
+            return;
+        }
+        double[] stay = new double[idle.size()];
+        double[] plan = new double[idle.size()];
+        double[] placed = new double[idle.size()];
+        int fixed = 0;
+        for (int i = 0; i < stay.length; i++) {
+            stay[i] = positions.get(i);
+            plan[i] = joint[i];
+            if (idleSince.get(idle.get(i).getNumber()) == PARKED) {
+                placed[fixed++] = stay[i];
+            }
+        }
+        // the best floors left one at a time, each to the closest due elevator
+        double[] incremental = stay.clone();
+        boolean[] taken = new boolean[stay.length];
+        for (int n = fixed; n < stay.length; n++) {
+            int floor = ParkingPolicy.placeNext(demand, Arrays.copyOf(placed, n));
+            placed[n] = floor;
+            int closest = -1;
+            for (int i = 0; i < stay.length; i++) {
+                if (!taken[i] && idleSince.get(idle.get(i).getNumber()) != PARKED
+                        && (closest < 0 || Math.abs(stay[i] - floor) < Math.abs(stay[closest] - floor))) {
+                    closest = i;
+                }
+            }
+            taken[closest] = true;
+            incremental[closest] = floor;
+        }
+        if (ParkingPolicy.expectedDistance(demand, incremental)
+                - ParkingPolicy.expectedDistance(demand, plan) <= 1) {
+            plan = incremental;
+        }
+        double gain = (ParkingPolicy.expectedDistance(demand, stay)
+                - ParkingPolicy.expectedDistance(demand, plan)) * millisPerFloor;
+        if (gain > millisPerFloor / 2) {
+            parkingPasses.incrementAndGet();
+            parkingGain.addAndGet(Math.round(gain));
+        }
+        for (int i = 0; i < plan.length; i++) {
+            Elevator elevator = idle.get(i);
+            long since = idleSince.get(elevator.getNumber());
+            if (since == PARKED && plan[i] == stay[i]
+                    || !idleSince.compareAndSet(elevator.getNumber(), since, PARKED)) {
+                continue;
+            }
+            if (gain <= millisPerFloor / 2 || plan[i] == stay[i]) {
+                // parked where it is
+                continue;
+            }
+            int floor = (int) plan[i];
+            parkingMoves.incrementAndGet();
+            elevator.registerObserver(new InnerObserver(elevator, new ElevatorButton(floor, 0, false)));
+            handleButtonQueue(elevator);
+        }
     }
 
+    /**
+     * Stops the elevator and starts its door cycle.
+     */
     private void stopElevator(Elevator elevator) {
         stream.println("m " + elevator.getNumber() + " 0");
-        simulateDoors(elevator);
+        doorCycles[elevator.getNumber()].open();
     }
 
     public void startTimer() {
@@ -339,7 +1362,6 @@ public class ElevatorController implements Runnable {
         Elevator elevator;
         ElevatorButton button;
         Semaphore semaphore = new Semaphore(1);
-        Thread waitingThread = null;
         double rangeAccuracy = 0.01;
 
         InnerObserver(Elevator elevator, ElevatorButton button) {
@@ -347,14 +1369,21 @@ public class ElevatorController implements Runnable {
             this.button = button;
         }
 
+        /**
+         * Completes the arrival the queue worker of the elevator waits for,
+         * if the elevator has reached or passed its floor. Other workers are
+         * not woken.
+         */
         @Override
         public void signalPosition(int floor) {
             stream.println("s " + elevator.getNumber() + " " + floor);
-            lock.lock();
-            try {
-                condition[elevator.getNumber()].signalAll();
-            } finally {
-                lock.unlock();
+            if (actors != null) {
+                actors[elevator.getNumber()].post(Event.ARRIVED, this);
+                return;
+            }
+            Arrival arrival = arrivals.get(elevator.getNumber());
+            if (arrival != null && arrival.isReachedAt(floor)) {
+                complete(arrival, true);
             }
         }
 
@@ -363,40 +1392,49 @@ public class ElevatorController implements Runnable {
             int floor = button.getFloor();
             System.out.println(elevator.getNumber() + " waiting on floor "
                     + floor + ".");
-            waitingThread = Thread.currentThread();
-
-            if (floor >= elevator.Getpos() - rangeAccuracy) {
-                while (elevator.Getpos() + rangeAccuracy <= floor && elevator.getCurrentObserver() == this) {
-                    try {
-                        lock.lock();
-                        try {
-                            condition[elevator.getNumber()].await();
-                        } finally {
-                            lock.unlock();
-                        }
-                    } catch (InterruptedException ex) {
-                        return;
-                    }
-                }
-            } else {
-                while (elevator.Getpos() - rangeAccuracy >= floor && elevator.getCurrentObserver() == this) {
-                    try {
-                        lock.lock();
-                        try {
-                            condition[elevator.getNumber()].await();
-                        } finally {
-                            lock.unlock();
-                        }
-                    } catch (InterruptedException ex) {
-                        return;
-                    }
+            boolean upwards = floor >= elevator.Getpos() - rangeAccuracy;
+            while (!reached(floor, upwards) && elevator.getCurrentObserver() == this) {
+                if (!await(new Arrival(this, floor, upwards))) {
+                    return;
                 }
             }
-            shouldStop.set(true);
-            waitingThread = null;
+            shouldStop.set(elevator.getNumber(), 1);
             elevator.removeObserver(InnerObserver.this);
         }
 
+        private boolean reached(int floor, boolean upwards) {
+            return upwards ? elevator.Getpos() + rangeAccuracy > floor
+                    : elevator.Getpos() - rangeAccuracy < floor;
+        }
+
+        /**
+         * Waits until the given arrival is completed. The clock is told that
+         * this task blocks; the completing thread tells the clock that the
+         * task runs again. If the elevator has reached the floor or this
+         * current observer has changed in the meantime, the arrival is
+         * withdrawn instead.
+         *
+         * @return false if this observer has been preempted
+         */
+        private boolean await(Arrival arrival) {
+            int number = elevator.getNumber();
+            arrivals.set(number, arrival);
+            clock.leave();
+            if ((reached(arrival.floor, arrival.upwards) || elevator.getCurrentObserver() != this)
+                    && arrivals.compareAndSet(number, arrival, null)) {
+                clock.enter();
+                return true;
+            }
+            try {
+                return arrival.get();
+            } catch (InterruptedException | ExecutionException e) {
+                if (arrivals.compareAndSet(number, arrival, null)) {
+                    clock.enter();
+                }
+                return false;
+            }
+        }
+
         @Override
         public ElevatorButton getButton() {
             return button;
@@ -414,16 +1452,492 @@ public class ElevatorController implements Runnable {
 
         @Override
         public void interruptWait() {
-            if (waitingThread != null) {
-                waitingThread.interrupt();
-            }
+            interrupt();
         }
 
         @Override
         public void signalStop() {
-            if (waitingThread != null) {
-                waitingThread.interrupt();
+            interrupt();
+        }
+
+        private void interrupt() {
+            if (actors != null) {
+                actors[elevator.getNumber()].post(Event.PREEMPT, this);
+                return;
+            }
+            Arrival arrival = arrivals.get(elevator.getNumber());
+            if (arrival != null && arrival.observer == this) {
+                complete(arrival, false);
+            }
+        }
+    }
+
+    /**
+     * Completes the arrival of an elevator if it is still pending, telling
+     * the clock that the waiting queue worker runs again. The worker is
+     * woken through the clock (see {@link SimulationClock#wake(Runnable)}).
+     *
+     * @param arrival the arrival
+     * @param reached true if the elevator has reached the floor, false if
+     * the observer has been preempted
+     */
+    private void complete(Arrival arrival, boolean reached) {
+        if (arrivals.compareAndSet(arrival.observer.elevator.getNumber(), arrival, null)) {
+            clock.wake(() -> {
+                clock.enter();
+                arrival.complete(reached);
+            });
+        }
+    }
+
+    /**
+     * The arrival of an elevator at the floor of an observer, which the queue
+     * worker of the elevator waits for. Completed with true by the signal of
+     * the floor (or of a floor beyond it), with false if the observer is
+     * preempted. An elevator has at most one pending arrival.
+     */
+    private static class Arrival extends CompletableFuture<Boolean> {
+
+        final InnerObserver observer;
+        final int floor;
+        final boolean upwards;
+
+        Arrival(InnerObserver observer, int floor, boolean upwards) {
+            this.observer = observer;
+            this.floor = floor;
+            this.upwards = upwards;
+        }
+
+        boolean isReachedAt(int signalled) {
+            return upwards ? signalled >= floor : signalled <= floor;
+        }
+    }
+
+    /**
+     * The states of the door cycle of an elevator.
+     */
+    private enum DoorState {
+        /**
+         * The doors are closed, the elevator serves its queue
+         */
+        CLOSED,
+        /**
+         * The doors have been told to open
+         */
+        OPENING,
+        /**
+         * The doors are open for the dwell
+         */
+        OPEN,
+        /**
+         * The doors have been told to close
+         */
+        CLOSING
+    }
+
+    /**
+     * The door cycle of an elevator that has stopped at a floor: the doors
+     * open, stay open for the dwell and close, then the elevator serves its
+     * queue again. The cycle is a state machine driven by the status of the
+     * doors, which the simulator reports when they stop (see
+     * {@link Elevator#doorStopped()}), and by timeouts scheduled with the
+     * clock, so no thread waits for the doors. A timeout that is no longer
+     * current when it expires is ignored. A call at the floor of the elevator
+     * during the cycle is served at once: it keeps the doors open, or opens
+     * them again while they close.
+     */
+    private class DoorCycle {
+
+        private final Elevator elevator;
+        private DoorState state = DoorState.CLOSED;
+        private long opened;
+        private int timeout;
+
+        DoorCycle(Elevator elevator) {
+            this.elevator = elevator;
+        }
+
+        /**
+         * Checks whether the cycle is running, i.e. the doors are not closed.
+         */
+        synchronized boolean isBusy() {
+            return state != DoorState.CLOSED;
+        }
+
+        /**
+         * Starts the cycle: opens the doors.
+         */
+        synchronized void open() {
+            state = DoorState.OPENING;
+            stream.println("d " + elevator.getNumber() + " 1");
+            schedule(DOOR_TIMEOUT);
+        }
+
+        /**
+         * Called when the doors have stopped, completely open or closed.
+         */
+        void doorStopped() {
+            boolean closed = false;
+            synchronized (this) {
+                int status = elevator.Getdoorstat();
+                if (state == DoorState.OPENING && status == DoorStatus.OPEN4) {
+                    opened();
+                } else if (state == DoorState.CLOSING && status == DoorStatus.CLOSED) {
+                    state = DoorState.CLOSED;
+                    closed = true;
+                }
+            }
+            if (closed) {
+                resume();
+            }
+        }
+
+        /**
+         * Called when the queue of the elevator has changed. Serves the calls
+         * at the floor of the elevator if the cycle is running, and closes
+         * the doors early if the elevator has got a call at another floor.
+         *
+         * @return true if the cycle is running, false if the doors are closed
+         */
+        synchronized boolean call() {
+            if (state == DoorState.CLOSED) {
+                return false;
+            }
+            boolean served = false;
+            int floor = elevator.getCurrentFloor();
+            for (int dir = -1; dir <= 1; dir++) {
+                ElevatorObserver observer = elevator.getQueuedObserver(floor, dir);
+                if (observer != null) {
+                    elevator.removeObserver(observer);
+                    serveHallCall(elevator, observer);
+                    served = true;
+                }
+            }
+            if (served && state == DoorState.CLOSING) {
+                state = DoorState.OPENING;
+                stream.println("d " + elevator.getNumber() + " 1");
+                schedule(DOOR_TIMEOUT);
+            } else if (state == DoorState.OPEN) {
+                if (served) {
+                    opened = clock.currentTimeMillis();
+                }
+                dwell();
+            }
+            return true;
+        }
+
+        /**
+         * The doors are completely open (or should be by now): starts the
+         * dwell.
+         */
+        private void opened() {
+            state = DoorState.OPEN;
+            opened = clock.currentTimeMillis();
+            dwell();
+        }
+
+        /**
+         * Closes the doors when they have been open long enough, otherwise
+         * schedules the end of the dwell: the minimum dwell if the elevator
+         * has a call at another floor, the full dwell otherwise.
+         */
+        private void dwell() {
+            long open = clock.currentTimeMillis() - opened;
+            long left = (elevator.isQueuedElsewhere(elevator.getCurrentFloor())
+                    ? minimumDwell : doorDwell) - open;
+            if (left > 0) {
+                schedule(left);
+                return;
+            }
+            state = DoorState.CLOSING;
+            stream.println("d " + elevator.getNumber() + " -1");
+            schedule(DOOR_TIMEOUT);
+        }
+
+        /**
+         * Schedules a timeout, which replaces the current one.
+         */
+        private void schedule(long delay) {
+            int current = ++timeout;
+            clock.schedule(delay, () -> expire(current));
+        }
+
+        /**
+         * Called when a timeout expires: ends the dwell, or goes on if the
+         * doors have not reported their status in time.
+         */
+        private void expire(int expired) {
+            boolean closed = false;
+            synchronized (this) {
+                if (expired != timeout) {
+                    return;
+                }
+                switch (state) {
+                    case OPENING:
+                        opened();
+                        break;
+                    case OPEN:
+                        dwell();
+                        break;
+                    case CLOSING:
+                        state = DoorState.CLOSED;
+                        closed = true;
+                        break;
+                    default:
+                }
+            }
+            if (closed) {
+                resume();
+            }
+        }
+
+        /**
+         * The doors are closed: the elevator serves its queue again.
+         */
+        private void resume() {
+            if (actors != null) {
+                actors[elevator.getNumber()].post(Event.DOORS_CLOSED, null);
+            } else {
+                handleButtonQueue(elevator);
+            }
+        }
+    }
+
+    /**
+     * The events processed by the actor of an elevator.
+     */
+    private enum Event {
+        /**
+         * The queue of the elevator has changed
+         */
+        WAKE,
+        /**
+         * The elevator has reached a floor
+         */
+        ARRIVED,
+        /**
+         * The observer served by the elevator has been taken over by another
+         */
+        PREEMPT,
+        /**
+         * The door cycle is done, the doors are closed
+         */
+        DOORS_CLOSED
+    }
+
+    /**
+     * An event in the mailbox of an actor.
+     */
+    private static class Message {
+
+        final Event event;
+        final InnerObserver observer;
+
+        Message(Event event, InnerObserver observer) {
+            this.event = event;
+            this.observer = observer;
+        }
+    }
+
+    /**
+     * The actor of one elevator in the actor mode. It serves the queue of the
+     * elevator as the queue worker thread does, but as a state machine driven
+     * by the events in its mailbox: it never blocks, and when the elevator
+     * stops it waits for the door cycle to end. The events of one actor are processed one at a time, in the
+     * order they were posted, by one of the threads of the pool. Every posted
+     * event counts as a running controller task of the clock until it has
+     * been processed.
+     */
+    private class CarActor implements Runnable {
+
+        private final Elevator elevator;
+        private final ConcurrentLinkedQueue<Message> mailbox = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // state, only accessed while processing events
+        private ElevatorObserver target;
+        private boolean upwards;
+        private int dir;
+
+        CarActor(Elevator elevator) {
+            this.elevator = elevator;
+        }
+
+        /**
+         * Posts an event to the mailbox and schedules the actor on the pool,
+         * through the clock (see {@link SimulationClock#wake(Runnable)}).
+         */
+        void post(Event event, InnerObserver observer) {
+            clock.wake(() -> {
+                clock.enter();
+                mailbox.add(new Message(event, observer));
+                int depth = mailboxDepth.incrementAndGet();
+                int max;
+                while (depth > (max = maxMailboxDepth.get())
+                        && !maxMailboxDepth.compareAndSet(max, depth)) {
+                }
+                if (scheduled.compareAndSet(false, true)) {
+                    pool.execute(this);
+                }
+            });
+        }
+
+        /**
+         * Processes the events in the mailbox until it is empty.
+         */
+        @Override
+        public void run() {
+            while (true) {
+                Message message;
+                while ((message = mailbox.poll()) != null) {
+                    mailboxDepth.decrementAndGet();
+                    messages.incrementAndGet();
+                    try {
+                        process(message);
+                    } catch (RuntimeException e) {
+                        System.err.println("Elevator " + elevator.getNumber()
+                                + ": failed to process " + message.event + ": " + e);
+                    } finally {
+                        clock.leave();
+                    }
+                }
+                scheduled.set(false);
+                if (mailbox.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+
+        private void process(Message message) {
+            if (elevator.isStop()) {
+                target = null;
+                return;
             }
+            switch (message.event) {
+                case WAKE:
+                    if (target == null && !doorCycles[elevator.getNumber()].isBusy()) {
+                        serve(next());
+                    }
+                    break;
+                case ARRIVED:
+                    checkArrival();
+                    break;
+                case PREEMPT:
+                    if (target != null && target == message.observer) {
+                        // as the queue worker when waitPosition is interrupted
+                        ElevatorObserver observer = target;
+                        target = null;
+                        if (!observer.getButton().isPanelButton()) {
+                            elevator.removeObserver(observer);
+                            reassignHallCall(elevator, observer);
+                        }
+                        serve(next());
+                    }
+                    break;
+                case DOORS_CLOSED:
+                    serve(next());
+                    break;
+            }
+        }
+
+        /**
+         * Returns the next observer to serve, preferably in the direction of
+         * the last movement.
+         */
+        private ElevatorObserver next() {
+            ElevatorObserver observer;
+            if (dir == 1) {
+                observer = elevator.getNextUpObserver();
+                if (observer == null) {
+                    observer = elevator.getNextDownObserver();
+                }
+            } else {
+                observer = elevator.getNextDownObserver();
+                if (observer == null) {
+                    observer = elevator.getNextUpObserver();
+                }
+            }
+            return observer;
+        }
+
+        /**
+         * Starts serving the given observer: moves towards its floor, or
+         * stops and opens the doors if the elevator is already there.
+         */
+        private void serve(ElevatorObserver observer) {
+            if (observer == null) {
+                // out of work
+                reassignHallCalls();
+                scheduleParking(elevator);
+                return;
+            }
+            int floor = observer.getButton().getFloor();
+            double position = elevator.Getpos();
+            dir = 0;
+            if (position - 0.001 < floor) {
+                dir = 1;
+            } else if (position + 0.001 > floor) {
+                dir = -1;
+            }
+            boolean isOnAFloor = elevator.isAtFloor();
+            if (dir != 0 && (!isOnAFloor || elevator.getCurrentFloor() != floor)) {
+                stream.println("m " + elevator.getNumber() + " " + dir);
+                System.out.println(elevator.getNumber() + " waiting on floor " + floor + ".");
+                target = observer;
+                upwards = floor >= position - 0.01;
+                checkArrival();
+            } else if (isOnAFloor) {
+                elevator.removeObserver(observer);
+                arrive(observer);
+            } else if (!observer.getButton().isPanelButton()) {
+                elevator.removeObserver(observer);
+                reassignHallCall(elevator, observer);
+                serve(next());
+            }
+        }
+
+        /**
+         * Stops at the floor of the target if the elevator has reached it or
+         * the target is no longer the current observer of the elevator, as
+         * the queue worker does when <code>waitPosition</code> returns.
+         */
+        private void checkArrival() {
+            if (target != null && (target != elevator.getCurrentObserver() || reached())) {
+                ElevatorObserver observer = target;
+                target = null;
+                elevator.removeObserver(observer);
+                arrive(observer);
+            }
+        }
+
+        /**
+         * Stops at the floor of the given observer: opens the doors, or
+         * keeps them closed and goes on with the queue at a parking stop.
+         */
+        private void arrive(ElevatorObserver observer) {
+            if (Elevator.isParkingStop(observer)) {
+                stream.println("m " + elevator.getNumber() + " 0");
+                serve(next());
+                return;
+            }
+            serveHallCall(elevator, observer);
+            stop();
+        }
+
+        /**
+         * Checks whether the elevator has reached the floor of the target, as
+         * <code>InnerObserver.waitPosition</code> does.
+         */
+        private boolean reached() {
+            int floor = target.getButton().getFloor();
+            double position = elevator.Getpos();
+            return upwards ? position + 0.01 > floor : position - 0.01 < floor;
+        }
+
+        /**
+         * Stops the elevator and starts its door cycle.
+         */
+        private void stop() {
+            stopElevator(elevator);
         }
     }
 }
@@ -44,7 +44,7 @@ public class ElevatorEvents extends WindowAdapter implements ActionListener {
      */
     @Override
     public void actionPerformed(ActionEvent e) {
-        new Thread(() -> {
+        elevatorController.dispatch(() -> {
             out.println(e.getActionCommand());
             String[] tokens = new String[3];
             StringTokenizer tokenizer = new StringTokenizer(e.getActionCommand());
@@ -71,7 +71,7 @@ public class ElevatorEvents extends WindowAdapter implements ActionListener {
                     System.err.println("Illegal command: " + e.getActionCommand());
                 }
             }
-        }).start();
+        });
     }
 
     /**
@@ -108,6 +108,12 @@ public class ElevatorGUI extends JFrame implements ActionListener, ChangeListene
         Container contentPane = getContentPane();
         contentPane.setLayout(new BorderLayout());
         ElevatorController controller = new ElevatorController(elevators.allElevators);
+        controller.useVirtualThreads(Elevators.virtualThreads);
+        controller.setDispatchStrategy(DispatchStrategy.forName(Elevators.dispatch, velocity));
+        controller.setDoorDwell(Elevators.dwell,
+                Elevators.minDwell < 0 ? Elevators.dwell : Elevators.minDwell);
+        controller.useDestinationDispatch(Elevators.destination);
+        controller.useParking(Elevators.park, velocity);
         new Thread(controller).start();
         ElevatorEvents listener = new ElevatorEvents(io.out, controller);
         io = new ElevatorIO(elevators);
@@ -244,6 +250,11 @@ public class ElevatorGUI extends JFrame implements ActionListener, ChangeListene
         p2.setPreferredSize(insideControlsPanelSize);
         p1.add(p2);
         contentPane.add(p1, "East"); // add floor controls panel
+        if (Elevators.simulator != null) {
+            // the Timer renders, the simulation thread drives the elevators
+            velocity = Elevators.simulator.getVelocity();
+            Elevators.simulator.start();
+        }
         //Set up a timer that calls this object's action handler.
         timer = new Timer(delay, this);
         timer.setInitialDelay(delay);
@@ -262,7 +273,9 @@ public class ElevatorGUI extends JFrame implements ActionListener, ChangeListene
      * predefined rate controlled with a JSlider guage
      */
     public void actionPerformed(ActionEvent e) { // from the timer
-        if (animateAllAtOnce) {
+        if (Elevators.simulator != null) {
+            graphics.renderAll(); // the simulation thread drives the Model
+        } else if (animateAllAtOnce) {
             graphics.animateAll();
         } else {
             graphics.animate(number);
@@ -284,6 +297,9 @@ public class ElevatorGUI extends JFrame implements ActionListener, ChangeListene
             int value = (int) source.getValue();
             delay = (101 - value) * delayStep;
             velocity = (double) (Elevators.step / delay);
+            if (Elevators.simulator != null && delay > 0) {
+                Elevators.simulator.setRate(1000.0 / delay);
+            }
             io.out.println("v " + velocity);
             if (delay == 0) {
                 if (!frozen) {
@@ -33,6 +33,8 @@ public class ElevatorGraphics {
     // own
     private Elevator[] allElevators;
     private java.io.PrintStream out;
+    private double[] lastPositions;
+    private int[] lastStats;
 
     /**
      * Creates an object with the ElevatorGraphics class, gets a reference to
@@ -56,51 +58,9 @@ public class ElevatorGraphics {
      * @see #animateAll()
      */
     public void animate(int number) { // only elevator with the current number
-        double position;
-        int stat, boxdir, doordir;
-        // to guarantee atomicity of this read-modify-write
-        synchronized (allElevators[number].motorLock) {
-            boxdir = allElevators[number].Getdir();
-            if (boxdir != Elevators.STOP) {
-                //get position;
-                position = allElevators[number].Getpos();
-                //modify position;
-                position = position + (double) (boxdir * Elevators.step); // OBS fixed ? !!!;
-                //contol position;
-                if (position < 0.0) {
-                    boxdir = Elevators.STOP;
-                    position = (double) 0.0;
-                }
-                if (position > topFloor) {
-                    boxdir = Elevators.STOP;
-                    position = topFloor;
-                }
-                //write back position and direction;
-                allElevators[number].Setpos(position);
-                allElevators[number].Setdir(boxdir);
-            }
-        }
-        // to guarantee atomicity of this read-modify-write
-        synchronized (allElevators[number].doorLock) {
-            doordir = allElevators[number].Getdoor();
-            if (doordir != Elevators.STOP) {
-                //get doorstat;
-                stat = allElevators[number].Getdoorstat();
-                //contol door;
-                if (stat == DoorStatus.CLOSED && doordir == Elevators.CLOSE) {
-                    doordir = Elevators.STOP;
-                }
-                if (stat == DoorStatus.OPEN4 && doordir == Elevators.OPEN) {
-                    doordir = Elevators.STOP;
-                }
-                //modify door;
-                stat = stat + doordir;
-                //write back doorstat and doordir;
-                allElevators[number].Setdoorstat(stat);
-                allElevators[number].Setdoor(doordir);
-            }
-        }
-        if (doordir != Elevators.STOP || boxdir != Elevators.STOP) {
+        boolean moved = allElevators[number].stepMotor(Elevators.step);
+        boolean doorMoved = allElevators[number].stepDoor();
+        if (moved || doorMoved) {
             presentation(number);
         }
         scalePresentation(number);
@@ -121,6 +81,31 @@ public class ElevatorGraphics {
         }
     }
 
+    /**
+     * Repaints the elevators whose position or door state has changed since
+     * the previous call, without stepping the Model. Used when the elevators
+     * are driven by an ElevatorSimulator thread and the Timer of the
+     * ElevatorGUI only renders the state of the Model.
+     */
+    public void renderAll() {
+        if (lastPositions == null) {
+            lastPositions = new double[numberOfElevators];
+            lastStats = new int[numberOfElevators];
+            java.util.Arrays.fill(lastStats, -1);
+        }
+        for (int i = 0; i < numberOfElevators; i++) {
+            double position = allElevators[i].Getpos();
+            int stat = allElevators[i].Getdoorstat();
+            if (position != lastPositions[i] || stat != lastStats[i]) {
+                lastPositions[i] = position;
+                lastStats[i] = stat;
+                ElevatorCanvas window = (ElevatorCanvas) allElevators[i].Getwin();
+                window.showElevator(position, stat);
+            }
+            scalePresentation(i);
+        }
+    }
+
     /**
      * Requests the corresponding ElevatorCanvas to repaint the given elevator
      * according to its current (new) state, prints a current position of the
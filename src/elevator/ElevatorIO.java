@@ -26,26 +26,36 @@ import elevator.ElevatorGUI;
  */
 public class ElevatorIO extends Thread {
 
-    // get global variables
-
-    int numberOfElevators = Elevators.numberOfElevators;
-    int numberOfFloors = Elevators.numberOfFloors;
-    int topFloor = Elevators.topFloor;
+    int numberOfElevators;
+    int numberOfFloors;
+    int topFloor;
     /**
      * The buffering character-input stream (BufferedReader) for reading char
      * and String from the input stream of the standard "input" or a TCP socket.
      * Used for reading control commands. Initialized to BufferedReader for
-     * reading from the standard input
+     * reading from the standard input. The input stream of the Elevators
+     * application; each ElevatorIO reads from its own stream, which is this
+     * one unless it has connected to its own client.
      */
     protected static BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
     /**
      * The print stream for printing action commands from buttons and current
      * positions of elevators to the output stream of the standard "output" or a
      * TCP socket. Initialized to PrintStream for printing to the standard
-     * output
+     * output. The output stream of the Elevators application and its GUI; each
+     * ElevatorIO prints to its own stream, which is this one unless it has
+     * connected to its own client.
      */
     protected static PrintStream out = System.out;
+    private BufferedReader input = in;
+    private volatile PrintStream output = out;
+    private final boolean shared;
+    private final ElevatorSimulator simulator;
+    private Building building;
     private Elevator[] allElevators;
+    private ElevatorController controller;
+    private SimulationClock clock;
+    private PrintWriter recorder;
 
     /**
      * Creates an instance of ElevatorIO that opens a TCP socket and waits until
@@ -60,30 +70,79 @@ public class ElevatorIO extends Thread {
     public ElevatorIO(Elevators elevators) {
         super();
         this.allElevators = elevators.allElevators;
+        this.numberOfElevators = Elevators.numberOfElevators;
+        this.numberOfFloors = Elevators.numberOfFloors;
+        this.topFloor = Elevators.topFloor;
+        this.simulator = Elevators.simulator;
+        this.shared = true;
         if (Elevators.tcp) {
             connectToClient(Elevators.inPort, Elevators.outPort);
         }
         if (Elevators.rmi) {
-            try {
-                if (System.getSecurityManager() == null) {
-                    System.setSecurityManager(new RMISecurityManager());
-                }
-                /*java.rmi.Naming.bind("//" + Elevators.rmiHost
-                 + ":" + Elevators.rmiPort
-                 + "/GetAll", (GetAll)(new GetAllImpl());*/
-                //new SocketPermission("localhost:1024-", "accept,connect,listen,resolve");
-                Naming.rebind("//localhost/GetAll", (GetAll) (new GetAllImpl()));
-            } catch (Exception e) {
-                System.err.println("Failed to create an RMI interface. Bye, bye.");
-                e.printStackTrace(System.err);
-                System.exit(1);
+            bindRMI();
+        }
+    }
+
+    /**
+     * Creates a GetAllImpl object for controlling Elevators via Java RMI and
+     * binds its reference (stub) to the "GetAll" name at the rmiregistry. The
+     * servants use the ElevatorIO of the Elevators application
+     * (<code>ElevatorGUI.io</code>), which must be set before.
+     */
+    static void bindRMI() {
+        try {
+            if (System.getSecurityManager() == null) {
+                System.setSecurityManager(new RMISecurityManager());
             }
+            /*java.rmi.Naming.bind("//" + Elevators.rmiHost
+             + ":" + Elevators.rmiPort
+             + "/GetAll", (GetAll)(new GetAllImpl());*/
+            //new SocketPermission("localhost:1024-", "accept,connect,listen,resolve");
+            Naming.rebind("//localhost/GetAll", (GetAll) (new GetAllImpl()));
+        } catch (Exception e) {
+            System.err.println("Failed to create an RMI interface. Bye, bye.");
+            e.printStackTrace(System.err);
+            System.exit(1);
         }
     }
 
+    /**
+     * Creates an instance of ElevatorIO for the elevators of a
+     * {@link Building}. The instance reads and prints the standard streams
+     * until it is connected to its own client with
+     * {@link #connectToClient(int, int)}, and it does not touch the streams or
+     * the Model of the Elevators application.
+     *
+     * @param building the building
+     * @param elevators the elevators of the building
+     * @param simulator the simulator that drives the elevators
+     */
+    ElevatorIO(Building building, Elevator[] elevators, ElevatorSimulator simulator) {
+        super("ElevatorIO " + building.getName());
+        this.building = building;
+        this.allElevators = elevators;
+        this.numberOfElevators = building.getNumberOfElevators();
+        this.topFloor = building.getTopFloor();
+        this.numberOfFloors = topFloor + 1;
+        this.simulator = simulator;
+        this.shared = false;
+    }
+
+    /**
+     * Returns the stream to which this ElevatorIO prints positions and
+     * replies.
+     *
+     * @return the output stream
+     */
+    public PrintStream getOutput() {
+        return output;
+    }
+
     /**
      * Opens a TCP socket or a couple of sockets (if different ports are
      * specified for input and output) and waits until a client(s) connects.
+     * The streams of the ElevatorIO of the Elevators application become the
+     * streams of the application.
      *
      * @param inPort the input port number (defaults to 4711)
      * @param outPort the output port number (defaults to 4711)
@@ -102,15 +161,19 @@ public class ElevatorIO extends Thread {
             c1.join();
         } catch (InterruptedException e) {
         }
-        in = new BufferedReader(new InputStreamReader(c1.getInputStream()));
+        input = new BufferedReader(new InputStreamReader(c1.getInputStream()));
         if (c2 != null) {
             try {
                 c2.join();
             } catch (InterruptedException e) {
             }
-            out = new PrintStream(c2.getOutputStream(), true);
+            output = new PrintStream(c2.getOutputStream(), true);
         } else {
-            out = new PrintStream(c1.getOutputStream(), true);
+            output = new PrintStream(c1.getOutputStream(), true);
+        }
+        if (shared) {
+            in = input;
+            out = output;
         }
     }
 
@@ -120,6 +183,13 @@ public class ElevatorIO extends Thread {
      * "quit" ("q") command is read from the stream.
      */
     public void run() {
+        if (building != null) {
+            if (building.getInPort() > 0) {
+                connectToClient(building.getInPort(), building.getOutPort());
+            }
+            readInput();
+            return;
+        }
         // give some time for GUI to start up
         try {
             sleep(3000);
@@ -137,82 +207,308 @@ public class ElevatorIO extends Thread {
         "d", "door",
         "s", "scale",
         "w", "where",
-        "v", "velocity"
+        "v", "velocity",
+        "t", "trip",
+        "stats"
     };
 
     /**
      * Reads elevator commands from the standard or the socket (if open) input
      * stream and executes over and over again until the input stream is closed
-     * or the "quit" is read from the stream
+     * or the "quit" is read from the stream. With a virtual clock, the
+     * commands are handed over to the simulation thread, which executes them
+     * between two ticks, so they are recorded at the exact tick when they
+     * take effect.
      */
     public void readInput() {
         String input;
-        StringTokenizer tokenizer;
-        int elevatorNumber = 0, value = 0;
-        String[] tokens = new String[3];
         try {
-            while ((input = in.readLine()) != null) {
-                if (input.equals("")) {
+            while ((input = this.input.readLine()) != null) {
+                if (clock == null) {
+                    inbound(input);
                     continue;
                 }
-                tokenizer = new StringTokenizer(input);
-                tokens[0] = tokenizer.nextToken();
-                if (tokens[0].equalsIgnoreCase("q") || tokens[0].equalsIgnoreCase("quit")) {
-                    System.out.println("Bye, bye");
-                    System.exit(0);
+                if (clock instanceof VirtualClock) {
+                    // executed by the simulation thread between two ticks
+                    final String command = input;
+                    ((VirtualClock) clock).scheduleAt(0, () -> inbound(command));
+                    continue;
                 }
-                tokens[1] = tokens[2] = null;
-                if (tokenizer.hasMoreTokens()) {
-                    try {
-                        tokens[1] = tokenizer.nextToken();
-                        elevatorNumber = Integer.parseInt(tokens[1]);
-                    } catch (NumberFormatException e) {
-                        System.err.println("Illegal command: " + input);
-                        continue;
-                    }
+                clock.enter();
+                try {
+                    inbound(input);
+                } finally {
+                    clock.leave();
                 }
-                if (tokenizer.hasMoreTokens()) {
-                    try {
-                        tokens[2] = tokenizer.nextToken();
-                        value = Integer.parseInt(tokens[2]);
-                    } catch (NumberFormatException e) {
-                        System.err.println("Illegal command: " + input);
-                        continue;
-                    }
+            }
+        } catch (IOException e) {
+            if (building != null) {
+                System.err.println(building.getName() + ": Cannot read input: " + e.getMessage());
+                return;
+            }
+            System.err.println("ReadInput: Cannot read input. See below. Exiting... Bye, bye");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parses and executes one elevator command line, e.g. "m 1 1". Called for
+     * each line read from the standard or the socket input stream and for
+     * each line printed by a controller connected with
+     * {@link #getLocalWriter()}. If a controller is set with
+     * {@link #setController(ElevatorController)}, the action commands of
+     * buttons ("b <i>f d</i>" and "p <i>n f</i>") are accepted as well and
+     * forwarded to the controller, so a headless Elevators can be loaded with
+     * button pressings from its input stream, a destination entry "t <i>f
+     * target</i>" is answered with "t <i>f target n</i>", where <i>n</i> is
+     * the assigned elevator (0 if none yet), and the "stats" command prints
+     * the metrics of the controller threads.
+     *
+     * @param input the command line to execute
+     */
+    public void execute(String input) {
+        StringTokenizer tokenizer;
+        int elevatorNumber = 0, value = 0;
+        String[] tokens = new String[3];
+        if (input.equals("")) {
+            return;
+        }
+        tokenizer = new StringTokenizer(input);
+        if (!tokenizer.hasMoreTokens()) {
+            return;
+        }
+        tokens[0] = tokenizer.nextToken();
+        if (tokens[0].equalsIgnoreCase("q") || tokens[0].equalsIgnoreCase("quit")) {
+            if (building != null) {
+                output.println("Bye, bye");
+                building.halt();
+                return;
+            }
+            System.out.println("Bye, bye");
+            System.exit(0);
+        }
+        tokens[1] = tokens[2] = null;
+        if (tokenizer.hasMoreTokens()) {
+            try {
+                tokens[1] = tokenizer.nextToken();
+                elevatorNumber = Integer.parseInt(tokens[1]);
+            } catch (NumberFormatException e) {
+                System.err.println("Illegal command: " + input);
+                return;
+            }
+        }
+        if (tokenizer.hasMoreTokens()) {
+            try {
+                tokens[2] = tokenizer.nextToken();
+                value = Integer.parseInt(tokens[2]);
+            } catch (NumberFormatException e) {
+                System.err.println("Illegal command: " + input);
+                return;
+            }
+        }
+        if ((tokens[0].equalsIgnoreCase("m") || tokens[0].equalsIgnoreCase("move"))
+                && tokens[1] != null && tokens[2] != null) {
+            motor(elevatorNumber, value);
+            return;
+        }
+        if ((tokens[0].equalsIgnoreCase("s") || tokens[0].equalsIgnoreCase("scale"))
+                && tokens[1] != null && tokens[2] != null) {
+            scale(elevatorNumber, value);
+            return;
+        }
+        if ((tokens[0].equalsIgnoreCase("d") || tokens[0].equalsIgnoreCase("door"))
+                && tokens[1] != null && tokens[2] != null) {
+            door(elevatorNumber, value);
+            return;
+        }
+        if ((tokens[0].equalsIgnoreCase("w") || tokens[0].equalsIgnoreCase("where"))
+                && tokens[1] != null) {
+            where(elevatorNumber);
+            return;
+        }
+        if (tokens[0].equalsIgnoreCase("v") || tokens[0].equalsIgnoreCase("velocity")) {
+            output.println("v " + (simulator != null ? simulator.getVelocity() : ElevatorGUI.velocity));
+            return;
+        }
+        if (tokens[0].equalsIgnoreCase("stats") && controller != null) {
+            output.println("stats " + controller.getStats());
+            return;
+        }
+        if (controller != null && tokens[1] != null && tokens[2] != null) {
+            try {
+                if (tokens[0].equalsIgnoreCase("b") || tokens[0].equalsIgnoreCase("button")) {
+                    controller.pressButton(elevatorNumber, value);
+                    return;
                 }
-                if ((tokens[0].equalsIgnoreCase("m") || tokens[0].equalsIgnoreCase("move"))
-                        && tokens[1] != null && tokens[2] != null) {
-                    motor(elevatorNumber, value);
-                    continue;
+                if (tokens[0].equalsIgnoreCase("p") || tokens[0].equalsIgnoreCase("panel")) {
+                    controller.pressPanel(elevatorNumber, value);
+                    return;
                 }
-                if ((tokens[0].equalsIgnoreCase("s") || tokens[0].equalsIgnoreCase("scale"))
-                        && tokens[1] != null && tokens[2] != null) {
-                    scale(elevatorNumber, value);
-                    continue;
+                if (tokens[0].equalsIgnoreCase("t") || tokens[0].equalsIgnoreCase("trip")) {
+                    int car = controller.pressDestination(elevatorNumber, value);
+                    output.println("t " + elevatorNumber + " " + value + " " + car);
+                    return;
                 }
-                if ((tokens[0].equalsIgnoreCase("d") || tokens[0].equalsIgnoreCase("door"))
-                        && tokens[1] != null && tokens[2] != null) {
-                    door(elevatorNumber, value);
-                    continue;
+            } catch (IllegalArgumentException e) {
+                System.err.println("Illegal command: " + input);
+                return;
+            } catch (RuntimeException e) {
+                // a failure of the controller, not of the command
+                System.err.println("Error executing " + input + ": " + e);
+                e.printStackTrace();
+                return;
+            }
+        }
+        System.err.println("Illegal command: " + input);
+    }
+
+    /**
+     * Records (see {@link #setRecorder(PrintWriter)}) and executes a command
+     * that comes from outside: the input stream or a script.
+     */
+    private void inbound(String command) {
+        PrintWriter recorder = this.recorder;
+        if (recorder != null && command.trim().length() > 0) {
+            synchronized (recorder) {
+                recorder.println("@" + currentTick() + " " + command.trim());
+            }
+        }
+        execute(command);
+    }
+
+    /**
+     * Returns the current time step of the simulation: the tick of a virtual
+     * clock, otherwise the number of ticks of the simulator.
+     */
+    private long currentTick() {
+        if (clock instanceof VirtualClock) {
+            return ((VirtualClock) clock).getTick();
+        }
+        return simulator != null ? simulator.getTicks() : 0;
+    }
+
+    /**
+     * Makes this ElevatorIO record every command read from the input stream
+     * or a script as a script line "@<i>tick command</i>", where <i>tick</i>
+     * is the time step when the command was executed. A recording made with a
+     * virtual clock and a seed (see <code>ElevatorController.setSeed</code>)
+     * can be replayed with {@link #loadScript(String, SimulationClock)} with
+     * identical results.
+     *
+     * @param recorder the writer of the recording, null to stop recording
+     */
+    public void setRecorder(PrintWriter recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Reads the seed from the "# seed <i>value</i>" line of a recording.
+     *
+     * @param fileName the name of the recording
+     * @return the seed, or null if the recording has no seed
+     * @throws IOException if the recording cannot be read
+     */
+    public static Long readSeed(String fileName) throws IOException {
+        BufferedReader script = new BufferedReader(new FileReader(fileName));
+        try {
+            String line;
+            while ((line = script.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("# seed ")) {
+                    return Long.valueOf(line.substring(7).trim());
                 }
-                if ((tokens[0].equalsIgnoreCase("w") || tokens[0].equalsIgnoreCase("where"))
-                        && tokens[1] != null) {
-                    where(elevatorNumber);
+            }
+            return null;
+        } finally {
+            script.close();
+        }
+    }
+
+    /**
+     * Sets the controller to which the action commands of buttons read from
+     * the input stream are forwarded (see {@link #execute(String)}).
+     *
+     * @param controller the controller of the elevators
+     */
+    public void setController(ElevatorController controller) {
+        this.controller = controller;
+    }
+
+    /**
+     * Sets the clock of the simulation. Commands read from the input stream
+     * are executed as controller tasks of the clock, so a virtual clock does
+     * not advance while a command is being executed.
+     *
+     * @param clock the clock of the simulation
+     */
+    public void setClock(SimulationClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Schedules the commands of a script file on the given clock. Each line of
+     * the script is "<i>time command</i>", where <i>time</i> is the time in
+     * milliseconds since the start of the simulation when the
+     * <i>command</i> (any command accepted by {@link #execute(String)}) must
+     * be executed. A line "@<i>tick command</i>" (as recorded by
+     * {@link #setRecorder(PrintWriter)}) gives the time step instead; it is
+     * exact with a virtual clock and converted to milliseconds at the rate of
+     * the simulator otherwise. Empty lines and lines starting with "#" are
+     * ignored.
+     *
+     * @param fileName the name of the script file
+     * @param clock the clock on which the commands are scheduled
+     * @throws IOException if the script cannot be read
+     */
+    public void loadScript(String fileName, SimulationClock clock) throws IOException {
+        BufferedReader script = new BufferedReader(new FileReader(fileName));
+        try {
+            String line;
+            while ((line = script.readLine()) != null) {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#")) {
                     continue;
                 }
-                if (tokens[0].equalsIgnoreCase("v") || tokens[0].equalsIgnoreCase("velocity")) {
-                    out.println("v " + ElevatorGUI.velocity);
-                    continue;
+                int space = line.indexOf(' ');
+                try {
+                    final String command = line.substring(space + 1).trim();
+                    if (line.startsWith("@")) {
+                        long tick = Long.parseLong(line.substring(1, space));
+                        if (clock instanceof VirtualClock) {
+                            ((VirtualClock) clock).scheduleAt(tick, () -> inbound(command));
+                            continue;
+                        }
+                        double rate = simulator != null ? simulator.getRate() : 0;
+                        if (rate == 0) {
+                            rate = ElevatorSimulator.DefaultRate;
+                        }
+                        clock.schedule((long) (tick * 1000 / rate) - clock.currentTimeMillis(),
+                                () -> inbound(command));
+                        continue;
+                    }
+                    long time = Long.parseLong(space < 0 ? line : line.substring(0, space));
+                    clock.schedule(time - clock.currentTimeMillis(), () -> inbound(command));
+                } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                    System.err.println("Illegal script line: " + line);
                 }
-                System.err.println("Illegal command: " + input);
             }
-        } catch (IOException e) {
-            System.err.println("ReadInput: Cannot read input. See below. Exiting... Bye, bye");
-            e.printStackTrace();
-            System.exit(1);
+        } finally {
+            script.close();
         }
     }
 
+    /**
+     * Returns a writer that executes each line printed to it as an elevator
+     * command, i.e. an in-process replacement of the TCP socket for a
+     * controller that runs in the same JVM.
+     *
+     * @return a writer that executes printed commands
+     */
+    public Writer getLocalWriter() {
+        return new LocalConnection(this);
+    }
+
     /**
      * Executes a "m" ("motor") control command read from standard or socket
      * input stream: starts the elevator moving upwards or downwards, or stops
@@ -233,6 +529,10 @@ public class ElevatorIO extends Thread {
             System.err.println("Motor: direction " + val + " doesn't exist");
             return;
         }
+        if (simulator != null) {
+            simulator.motor(number, val);
+            return;
+        }
         if (number == 0) {
             for (int i = numberOfElevators - 1; i >= 0; i--) {
                 synchronized (allElevators[i].motorLock) {
@@ -264,6 +564,10 @@ public class ElevatorIO extends Thread {
             System.err.println("Scale: Floor number " + val + " doesn't exist");
             return;
         }
+        if (simulator != null) {
+            simulator.scale(number, val);
+            return;
+        }
         if (number == 0) {
             for (int i = 0; i < numberOfElevators; i++) {
                 allElevators[i].Setscalepos(val);
@@ -291,6 +595,10 @@ public class ElevatorIO extends Thread {
             System.err.println("Door: direction " + val + " doesn't exist");
             return;
         }
+        if (simulator != null) {
+            simulator.door(number, val);
+            return;
+        }
         if (number == 0) {
             for (int i = 0; i < numberOfElevators; i++) {
                 synchronized (allElevators[i].doorLock) {
@@ -322,12 +630,21 @@ public class ElevatorIO extends Thread {
             System.err.println("Where: Elevatornumber " + number + " doesn't exist");
             return;
         }
-        if (number == 0) {
+        if (simulator != null) {
+            FleetSnapshot snapshot = simulator.getSnapshot();
+            if (number == 0) {
+                for (int i = 0; i < numberOfElevators; i++) {
+                    output.println("f " + (i + 1) + " " + snapshot.getPosition(i));
+                }
+            } else {
+                output.println("f " + number + " " + snapshot.getPosition(number - 1));
+            }
+        } else if (number == 0) {
             for (int i = 0; i < numberOfElevators; i++) {
-                out.println("f " + (i + 1) + " " + allElevators[i].Getpos());
+                output.println("f " + (i + 1) + " " + allElevators[i].Getpos());
             }
         } else {
-            out.println("f " + number + " " + allElevators[number - 1].Getpos());
+            output.println("f " + number + " " + allElevators[number - 1].Getpos());
         }
     }
 
@@ -353,6 +670,10 @@ public class ElevatorIO extends Thread {
         if (val > Elevators.UP || val < Elevators.DOWN) {
             throw new IllegalParamException();
         }
+        if (simulator != null) {
+            simulator.motor(number, val);
+            return;
+        }
         if (number == 0) {
             for (int i = numberOfElevators - 1; i >= 0; i--) {
                 synchronized (allElevators[i].motorLock) {
@@ -387,6 +708,10 @@ public class ElevatorIO extends Thread {
         if (val > topFloor || val < 0) {
             throw new IllegalParamException();
         }
+        if (simulator != null) {
+            simulator.scale(number, val);
+            return;
+        }
         if (number == 0) {
             for (int i = 0; i < numberOfElevators; i++) {
                 allElevators[i].Setscalepos(val);
@@ -417,6 +742,10 @@ public class ElevatorIO extends Thread {
         if (val > Elevators.OPEN || val < Elevators.CLOSE) {
             throw new IllegalParamException();
         }
+        if (simulator != null) {
+            simulator.door(number, val);
+            return;
+        }
         if (number == 0) {
             for (int i = 0; i < numberOfElevators; i++) {
                 synchronized (allElevators[i].doorLock) {
@@ -449,6 +778,9 @@ public class ElevatorIO extends Thread {
         if (number <= 0 || number > numberOfElevators) {
             throw new IllegalParamException();
         }
+        if (simulator != null) {
+            return simulator.getSnapshot().getPosition(number - 1);
+        }
         return allElevators[number - 1].Getpos();
     }
 
@@ -463,9 +795,13 @@ public class ElevatorIO extends Thread {
      *
      * @return an array of floatint point values of positions of the elevator in
      * "floor units" (e.g. 2.5 "floor units means that the elevator is exactly
-     * in between the 2nd and 3rd floor)
+     * in between the 2nd and 3rd floor). If the elevators are driven by a
+     * simulator, all positions are taken from one snapshot of the simulation.
      */
     public double[] whereAre() throws IllegalParamException {
+        if (simulator != null) {
+            return simulator.getSnapshot().getPositions();
+        }
         double[] position = new double[numberOfElevators];
         for (int i = 0; i < numberOfElevators; i++) {
             position[i] = allElevators[i].Getpos();
@@ -487,10 +823,50 @@ public class ElevatorIO extends Thread {
         if (number <= 0 || number > numberOfElevators) {
             throw new IllegalParamException();
         }
+        if (simulator != null) {
+            return simulator.getSnapshot().getScale(number - 1);
+        }
         return allElevators[number - 1].Getscalepos();
     }
 }
 
+/**
+ * A writer that passes each complete line written to it to
+ * <code>ElevatorIO.execute</code>, so a controller in the same JVM can print
+ * its commands as it does to a TCP socket.
+ */
+class LocalConnection extends Writer {
+
+    private final ElevatorIO io;
+    private final StringBuilder line = new StringBuilder();
+
+    LocalConnection(ElevatorIO io) {
+        this.io = io;
+    }
+
+    @Override
+    public synchronized void write(char[] cbuf, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            char c = cbuf[i];
+            if (c == '\n') {
+                String command = line.toString().trim();
+                line.setLength(0);
+                io.execute(command);
+            } else {
+                line.append(c);
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
+
 /**
  * Creates a server socket and waits for a client (controller) to connect, when
  * connected provides an input stream for reading controller commands and an
@@ -0,0 +1,580 @@
+package elevator;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.PrintStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the Model of the elevators (motors, doors and scales) from a
+ * dedicated simulation thread instead of the Swing Timer of the GUI. Used when
+ * Elevators is started with the "-headless" or the "-rate" option.
+ * <p>
+ * On each time step (tick) the simulator moves every moving cabin one
+ * <code>Elevators.step</code> and every moving door one "degree of openness",
+ * exactly as the animation Timer does, prints positions of moving elevators to
+ * the output stream (unless "-nopos" is given), tells the elevators whose
+ * doors have stopped (completely open or closed) and notifies its action
+ * listeners. A view (the GUI, RMI position listeners) just subscribes to the
+ * ticks with {@link #addActionListener(ActionListener)}; it never drives the
+ * Model.
+ * <p>
+ * The simulation thread is the only writer of the {@link FleetState}. Motor,
+ * door and scale commands (see {@link #motor(int, int)}, {@link #door(int, int)}
+ * and {@link #scale(int, int)}) are queued by the i/o threads and applied by
+ * the simulation thread at the beginning of the next tick, so a tick is one
+ * loop over the primitive arrays of the fleet state without any lock.
+ * <p>
+ * After each tick that changed the state, the simulator publishes an
+ * immutable {@link FleetSnapshot} of the fleet state. Readers get a consistent
+ * view of all elevators with {@link #getSnapshot()} without blocking the
+ * simulation thread.
+ * <p>
+ * Large fleets can be stepped in parallel (see
+ * {@link #setParallelism(int, int)}): the elevators are split into chunks of
+ * consecutive indices that are stepped by the tasks of a
+ * <code>ForkJoinPool</code>. Cabins and doors of different elevators are
+ * independent, so the chunks do not interfere. The work that concerns more
+ * than one elevator (notifying observers, printing positions, publishing the
+ * snapshot, notifying listeners) is done by the simulation thread after all
+ * chunks are done, in the order of elevator numbers, so the output of a
+ * parallel tick is the same as the output of a sequential one.
+ * <p>
+ * The tick rate is given in ticks per second. A rate of 0 runs the
+ * simulation as fast as possible.
+ * <p>
+ * With a {@link VirtualClock} the simulator does not wait between ticks.
+ * After each tick it waits until the controller has reacted (all controller
+ * tasks are blocked) and, when no motor and no door is moving, it jumps
+ * straight to the next alarm of the clock (the end of a door dwell or a
+ * scheduled command) instead of stepping through the idle ticks. The positions
+ * of the elevators are stepped exactly as with the wall clock, so the result
+ * matches a wall-clock run.
+ */
+public class ElevatorSimulator extends Thread {
+
+    /**
+     * Default tick rate = 200 ticks per second, i.e. the fastest rate of the
+     * animation Timer (one tick per 5 ms).
+     */
+    public static final double DefaultRate = 200;
+    /**
+     * The action command of the events sent to the listeners on each tick
+     */
+    public static final String TICK = "tick";
+    /**
+     * Default parallel threshold = 256 elevators per chunk of a parallel
+     * tick. Smaller fleets are stepped sequentially.
+     */
+    public static final int DefaultThreshold = 256;
+
+    private static final int MOTOR = 0;
+    private static final int DOOR = 1;
+    private static final int SCALE = 2;
+
+    private final Elevator[] allElevators;
+    private final FleetState fleet;
+    private final int numberOfElevators;
+    private final int[] moved;
+    private final int[] doors;
+    private ForkJoinPool pool;
+    private int[] bounds;
+    private int[] counts;
+    private final ConcurrentLinkedQueue<Command> commands = new ConcurrentLinkedQueue<>();
+    private volatile FleetSnapshot snapshot;
+    private final double step;
+    private final CopyOnWriteArrayList<ActionListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile long period;
+    private volatile double rate;
+    private volatile boolean running = true;
+    private volatile long ticks = 0;
+    private final SimulationClock clock;
+    private boolean haltWhenIdle = false;
+    private volatile ElevatorIO io;
+    private volatile boolean positionOutput = Elevators.posOutput;
+
+    /**
+     * Creates a simulator of the Model of the given Elevators with the given
+     * tick rate.
+     *
+     * @param elevators the object of the Elevators primary class that holds
+     * the Model (array of Elevator objects)
+     * @param rate the number of ticks per second, 0 for as fast as possible
+     */
+    public ElevatorSimulator(Elevators elevators, double rate) {
+        this(elevators, rate, new WallClock());
+    }
+
+    /**
+     * Creates a simulator of the Model of the given Elevators with the given
+     * tick rate and clock. With a VirtualClock, the rate is only used to
+     * compute the velocity of the elevators.
+     *
+     * @param elevators the object of the Elevators primary class that holds
+     * the Model (array of Elevator objects)
+     * @param rate the number of ticks per second, 0 for as fast as possible
+     * @param clock the clock of the simulation
+     */
+    public ElevatorSimulator(Elevators elevators, double rate, SimulationClock clock) {
+        this(elevators.allElevators, elevators.fleet, Elevators.step, rate, clock);
+    }
+
+    /**
+     * Creates a simulator of the given elevators.
+     *
+     * @param elevators the elevators to simulate, views of the fleet state
+     * @param fleet the state of the elevators
+     * @param step the movement step of the elevators in floor units per tick
+     * @param rate the number of ticks per second, 0 for as fast as possible
+     * @param clock the clock of the simulation
+     */
+    public ElevatorSimulator(Elevator[] elevators, FleetState fleet, double step,
+            double rate, SimulationClock clock) {
+        super("ElevatorSimulator");
+        this.clock = clock;
+        this.allElevators = elevators;
+        this.fleet = fleet;
+        this.numberOfElevators = fleet.size();
+        this.moved = new int[numberOfElevators];
+        this.doors = new int[numberOfElevators];
+        this.snapshot = new FleetSnapshot(fleet, 0);
+        this.step = step;
+        setRate(rate);
+    }
+
+    /**
+     * Sets a new tick rate.
+     *
+     * @param rate the number of ticks per second, 0 for as fast as possible
+     */
+    public final void setRate(double rate) {
+        if (rate < 0) {
+            throw new IllegalArgumentException("Illegal tick rate " + rate);
+        }
+        this.rate = rate;
+        this.period = (rate == 0) ? 0 : (long) (1000000000L / rate);
+    }
+
+    /**
+     * Makes ticks step the elevators in parallel. The fleet is split into
+     * chunks of at least <code>threshold</code> elevators; if the fleet has
+     * less than two chunks, ticks stay sequential. Must be called before the
+     * simulation thread starts.
+     *
+     * @param parallelism the number of worker threads, 0 for the number of
+     * available processors, 1 for sequential ticks
+     * @param threshold the minimum number of elevators per chunk
+     */
+    public void setParallelism(int parallelism, int threshold) {
+        if (parallelism < 0 || threshold <= 0) {
+            throw new IllegalArgumentException("Illegal parallelism "
+                    + parallelism + ", threshold " + threshold);
+        }
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+            bounds = null;
+            counts = null;
+        }
+        if (parallelism == 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        int chunks = Math.min(4 * parallelism, numberOfElevators / threshold);
+        if (parallelism < 2 || chunks < 2) {
+            return;
+        }
+        bounds = new int[chunks + 1];
+        for (int c = 0; c <= chunks; c++) {
+            bounds[c] = (int) ((long) numberOfElevators * c / chunks);
+        }
+        counts = new int[chunks];
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Checks whether ticks step the elevators in parallel.
+     *
+     * @return true if ticks are parallel
+     */
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Returns the current tick rate in ticks per second.
+     *
+     * @return the tick rate, 0 means as fast as possible
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * Returns the velocity of elevators in floor units per millisecond at the
+     * current tick rate (0 if the simulation runs as fast as possible).
+     *
+     * @return the velocity of elevators
+     */
+    public double getVelocity() {
+        return step * rate / 1000;
+    }
+
+    /**
+     * Returns the number of ticks performed so far.
+     *
+     * @return the number of ticks
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Returns the clock of the simulation.
+     *
+     * @return the clock
+     */
+    public SimulationClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Sets whether to print positions of moving elevators to the output
+     * stream. Defaults to true unless Elevators has started with "-nopos".
+     *
+     * @param positionOutput true to print positions
+     */
+    public void setPositionOutput(boolean positionOutput) {
+        this.positionOutput = positionOutput;
+    }
+
+    /**
+     * Makes a simulation with a virtual clock halt (the simulation thread
+     * ends) when nothing is moving and nothing is scheduled any longer, e.g.
+     * when a script of commands has been run to the end.
+     *
+     * @param haltWhenIdle true to halt when idle
+     */
+    public void setHaltWhenIdle(boolean haltWhenIdle) {
+        this.haltWhenIdle = haltWhenIdle;
+    }
+
+    /**
+     * Makes the simulator print positions of moving elevators to the output
+     * stream of the given ElevatorIO rather than to the output stream of the
+     * Elevators application.
+     *
+     * @param io the ElevatorIO of the elevators
+     */
+    public void connect(ElevatorIO io) {
+        this.io = io;
+    }
+
+    /**
+     * Queues a motor command: start moving the elevator upwards (1) or
+     * downwards (-1), or stop it (0). The command is applied at the beginning
+     * of the next tick. The arguments are expected to be checked by the
+     * caller.
+     *
+     * @param number the number of the elevator (1, 2, ...), 0 for all
+     * @param val the direction
+     */
+    public void motor(int number, int val) {
+        commands.add(new Command(MOTOR, number - 1, val));
+    }
+
+    /**
+     * Queues a door command: open (1), close (-1) or stop (0) the door of the
+     * elevator. The command is applied at the beginning of the next tick.
+     *
+     * @param number the number of the elevator (1, 2, ...), 0 for all
+     * @param val the direction of the door
+     */
+    public void door(int number, int val) {
+        commands.add(new Command(DOOR, number - 1, val));
+    }
+
+    /**
+     * Queues a scale command: set the value of the scale of the elevator.
+     * The command is applied at the beginning of the next tick.
+     *
+     * @param number the number of the elevator (1, 2, ...), 0 for all
+     * @param val the value of the scale
+     */
+    public void scale(int number, int val) {
+        commands.add(new Command(SCALE, number - 1, val));
+    }
+
+    /**
+     * Applies the queued commands to the fleet state in the order they were
+     * queued.
+     *
+     * @return true if any command was applied
+     */
+    private boolean applyCommands() {
+        Command command;
+        boolean applied = false;
+        while ((command = commands.poll()) != null) {
+            applied = true;
+            int from = command.index, to = command.index + 1;
+            if (command.index < 0) {
+                from = 0;
+                to = numberOfElevators;
+            }
+            for (int i = from; i < to; i++) {
+                switch (command.type) {
+                    case MOTOR:
+                        fleet.direction[i] = (byte) command.value;
+                        break;
+                    case DOOR:
+                        fleet.doorDirection[i] = (byte) command.value;
+                        break;
+                    default:
+                        fleet.scale[i] = command.value;
+                }
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Returns the latest published snapshot of the state of all elevators.
+     * Never blocks.
+     *
+     * @return the latest snapshot
+     */
+    public FleetSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Subscribes a listener (e.g. a view) to the ticks of the simulator. The
+     * listener is called on the simulation thread after each tick.
+     *
+     * @param listener the listener to add
+     */
+    public void addActionListener(ActionListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unsubscribes a listener from the ticks of the simulator.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeActionListener(ActionListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Stops the simulation thread after the current tick.
+     */
+    public void halt() {
+        running = false;
+        LockSupport.unpark(this);
+    }
+
+    /**
+     * Runs ticks at the current rate until halted. If the simulation falls
+     * behind by more than one tick, the missed ticks are not caught up, so the
+     * simulation slows down rather than bursts.
+     */
+    @Override
+    public void run() {
+        if (clock instanceof VirtualClock) {
+            runVirtual((VirtualClock) clock);
+            return;
+        }
+        long next = System.nanoTime();
+        while (running) {
+            tick();
+            long p = period;
+            if (p == 0) {
+                continue;
+            }
+            next += p;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+            } else if (wait < -p) {
+                next = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Runs the simulation with a virtual clock: a tick as soon as the
+     * controller has reacted to the previous one, or a jump to the next alarm
+     * when idle.
+     */
+    private void runVirtual(VirtualClock clock) {
+        long start = System.currentTimeMillis();
+        try {
+            while (running) {
+                clock.awaitQuiescence();
+                if (applyCommands()) {
+                    snapshot = new FleetSnapshot(fleet, ticks);
+                }
+                if (fleet.isMoving()) {
+                    tick();
+                    clock.advanceTo(clock.getTick() + 1);
+                    continue;
+                }
+                long next = clock.nextAlarm();
+                if (next >= 0) {
+                    ticks += Math.max(0, next - clock.getTick());
+                    clock.advanceTo(next);
+                } else if (haltWhenIdle) {
+                    System.err.println(getName() + ": simulated " + clock.currentTimeMillis()
+                            + " ms (" + ticks + " time steps) in "
+                            + (System.currentTimeMillis() - start) + " ms");
+                    running = false;
+                } else {
+                    clock.awaitActivity(10);
+                }
+            }
+        } catch (InterruptedException e) {
+            System.err.println("Simulation interrupted");
+        }
+    }
+
+    /**
+     * Performs one time step of all elevators: applies the queued commands,
+     * moves motors and doors, prints positions of moving elevators to the
+     * output stream, tells the elevators whose doors have stopped, publishes
+     * a snapshot of the state and notifies the listeners.
+     */
+    public void tick() {
+        boolean changed = applyCommands();
+        changed |= fleet.isMoving();
+        int moving = 0;
+        for (int i = 0; i < numberOfElevators; i++) {
+            if (fleet.doorDirection[i] != Elevators.STOP) {
+                doors[moving++] = i;
+            }
+        }
+        if (pool == null) {
+            int count = fleet.step(step, 0, numberOfElevators, moved);
+            positionsChanged(0, count);
+        } else {
+            pool.invoke(new StepTask(0, counts.length));
+            for (int c = 0; c < counts.length; c++) {
+                positionsChanged(bounds[c], bounds[c] + counts[c]);
+            }
+        }
+        doorsChanged(moving);
+        ticks++;
+        if (changed) {
+            snapshot = new FleetSnapshot(fleet, ticks);
+        }
+        if (!listeners.isEmpty()) {
+            ActionEvent event = new ActionEvent(this, ActionEvent.ACTION_PERFORMED, TICK);
+            for (ActionListener listener : listeners) {
+                listener.actionPerformed(event);
+            }
+        }
+    }
+
+    /**
+     * Notifies the observers of the elevators whose cabins have moved, and
+     * prints their positions. With a sequential virtual clock, waits until the
+     * controller has reacted to one elevator before notifying the next.
+     *
+     * @param from the index of the first moved elevator in <code>moved</code>
+     * @param to the index after the last moved elevator in <code>moved</code>
+     */
+    private void positionsChanged(int from, int to) {
+        ElevatorIO io = this.io;
+        PrintStream output = io != null ? io.getOutput() : ElevatorIO.out;
+        VirtualClock sequential = null;
+        if (clock instanceof VirtualClock && ((VirtualClock) clock).isSequential()) {
+            sequential = (VirtualClock) clock;
+        }
+        for (int k = from; k < to; k++) {
+            int i = moved[k];
+            double position = fleet.getPosition(i);
+            allElevators[i].positionChanged(position);
+            if (sequential != null) {
+                try {
+                    // let the controller react to this elevator before the next one
+                    sequential.awaitQuiescence();
+                } catch (InterruptedException e) {
+                    interrupt();
+                }
+            }
+            if (positionOutput) {
+                output.println("f " + (i + 1) + " " + position);
+            }
+        }
+    }
+
+    /**
+     * Tells the elevators whose doors were moving before the tick and have
+     * stopped, in the order of elevator numbers. With a sequential virtual
+     * clock, waits until the controller has reacted to one elevator before
+     * telling the next.
+     *
+     * @param moving the number of elevators in <code>doors</code>
+     */
+    private void doorsChanged(int moving) {
+        boolean sequential = clock instanceof VirtualClock && ((VirtualClock) clock).isSequential();
+        for (int k = 0; k < moving; k++) {
+            int i = doors[k];
+            if (fleet.doorDirection[i] == Elevators.STOP) {
+                allElevators[i].doorStopped();
+                if (sequential) {
+                    try {
+                        ((VirtualClock) clock).awaitQuiescence();
+                    } catch (InterruptedException e) {
+                        interrupt();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Steps the chunks of the fleet from <code>first</code> (inclusive) to
+     * <code>last</code> (exclusive), forking halves until one chunk is left.
+     */
+    private class StepTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final int first;
+        private final int last;
+
+        StepTask(int first, int last) {
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first == 1) {
+                counts[first] = fleet.step(step, bounds[first], bounds[last], moved);
+                return;
+            }
+            int middle = (first + last) >>> 1;
+            invokeAll(new StepTask(first, middle), new StepTask(middle, last));
+        }
+    }
+
+    /**
+     * A queued motor, door or scale command.
+     */
+    private static class Command {
+
+        final int type;
+        final int index;
+        final int value;
+
+        Command(int type, int index, int value) {
+            this.type = type;
+            this.index = index;
+            this.value = value;
+        }
+    }
+}
@@ -85,6 +85,79 @@ import java.io.*;
  * <tr><td><code>-precision value</code><td>Specifies the movement step of one elevator, i.e.
  *                              the precision of the model, in floor units per time step.
  *                              If not specified, defaults to some hard-coded value.</tr>
+ * <tr><td><code>-headless</code><td>Runs the application without GUI. The elevators are
+ *                              driven by a dedicated simulation thread rather than by the
+ *                              Timer of the GUI, and action commands of buttons
+ *                              ("b <i>f d</i>", "p <i>n f</i>") are accepted from the
+ *                              input stream (standard or socket).</tr>
+ * <tr><td><code>-rate value</code><td>Drives the elevators from a dedicated simulation thread
+ *                              with the given number of time steps per second
+ *                              (0 for as fast as possible). Defaults to 200. With GUI,
+ *                              the GUI only renders the state of the elevators and the
+ *                              velocity slider controls the rate of the simulation thread.</tr>
+ * <tr><td><code>-virtual</code><td>Runs a headless simulation with a virtual clock: the
+ *                              simulation jumps from one event to the next (floor, end of a door
+ *                              dwell, scheduled command) as fast as possible. The rate
+ *                              (<code>-rate</code>) is used to convert milliseconds to time steps.</tr>
+ * <tr><td><code>-script file</code><td>Executes the commands of the given file at the given
+ *                              times. Each line is "<i>time command</i>" where <i>time</i> is in
+ *                              milliseconds since the start. With <code>-virtual</code>, the
+ *                              application exits when the script is done and the elevators are idle.</tr>
+ * <tr><td><code>-parallel int</code><td>Steps the elevators of the simulation thread in parallel
+ *                              with the given number of worker threads (0 for the number of
+ *                              processors). Only fleets of at least two chunks
+ *                              (<code>-threshold</code>) are stepped in parallel.</tr>
+ * <tr><td><code>-threshold int</code><td>The minimum number of elevators per chunk of a
+ *                              parallel time step. Defaults to 256.</tr>
+ * <tr><td><code>-fixed</code><td>Keeps positions of cabins as integer numbers of 1/1000 floor
+ *                              rather than floating-point numbers, so that a cabin stops
+ *                              exactly at a floor. The movement step (<code>-precision</code>)
+ *                              is rounded to 1/1000 floor.</tr>
+ * <tr><td><code>-seed value</code><td>Seeds the random choices of the controller. With
+ *                              <code>-virtual</code>, the simulation is deterministic: the clock
+ *                              lets the controller react to one event at a time.</tr>
+ * <tr><td><code>-record file</code><td>Records the commands read from the input stream or the
+ *                              script with their time steps to the given file
+ *                              ("@<i>tick command</i>" lines).</tr>
+ * <tr><td><code>-replay file</code><td>Replays a recording: same as <code>-virtual -script file</code>
+ *                              with the seed of the recording. Use the same <code>-number</code>,
+ *                              <code>-top</code>, <code>-precision</code> and <code>-rate</code>
+ *                              as the recorded run.</tr>
+ * <tr><td><code>-actors int</code><td>Runs every elevator of a headless controller as an actor
+ *                              whose events are processed on a fixed pool of the given number of
+ *                              threads (0 for the number of processors) instead of starting a
+ *                              thread whenever an elevator gets work. The "stats" command prints
+ *                              the number of threads and the depth of the mailboxes.</tr>
+ * <tr><td><code>-dispatch name</code><td>Selects the strategy that chooses the elevator for a
+ *                              hall call: <code>heuristic</code> (default), <code>eta</code>
+ *                              (earliest estimated time of arrival), <code>adaptive</code>
+ *                              (switches between inter-floor, up-peak and down-peak modes by the
+ *                              recent calls), <code>zoned</code> (groups of three elevators serve
+ *                              zones of floors that follow the load, for tall buildings) or
+ *                              <code>lookahead</code> (tries every elevator in a forecast of the
+ *                              next minute, within 2 ms per call). The "stats" command prints the
+ *                              average waiting time of the hall calls.</tr>
+ * <tr><td><code>-batch millis</code><td>Collects the hall calls of a window of the given length
+ *                              and assigns them jointly with the least total estimated time of
+ *                              arrival, or one at a time if the solution takes longer than 2 ms.</tr>
+ * <tr><td><code>-reassign millis</code><td>Moves pending hall calls to elevators that can reach
+ *                              them sooner by more than a door dwell, every given period, when an
+ *                              elevator runs out of work and when an elevator is stopped.</tr>
+ * <tr><td><code>-dwell millis</code><td>Keeps the doors open for the given time (default 3000)
+ *                              once they are completely open.</tr>
+ * <tr><td><code>-mindwell millis</code><td>Closes the doors after the given time, at most the
+ *                              dwell, if the elevator has a call at another floor (default: the
+ *                              dwell, i.e. no early close).</tr>
+ * <tr><td><code>-destination</code><td>Assigns an elevator to a passenger who enters a
+ *                              destination ("t <i>f target</i>") at once, grouping passengers with
+ *                              the same destination, instead of pressing the hall button and the
+ *                              panel button on boarding.</tr>
+ * <tr><td><code>-park millis</code><td>Sends elevators that have been idle for the given time to
+ *                              the floors where the next hall calls are expected, as learned from
+ *                              the hall calls so far (default 0: idle elevators stay).</tr>
+ * <tr><td><code>-vthreads</code><td>Runs the queue workers and the button handlers of the
+ *                              controller and the reader of a headless Elevators on virtual
+ *                              threads (Java 21 and later; platform threads otherwise).</tr>
  * </table> </center>
  * <p>
  * To control the application via standard input and/or a TCP socket input stream
@@ -193,11 +266,13 @@ import java.io.*;
 
 public class Elevators {
 /**
- * Maximum possible number of elevators = 5
+ * Maximum possible number of elevators = 5 (with GUI; a headless Elevators
+ * accepts any number of elevators)
  */
   public final static int MaxNumberOfElevators = 5;
   /**
-   * Maximum possible number of the top floor = 6
+   * Maximum possible number of the top floor = 6 (with GUI; a headless
+   * Elevators accepts any top floor)
    */
   public final static int MaxTopFloor = 6;
   /**
@@ -262,6 +337,11 @@ public class Elevators {
   public static int numberOfFloors;
 
   protected Elevator[] allElevators;
+  /**
+   * The state of all elevators (the Model) in a compact form, viewed by
+   * the objects of the <code>allElevators</code> array.
+   */
+  protected FleetState fleet;
   /**
    * A boolean option that indicates whether a TCP socket(s) must be open for for input/output.
    * Defaults to false. Set by "-tcp" command line option
@@ -314,6 +394,109 @@ public class Elevators {
    * A movement step of an elevator, i.e precision of the model. Defaults to 0.04
    */
   public static double step = (double)0.04;
+  /**
+   * The boolean option that indicates whether to run without GUI. Defaults to false.
+   * Set by "-headless" command line option
+   */
+  protected static boolean headless = false;
+  /**
+   * The rate of the simulation thread in time steps per second, 0 for as fast
+   * as possible. Defaults to <code>ElevatorSimulator.DefaultRate</code>. Set by
+   * "-rate value" command line option
+   */
+  protected static double rate = ElevatorSimulator.DefaultRate;
+  /**
+   * The simulator that drives the elevators from a dedicated thread if the
+   * application has started with the "-headless" or the "-rate" option,
+   * otherwise null (the Timer of the GUI drives the elevators).
+   */
+  public static ElevatorSimulator simulator;
+  private static boolean simulated = false;
+  /**
+   * The boolean option that indicates whether to simulate with a virtual clock.
+   * Defaults to false. Set by "-virtual" command line option
+   */
+  protected static boolean virtual = false;
+  /**
+   * The name of the file with scheduled commands, null if none.
+   * Set by "-script file" command line option
+   */
+  protected static String script = null;
+  /**
+   * The number of worker threads of a parallel time step, 1 for sequential
+   * time steps, 0 for the number of processors. Defaults to 1. Set by
+   * "-parallel int" command line option
+   */
+  protected static int parallelism = 1;
+  /**
+   * The minimum number of elevators per chunk of a parallel time step.
+   * Defaults to <code>ElevatorSimulator.DefaultThreshold</code>. Set by
+   * "-threshold int" command line option
+   */
+  protected static int threshold = ElevatorSimulator.DefaultThreshold;
+  /**
+   * The boolean option that indicates whether to keep positions as fixed-point
+   * numbers. Defaults to false. Set by "-fixed" command line option
+   */
+  protected static boolean fixed = false;
+  /**
+   * The seed of the random choices of the controller, null if not seeded.
+   * Set by "-seed value" command line option or by the recording to replay
+   */
+  protected static Long seed = null;
+  /**
+   * The name of the file to record the inbound commands to, null if none.
+   * Set by "-record file" command line option
+   */
+  protected static String record = null;
+  /**
+   * The number of threads of the actor pool of the controller, -1 for a
+   * thread per busy elevator. Set by "-actors int" command line option
+   */
+  protected static int actors = -1;
+  /**
+   * Run the controller threads on virtual threads if true. Set by
+   * "-vthreads" command line option
+   */
+  protected static boolean virtualThreads = false;
+  /**
+   * The name of the dispatch strategy of the controller. Set by "-dispatch
+   * name" command line option
+   */
+  protected static String dispatch = "heuristic";
+  /**
+   * The batch window of the dispatch in milliseconds, 0 to dispatch every
+   * hall call when pressed. Set by "-batch millis" command line option
+   */
+  protected static int batch = 0;
+  /**
+   * The period of the reassignment of hall calls in milliseconds, 0 to keep
+   * hall calls at their elevators. Set by "-reassign millis" command line
+   * option
+   */
+  protected static int reassign = 0;
+  /**
+   * The time the doors stay open in milliseconds. Set by "-dwell millis"
+   * command line option
+   */
+  protected static int dwell = (int) ElevatorController.DEFAULT_DOOR_DWELL;
+  /**
+   * The time the doors stay open in milliseconds if the elevator has a call
+   * at another floor, -1 for the dwell. Set by "-mindwell millis" command
+   * line option
+   */
+  protected static int minDwell = -1;
+  /**
+   * Assign elevators to destination entries at once if true. Set by
+   * "-destination" command line option
+   */
+  protected static boolean destination = false;
+  /**
+   * The time an elevator is idle before it is parked in milliseconds, 0 to
+   * leave idle elevators where they are. Set by "-park millis" command line
+   * option
+   */
+  protected static int park = 0;
   /**
    * Creates an instance of <code>Elevators</code>, parses the input parameters,
    * creates the "Model" of the application (array of objects
@@ -324,18 +507,90 @@ public class Elevators {
   public Elevators(String[] args) {
     initOptions(args);
     numberOfFloors = topFloor + 1;
-    if (numberOfFloors > MaxTopFloor + 1) {
+    if (!headless && !virtual
+        && (numberOfFloors > MaxTopFloor + 1 || numberOfElevators > MaxNumberOfElevators)) {
       System.err.println("illegal parameters" + EOL + USAGE);
       System.exit(1);
     } else
       System.err.println("number of elevators = "+ numberOfElevators + EOL +
         "number of floors = " + numberOfFloors + EOL);
+    if (minDwell > dwell) {
+      System.err.println("illegal parameters" + EOL + USAGE);
+      System.exit(1);
+    }
+    if (fixed && FleetState.toUnits(step) == 0) {
+      System.err.println("precision " + step + " is below the resolution of -fixed" + EOL + USAGE);
+      System.exit(1);
+    }
+    if (virtual || headless) {
+      startHeadless();
+      return;
+    }
+    fleet = new FleetState(numberOfElevators, topFloor, fixed);
     allElevators = new Elevator[numberOfElevators + 1];
     for (int i = 0; i < numberOfElevators; i++) {
-      allElevators[i] = new Elevator(i + 1);
+      allElevators[i] = new Elevator(fleet, i + 1);
+    }
+    if (simulated) {
+      simulator = new ElevatorSimulator(this, rate);
+      simulator.setParallelism(parallelism, threshold);
     }
     ElevatorGUI window1 =  new ElevatorGUI("Elevator", this);
   }
+  /**
+   * Runs a headless Elevators as one <code>Building</code> configured with
+   * the command line options, controlled via standard input/output or a TCP
+   * socket (and Java RMI if requested). Exits when the building halts, i.e.
+   * on the "quit" command or, with a virtual clock, when the script is done.
+   */
+  private void startHeadless() {
+    headless = true;
+    Building building = new Building("Elevators", numberOfElevators, topFloor, step,
+      fixed, rate, virtual);
+    fleet = building.getFleet();
+    allElevators = building.getElevators();
+    simulator = building.getSimulator();
+    simulator.setParallelism(parallelism, threshold);
+    building.setPositionOutput(posOutput);
+    ElevatorGUI.io = building.getIO();
+    if (tcp) building.listen(inPort, outPort);
+    else building.setConsole(true);
+    if (rmi) ElevatorIO.bindRMI();
+    if (seed != null) building.setSeed(seed);
+    if (actors >= 0) building.useActors(actors);
+    building.useVirtualThreads(virtualThreads);
+    building.setDispatch(dispatch);
+    building.setBatchWindow(batch);
+    building.setReassignment(reassign);
+    building.setDoorDwell(dwell, minDwell < 0 ? dwell : minDwell);
+    building.useDestinationDispatch(destination);
+    building.setParking(park);
+    if (record != null) {
+      try {
+        building.record(record);
+      } catch (IOException e) {
+        System.err.println("Cannot create the recording " + record + ". Bye, bye.");
+        System.exit(1);
+      }
+    }
+    if (script != null) {
+      try {
+        building.loadScript(script);
+      } catch (IOException e) {
+        System.err.println("Cannot read the script " + script + ". Bye, bye.");
+        System.exit(1);
+      }
+    }
+    ElevatorGUI.velocity = simulator.getVelocity();
+    System.err.println("Starting headless simulation at " + simulator.getRate()
+      + " time steps per second" + (virtual ? " (virtual clock)" : ""));
+    building.start();
+    try {
+      building.join();
+    } catch (InterruptedException e) {
+    }
+    System.exit(0);
+  }
   /**
    * Command line options of the Elevators application
    */
@@ -351,7 +606,26 @@ public class Elevators {
     "-rmiPort",
     "-rmi",
     "-nopos",
-    "-precision"
+    "-precision",
+    "-headless",
+    "-rate",
+    "-virtual",
+    "-script",
+    "-parallel",
+    "-threshold",
+    "-fixed",
+    "-seed",
+    "-record",
+    "-replay",
+    "-actors",
+    "-vthreads",
+    "-dispatch",
+    "-batch",
+    "-reassign",
+    "-dwell",
+    "-mindwell",
+    "-destination",
+    "-park"
   };
   /**
    * Number of accepted command line options
@@ -361,9 +635,9 @@ public class Elevators {
    * The usage message to be printed on the -help request
    */
   public static final String USAGE =
-    "USAGE: java Elevators [-number numberOfElevators] [-top topFloor] [-tcp] [-tcpin portForInput] [-tcpout portForOutput] [-rmi] [-nopos] [-precision value]" + EOL +
-    "max number of elevators is " + MaxNumberOfElevators + EOL +
-    "max number of floors (including BV) is " + (MaxTopFloor + 1);
+    "USAGE: java Elevators [-number numberOfElevators] [-top topFloor] [-tcp] [-tcpin portForInput] [-tcpout portForOutput] [-rmi] [-nopos] [-precision value] [-headless] [-rate value] [-virtual] [-script file] [-parallel threads] [-threshold elevators] [-fixed] [-seed value] [-record file] [-replay file] [-actors threads] [-vthreads] [-dispatch heuristic|eta|adaptive|zoned|lookahead] [-batch millis] [-reassign millis] [-dwell millis] [-mindwell millis] [-destination] [-park millis]" + EOL +
+    "max number of elevators is " + MaxNumberOfElevators + " (unlimited with -headless)" + EOL +
+    "max number of floors (including BV) is " + (MaxTopFloor + 1) + " (unlimited with -headless)";
 
   private void initOptions(String[] args) {
     int argc = args.length;
@@ -395,7 +669,7 @@ public class Elevators {
                 System.err.println(USAGE);
                 System.exit(0);
               case 2: //-number numberOfElevators
-                if (isInteger && number > 0 && number <= MaxNumberOfElevators) {
+                if (isInteger && number > 0) {
                   numberOfElevators = number;
                   break;
                 } else {
@@ -403,7 +677,7 @@ public class Elevators {
                   System.exit(1);
                 }
               case 3: // -top topFloor
-                if (isInteger && number <= MaxTopFloor && number >= 1) {
+                if (isInteger && number >= 1) {
                   topFloor = number;
                   break;
                 } else {
@@ -448,6 +722,157 @@ public class Elevators {
                   System.err.println("illegal parameters" + EOL + USAGE);
                   System.exit(1);
                 }
+                break;
+              }
+              case 12: { // -headless (no GUI, driven by the simulation thread)
+                headless = true;
+                break;
+              }
+              case 13: { // -rate value (time steps per second of the simulation thread)
+                simulated = true;
+                if (isInteger && number >= 0) rate = number;
+                else if (isdouble && fnumber >= 0.0) rate = fnumber;
+                else {
+                  System.err.println("illegal parameters" + EOL + USAGE);
+                  System.exit(1);
+                }
+                break;
+              }
+              case 14: { // -virtual (simulate with a virtual clock)
+                virtual = true;
+                break;
+              }
+              case 15: { // -script file (scheduled commands)
+                if (isString) script = args[currentArg + 1];
+                else {
+                  System.err.println("illegal parameters" + EOL + USAGE);
+                  System.exit(1);
+                }
+                break;
+              }
+              case 16: { // -parallel threads (parallel time steps)
+                if (isInteger && number >= 0) parallelism = number;
+                else {
+                  System.err.println("illegal parameters" + EOL + USAGE);
+                  System.exit(1);
+                }
+                break;
+              }
+              case 17: { // -threshold elevators (minimum chunk of a parallel time step)
+                if (isInteger && number > 0) threshold = number;
+                else {
+                  System.err.println("illegal parameters" + EOL + USAGE);
+                  System.exit(1);
+                }
+                break;
+              }
+              case 18: { // -fixed (fixed-point positions)
+                fixed = true;
+                break;
+              }
+              case 19: { // -seed value (seeded, deterministic with -virtual)
+                // any 64-bit seed, e.g. one from a recording
+                String value = isInteger ? args[currentArg] : currentArg + 1 < argc ? args[currentArg + 1] : "";
+                try {
+                  seed = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                  System.err.println("illegal parameters" + EOL + USAGE);
+                  System.exit(1);
+                }
+                break;
+              }
+              case 20: { // -record file (record inbound commands)
+                if (isString) record = args[currentArg + 1];
+                else {
+                  System.err.println("illegal parameters" + EOL + USAGE);
+                  System.exit(1);
+                }
+                break;
+              }
+              case 21: { // -replay file (replay a recording)
+                if (isString) {
+                  script = args[currentArg + 1];
+                  virtual = true;
+                  try {
+                    Long recorded = ElevatorIO.readSeed(script);
+                    if (seed == null) seed = recorded;
+                  } catch (IOException e) {
+                    System.err.println("Cannot read the recording " + script + ". Bye, bye.");
+                    System.exit(1);
+                  }
+                } else {
+                  System.err.println("illegal parameters" + EOL + USAGE);
+                  System.exit(1);
+                }
+                break;
+              }
+              case 22: { // -actors threads (actor pool of the controller)
+                if (isInteger && number >= 0) actors = number;
+                else {
+                  System.err.println("illegal parameters" + EOL + USAGE);
+                  System.exit(1);
+                }
+                break;
+              }
+              case 23: { // -vthreads (virtual threads for the controller)
+                virtualThreads = true;
+                break;
+              }
+              case 24: { // -dispatch name (dispatch strategy)
+                if (isString && (args[currentArg + 1].equalsIgnoreCase("heuristic")
+                    || args[currentArg + 1].equalsIgnoreCase("eta")
+                    || args[currentArg + 1].equalsIgnoreCase("adaptive")
+                    || args[currentArg + 1].equalsIgnoreCase("zoned")
+                    || args[currentArg + 1].equalsIgnoreCase("lookahead"))) dispatch = args[currentArg + 1];
+                else {
+                  System.err.println("illegal parameters" + EOL + USAGE);
+                  System.exit(1);
+                }
+                break;
+              }
+              case 25: { // -batch millis (batch dispatch window)
+                if (isInteger && number >= 0) batch = number;
+                else {
+                  System.err.println("illegal parameters" + EOL + USAGE);
+                  System.exit(1);
+                }
+                break;
+              }
+              case 26: { // -reassign millis (reassignment of hall calls)
+                if (isInteger && number >= 0) reassign = number;
+                else {
+                  System.err.println("illegal parameters" + EOL + USAGE);
+                  System.exit(1);
+                }
+                break;
+              }
+              case 27: { // -dwell millis (door dwell)
+                if (isInteger && number >= 0) dwell = number;
+                else {
+                  System.err.println("illegal parameters" + EOL + USAGE);
+                  System.exit(1);
+                }
+                break;
+              }
+              case 28: { // -mindwell millis (door dwell before an early close)
+                if (isInteger && number >= 0) minDwell = number;
+                else {
+                  System.err.println("illegal parameters" + EOL + USAGE);
+                  System.exit(1);
+                }
+                break;
+              }
+              case 29: { // -destination (destination dispatch)
+                destination = true;
+                break;
+              }
+              case 30: { // -park millis (parking of idle elevators)
+                if (isInteger && number >= 0) park = number;
+                else {
+                  System.err.println("illegal parameters" + EOL + USAGE);
+                  System.exit(1);
+                }
+                break;
               }
               default: ;
             }
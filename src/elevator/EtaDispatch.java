@@ -0,0 +1,128 @@
+package elevator;
+
+import java.util.Random;
+
+/**
+ * Dispatches a hall call to the elevator with the earliest estimated time of
+ * arrival (ETA) at the call. The ETA of an elevator is the time to travel the
+ * route of its sweep to the floor of the call, in the direction of the call,
+ * plus a door dwell for every floor on the way where it has a stop queued,
+ * and a dwell if its doors are open. An elevator that is heading away from
+ * the call, or passes the floor in the other direction, travels to the end
+ * of its queue and back first. An elevator heading for its parking stop is
+ * idle. Ties go to the elevator with the lower number, stopped elevators are
+ * never chosen.
+ */
+public class EtaDispatch implements DispatchStrategy {
+
+    /**
+     * The time an elevator spends at a stop in milliseconds: the default
+     * door dwell of 3 s and a second to stop, open and close the doors and
+     * start again
+     */
+    public static final long DWELL = 4000;
+    /**
+     * The velocity used if none is known, in floors per millisecond: a floor
+     * per second
+     */
+    public static final double DEFAULT_VELOCITY = 0.001;
+
+    private final double millisPerFloor;
+
+    /**
+     * Creates the dispatcher for elevators of the given velocity.
+     *
+     * @param velocity the velocity in floors per millisecond, 0 for the
+     * default velocity
+     */
+    public EtaDispatch(double velocity) {
+        millisPerFloor = 1 / (velocity > 0 ? velocity : DEFAULT_VELOCITY);
+    }
+
+    @Override
+    public String getName() {
+        return "eta";
+    }
+
+    /**
+     * Returns the time the elevators take to travel a floor.
+     *
+     * @return the time in milliseconds
+     */
+    public double getMillisPerFloor() {
+        return millisPerFloor;
+    }
+
+    @Override
+    public Elevator select(Elevator[] elevators, int floor, int dir, Random random) {
+        Elevator best = null;
+        double bestEta = Double.MAX_VALUE;
+        for (Elevator elevator : elevators) {
+            if (elevator == null || elevator.isStop()) {
+                continue;
+            }
+            double eta = eta(elevator, floor, dir);
+            if (eta < bestEta) {
+                best = elevator;
+                bestEta = eta;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Estimates the time in milliseconds until the elevator stops at the
+     * given floor to go in the given direction.
+     *
+     * @param elevator the elevator
+     * @param floor the floor of the call
+     * @param dir the direction of the call
+     * @return the estimated time of arrival
+     */
+    public double eta(Elevator elevator, int floor, int dir) {
+        double position = elevator.Getpos();
+        double eta = elevator.Getdoorstat() != 0 || elevator.Getdoor() != 0 ? DWELL : 0;
+        ElevatorObserver current = elevator.getCurrentObserver();
+        if (current == null || elevator.isParking()) {
+            return eta + Math.abs(floor - position) * millisPerFloor;
+        }
+        int top = Math.max(elevator.getQueueTopFloor(), current.getButton().getFloor());
+        int bottom = Math.min(elevator.getQueueBotFloor(), current.getButton().getFloor());
+        int heading = elevator.Getdir();
+        if (heading == 0) {
+            heading = current.getButton().getFloor() >= position ? 1 : -1;
+        }
+        double distance;
+        int stops;
+        if (heading == 1) {
+            int next = (int) Math.ceil(position);
+            if (dir == 1 && floor >= position) {
+                distance = floor - position;
+                stops = elevator.countStops(next, floor - 1);
+            } else if (dir == -1) {
+                top = Math.max(top, floor);
+                distance = (top - position) + (top - floor);
+                stops = elevator.countStops(next, top);
+            } else {
+                bottom = Math.min(bottom, floor);
+                distance = (top - position) + (top - bottom) + (floor - bottom);
+                stops = elevator.countStops(bottom, top);
+            }
+        } else {
+            int next = (int) Math.floor(position);
+            if (dir == -1 && floor <= position) {
+                distance = position - floor;
+                stops = elevator.countStops(floor + 1, next);
+            } else if (dir == 1) {
+                bottom = Math.min(bottom, floor);
+                distance = (position - bottom) + (floor - bottom);
+                stops = elevator.countStops(bottom, next);
+            } else {
+                top = Math.max(top, floor);
+                distance = (position - bottom) + (top - bottom) + (top - floor);
+                stops = elevator.countStops(bottom, top);
+            }
+        }
+        return eta + Math.max(distance, 0) * millisPerFloor + stops * DWELL;
+    }
+}
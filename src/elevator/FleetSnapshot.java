@@ -0,0 +1,129 @@
+package elevator;
+
+/**
+ * An immutable copy of the state of all elevators taken by the simulation
+ * thread at the end of a time step. The simulator publishes a new snapshot
+ * with a volatile write after every tick that changed the state, so readers
+ * (controller threads, RMI servants, position listeners, the "where"
+ * command) always see a consistent combination of positions, directions,
+ * doors and scales of all elevators without blocking the simulation thread.
+ * The sequence number of the snapshot is the number of the tick after which
+ * it was taken.
+ */
+public final class FleetSnapshot {
+
+    private final long sequence;
+    private final double[] position;
+    private final int[] units;
+    private final byte[] direction;
+    private final byte[] doorStatus;
+    private final byte[] doorDirection;
+    private final int[] scale;
+
+    /**
+     * Takes a snapshot of the given fleet state. Must be called by the writer
+     * of the fleet state.
+     *
+     * @param fleet the fleet state to copy
+     * @param sequence the sequence number (tick) of the snapshot
+     */
+    FleetSnapshot(FleetState fleet, long sequence) {
+        this.sequence = sequence;
+        this.position = fleet.isFixed() ? null : fleet.position.clone();
+        this.units = fleet.isFixed() ? fleet.units.clone() : null;
+        this.direction = fleet.direction.clone();
+        this.doorStatus = fleet.doorStatus.clone();
+        this.doorDirection = fleet.doorDirection.clone();
+        this.scale = fleet.scale.clone();
+    }
+
+    /**
+     * Returns the sequence number of this snapshot, i.e. the number of the
+     * tick after which it was taken.
+     *
+     * @return the sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the number of elevators in the snapshot.
+     *
+     * @return the number of elevators
+     */
+    public int size() {
+        return direction.length;
+    }
+
+    /**
+     * Returns the position of a cabin in floor units.
+     *
+     * @param index the index of the elevator (0, 1, ...)
+     * @return the position of the cabin
+     */
+    public double getPosition(int index) {
+        if (units != null) {
+            return (double) units[index] / FleetState.RESOLUTION;
+        }
+        return position[index];
+    }
+
+    /**
+     * Returns the positions of all cabins in floor units.
+     *
+     * @return a new array with the positions of the cabins
+     */
+    public double[] getPositions() {
+        if (units != null) {
+            double[] positions = new double[units.length];
+            for (int i = 0; i < units.length; i++) {
+                positions[i] = (double) units[i] / FleetState.RESOLUTION;
+            }
+            return positions;
+        }
+        return position.clone();
+    }
+
+    /**
+     * Returns the direction of movement of a cabin: 1 (upwards), -1
+     * (downwards), 0 (stopped).
+     *
+     * @param index the index of the elevator (0, 1, ...)
+     * @return the direction of the cabin
+     */
+    public int getDirection(int index) {
+        return direction[index];
+    }
+
+    /**
+     * Returns the state of a door (DoorStatus.CLOSED ... DoorStatus.OPEN4).
+     *
+     * @param index the index of the elevator (0, 1, ...)
+     * @return the state of the door
+     */
+    public int getDoorStatus(int index) {
+        return doorStatus[index];
+    }
+
+    /**
+     * Returns the direction of movement of a door: 1 (opening), -1 (closing),
+     * 0 (still).
+     *
+     * @param index the index of the elevator (0, 1, ...)
+     * @return the direction of the door
+     */
+    public int getDoorDirection(int index) {
+        return doorDirection[index];
+    }
+
+    /**
+     * Returns the value of a scale (level indicator).
+     *
+     * @param index the index of the elevator (0, 1, ...)
+     * @return the value of the scale
+     */
+    public int getScale(int index) {
+        return scale[index];
+    }
+}
@@ -0,0 +1,380 @@
+package elevator;
+
+/**
+ * Holds the state of the motors, cabins, doors and scales of all elevators of
+ * a building in a compact form: one primitive array per state component,
+ * indexed by the elevator index (elevator number - 1). An
+ * <code>Elevator</code> object is a view of one index of the fleet state.
+ * <p>
+ * The fleet state does not depend on the number of floors, so it holds up
+ * for large fleets in tall buildings (e.g. 1,000 elevators and 200 floors)
+ * where one object graph per elevator would not.
+ * <p>
+ * In the fixed-point mode (see {@link #FleetState(int, int, boolean)}), the
+ * position of a cabin is an integer number of {@link #RESOLUTION}ths of a
+ * floor instead of a <code>double</code>. The cabins are stepped with integer
+ * arithmetic, so a cabin that has moved to a floor is exactly at the floor,
+ * and positions can be compared without tolerances. Positions are converted
+ * to floor units only when they are read.
+ * <p>
+ * The fleet state does no range checking and no synchronization. When the
+ * elevators are driven by an <code>ElevatorSimulator</code>, the simulation
+ * thread is the only writer of the fleet state: it applies queued commands and
+ * steps all elevators with {@link #step(double, int, int, int[])} in one tight
+ * loop over the arrays, without taking any lock. Otherwise, the
+ * <code>Elevator</code> views synchronize the updates.
+ */
+public class FleetState {
+
+    /**
+     * The number of position units per floor in the fixed-point mode
+     */
+    public static final int RESOLUTION = 1000;
+
+    private final int size;
+    private final int topFloor;
+    final double[] position;
+    final int[] units;
+    final byte[] direction;
+    final byte[] doorStatus;
+    final byte[] doorDirection;
+    final int[] scale;
+
+    /**
+     * Creates the state of a fleet of elevators. All cabins are at the bottom
+     * floor, stopped, with closed doors and scales set to the bottom floor.
+     *
+     * @param numberOfElevators the number of elevators
+     * @param topFloor the number of the top floor
+     */
+    public FleetState(int numberOfElevators, int topFloor) {
+        this(numberOfElevators, topFloor, false);
+    }
+
+    /**
+     * Creates the state of a fleet of elevators with floating-point or
+     * fixed-point positions. All cabins are at the bottom floor, stopped,
+     * with closed doors and scales set to the bottom floor.
+     *
+     * @param numberOfElevators the number of elevators
+     * @param topFloor the number of the top floor
+     * @param fixed true to keep positions in units of 1/RESOLUTION floor
+     */
+    public FleetState(int numberOfElevators, int topFloor, boolean fixed) {
+        if (numberOfElevators <= 0 || topFloor < 1) {
+            throw new IllegalArgumentException("Illegal fleet of "
+                    + numberOfElevators + " elevators, top floor " + topFloor);
+        }
+        this.size = numberOfElevators;
+        this.topFloor = topFloor;
+        position = fixed ? null : new double[numberOfElevators];
+        units = fixed ? new int[numberOfElevators] : null;
+        direction = new byte[numberOfElevators];
+        doorStatus = new byte[numberOfElevators];
+        doorDirection = new byte[numberOfElevators];
+        scale = new int[numberOfElevators];
+    }
+
+    /**
+     * Creates a copy of the given fleet state.
+     */
+    private FleetState(FleetState fleet) {
+        size = fleet.size;
+        topFloor = fleet.topFloor;
+        position = fleet.position == null ? null : fleet.position.clone();
+        units = fleet.units == null ? null : fleet.units.clone();
+        direction = fleet.direction.clone();
+        doorStatus = fleet.doorStatus.clone();
+        doorDirection = fleet.doorDirection.clone();
+        scale = fleet.scale.clone();
+    }
+
+    /**
+     * Returns a copy of this fleet state, one clone per array, e.g. to step
+     * the elevators ahead in a forecast without touching the original.
+     * Must be called by the writer of the fleet state, or on a fleet state
+     * that is not written any more.
+     *
+     * @return the copy
+     */
+    public FleetState copy() {
+        return new FleetState(this);
+    }
+
+    /**
+     * Returns a copy of the state of one elevator as a fleet of one, e.g. to
+     * step a single elevator ahead in a forecast without copying the whole
+     * fleet. Read by another thread than the writer, the state of the
+     * elevator may be a step behind.
+     *
+     * @param index the index of the elevator (0, 1, ...)
+     * @return the copy, with the elevator at the index 0
+     */
+    public FleetState slice(int index) {
+        FleetState slice = new FleetState(1, topFloor, units != null);
+        if (units != null) {
+            slice.units[0] = units[index];
+        } else {
+            slice.position[0] = position[index];
+        }
+        slice.direction[0] = direction[index];
+        slice.doorStatus[0] = doorStatus[index];
+        slice.doorDirection[0] = doorDirection[index];
+        slice.scale[0] = scale[index];
+        return slice;
+    }
+
+    /**
+     * Returns the number of elevators in the fleet.
+     *
+     * @return the number of elevators
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of the top floor.
+     *
+     * @return the top floor
+     */
+    public int getTopFloor() {
+        return topFloor;
+    }
+
+    /**
+     * Checks whether the positions are fixed-point numbers.
+     *
+     * @return true in the fixed-point mode
+     */
+    public boolean isFixed() {
+        return units != null;
+    }
+
+    /**
+     * Returns the position of a cabin in floor units.
+     *
+     * @param index the index of the elevator (0, 1, ...)
+     * @return the position of the cabin
+     */
+    public double getPosition(int index) {
+        return units != null ? (double) units[index] / RESOLUTION : position[index];
+    }
+
+    /**
+     * Sets the position of a cabin. In the fixed-point mode, the position is
+     * rounded to the nearest unit.
+     *
+     * @param index the index of the elevator (0, 1, ...)
+     * @param f the position of the cabin in floor units
+     */
+    void setPosition(int index, double f) {
+        if (units != null) {
+            units[index] = toUnits(f);
+        } else {
+            position[index] = f;
+        }
+    }
+
+    /**
+     * Checks whether a cabin is at a floor: exactly in the fixed-point mode,
+     * less than 0.04 above or 0.03 below the floor otherwise.
+     *
+     * @param index the index of the elevator (0, 1, ...)
+     * @return true if the cabin is at a floor
+     */
+    public boolean isAtFloor(int index) {
+        if (units != null) {
+            return units[index] % RESOLUTION == 0;
+        }
+        double f = position[index] % 1;
+        return f < 0.04 || f > 0.97;
+    }
+
+    /**
+     * Converts a position or a distance in floor units to the nearest number
+     * of fixed-point units.
+     *
+     * @param f the position or the distance in floor units
+     * @return the number of units
+     */
+    static int toUnits(double f) {
+        return (int) Math.round(f * RESOLUTION);
+    }
+
+    /**
+     * Moves the cabin of one elevator one <code>step</code> in its current
+     * direction and stops it at the bottom or the top floor.
+     *
+     * @param index the index of the elevator (0, 1, ...)
+     * @param step the movement step in floor units
+     * @return false if the cabin is stopped (has not moved)
+     */
+    boolean move(int index, double step) {
+        int dir = direction[index];
+        if (dir == Elevators.STOP) {
+            return false;
+        }
+        if (units != null) {
+            int p = units[index] + dir * toUnits(step);
+            if (p < 0) {
+                p = 0;
+                direction[index] = Elevators.STOP;
+            } else if (p > topFloor * RESOLUTION) {
+                p = topFloor * RESOLUTION;
+                direction[index] = Elevators.STOP;
+            }
+            units[index] = p;
+        } else {
+            double p = position[index] + dir * step;
+            if (p < 0.0) {
+                p = 0.0;
+                direction[index] = Elevators.STOP;
+            } else if (p > topFloor) {
+                p = topFloor;
+                direction[index] = Elevators.STOP;
+            }
+            position[index] = p;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the direction of movement of a cabin: 1 (upwards), -1
+     * (downwards), 0 (stopped).
+     *
+     * @param index the index of the elevator (0, 1, ...)
+     * @return the direction of the cabin
+     */
+    public int getDirection(int index) {
+        return direction[index];
+    }
+
+    /**
+     * Returns the state of a door (DoorStatus.CLOSED ... DoorStatus.OPEN4).
+     *
+     * @param index the index of the elevator (0, 1, ...)
+     * @return the state of the door
+     */
+    public int getDoorStatus(int index) {
+        return doorStatus[index];
+    }
+
+    /**
+     * Returns the direction of movement of a door: 1 (opening), -1 (closing),
+     * 0 (still).
+     *
+     * @param index the index of the elevator (0, 1, ...)
+     * @return the direction of the door
+     */
+    public int getDoorDirection(int index) {
+        return doorDirection[index];
+    }
+
+    /**
+     * Returns the value of a scale (level indicator).
+     *
+     * @param index the index of the elevator (0, 1, ...)
+     * @return the value of the scale
+     */
+    public int getScale(int index) {
+        return scale[index];
+    }
+
+    /**
+     * Checks whether any motor or door of the fleet is moving.
+     *
+     * @return true if some motor or door is moving
+     */
+    public boolean isMoving() {
+        for (int i = 0; i < size; i++) {
+            if ((direction[i] | doorDirection[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Performs one time step of the elevators with indices from
+     * <code>from</code> (inclusive) to <code>to</code> (exclusive): moves
+     * every moving cabin one <code>step</code>, stops it at the bottom or the
+     * top floor, moves every moving door one "degree of openness" and stops it
+     * when completely open or closed. Must only be called by the single writer
+     * of the fleet state.
+     *
+     * @param step the movement step in floor units
+     * @param from the index of the first elevator to step
+     * @param to the index after the last elevator to step
+     * @param moved the array where the indices of the elevators whose cabins
+     * have moved are stored, starting at <code>moved[from]</code>
+     * @return the number of elevators whose cabins have moved
+     */
+    int step(double step, int from, int to, int[] moved) {
+        if (units != null) {
+            return stepFixed(toUnits(step), from, to, moved);
+        }
+        final double top = topFloor;
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int dir = direction[i];
+            if (dir != Elevators.STOP) {
+                double p = position[i] + dir * step;
+                if (p < 0.0) {
+                    p = 0.0;
+                    direction[i] = Elevators.STOP;
+                } else if (p > top) {
+                    p = top;
+                    direction[i] = Elevators.STOP;
+                }
+                position[i] = p;
+                moved[from + count++] = i;
+            }
+            stepDoor(i);
+        }
+        return count;
+    }
+
+    /**
+     * Performs one time step as {@link #step(double, int, int, int[])} does,
+     * with fixed-point positions and a step in position units.
+     */
+    private int stepFixed(int step, int from, int to, int[] moved) {
+        final int top = topFloor * RESOLUTION;
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int dir = direction[i];
+            if (dir != Elevators.STOP) {
+                int p = units[i] + dir * step;
+                if (p < 0) {
+                    p = 0;
+                    direction[i] = Elevators.STOP;
+                } else if (p > top) {
+                    p = top;
+                    direction[i] = Elevators.STOP;
+                }
+                units[i] = p;
+                moved[from + count++] = i;
+            }
+            stepDoor(i);
+        }
+        return count;
+    }
+
+    /**
+     * Moves the door of one elevator one "degree of openness" and stops it
+     * when completely open or closed.
+     */
+    private void stepDoor(int i) {
+        int doorDir = doorDirection[i];
+        if (doorDir != Elevators.STOP) {
+            int stat = doorStatus[i];
+            if ((stat == DoorStatus.CLOSED && doorDir == Elevators.CLOSE)
+                    || (stat == DoorStatus.OPEN4 && doorDir == Elevators.OPEN)) {
+                doorDirection[i] = Elevators.STOP;
+            } else {
+                doorStatus[i] = (byte) (stat + doorDir);
+            }
+        }
+    }
+}
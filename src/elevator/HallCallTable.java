@@ -0,0 +1,376 @@
+package elevator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The hall calls of a building: one entry per floor and direction, which
+ * records whether the hall button is lit, which elevator has been assigned to
+ * the call and when the button was pressed. A press claims the entry
+ * atomically, so two concurrent presses of the same button result in one
+ * assignment; the entry is cleared when the assigned elevator stops at the
+ * floor, which also records the waiting time of the call. A pending call
+ * may be moved to another elevator (see
+ * {@link #reassign(int, int, int, int, long)}). A call no elevator can take
+ * stays pending, unassigned, until an elevator is available again (see
+ * {@link #unassign(int, int)}).
+ */
+public class HallCallTable {
+
+    /**
+     * The state of a hall call.
+     */
+    public enum Status {
+        /**
+         * The button has been pressed, no elevator has been assigned yet
+         */
+        CLAIMED,
+        /**
+         * An elevator has been assigned to the call
+         */
+        ASSIGNED,
+        /**
+         * No elevator could take the call, e.g. because all are stopped
+         */
+        UNASSIGNED
+    }
+
+    /**
+     * A pending hall call. Hall calls are immutable; a change of the state
+     * replaces the entry of the table.
+     */
+    public static final class HallCall {
+
+        private final int floor;
+        private final int dir;
+        private final int car;
+        private final long pressed;
+        private final long moved;
+        private final Status status;
+
+        HallCall(int floor, int dir, int car, long pressed, long moved, Status status) {
+            this.floor = floor;
+            this.dir = dir;
+            this.car = car;
+            this.pressed = pressed;
+            this.moved = moved;
+            this.status = status;
+        }
+
+        public int getFloor() {
+            return floor;
+        }
+
+        public int getDir() {
+            return dir;
+        }
+
+        /**
+         * Returns the number of the assigned elevator, 0 if none.
+         *
+         * @return the number of the elevator
+         */
+        public int getCar() {
+            return car;
+        }
+
+        /**
+         * Returns the time of the press in milliseconds of the clock.
+         *
+         * @return the time of the press
+         */
+        public long getPressed() {
+            return pressed;
+        }
+
+        /**
+         * Returns the time the call was last moved to another elevator, the
+         * time of the press if it has never been moved.
+         *
+         * @return the time of the last move
+         */
+        public long getMoved() {
+            return moved;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+    }
+
+    private static final int BUCKET = 100;
+    private static final int BUCKETS = 6000;
+    private final int topFloor;
+    private final AtomicReferenceArray<HallCall> calls;
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong totalWait = new AtomicLong();
+    private final AtomicLong maxWait = new AtomicLong();
+    /**
+     * The histogram of the waiting times, in buckets of
+     * <code>BUCKET</code> ms; the last bucket holds all longer waits
+     */
+    private final AtomicLongArray waits = new AtomicLongArray(BUCKETS + 1);
+
+    /**
+     * Creates an empty table for the floors 0 to the top floor.
+     *
+     * @param topFloor the number of the top floor
+     */
+    public HallCallTable(int topFloor) {
+        this.topFloor = topFloor;
+        calls = new AtomicReferenceArray<>((topFloor + 1) * 2);
+    }
+
+    private int slot(int floor, int dir) {
+        if (floor < 0 || floor > topFloor || (dir != 1 && dir != -1)) {
+            throw new IllegalArgumentException("Illegal hall call " + floor + " " + dir);
+        }
+        return floor * 2 + (dir > 0 ? 1 : 0);
+    }
+
+    /**
+     * Claims the hall call at the given floor in the given direction, unless
+     * it is pending already.
+     *
+     * @param floor the floor
+     * @param dir the direction, 1 for up and -1 for down
+     * @param now the time of the press
+     * @return true if the call has been claimed by this press, false if the
+     * call is pending already
+     */
+    public boolean claim(int floor, int dir, long now) {
+        if (calls.compareAndSet(slot(floor, dir), null,
+                new HallCall(floor, dir, 0, now, now, Status.CLAIMED))) {
+            return true;
+        }
+        merged.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Claims an unassigned hall call again, so that it can be assigned to an
+     * elevator that has become available.
+     *
+     * @param floor the floor
+     * @param dir the direction, 1 for up and -1 for down
+     * @return true if the call has been claimed, false if it is not pending
+     * unassigned
+     */
+    public boolean reclaim(int floor, int dir) {
+        int slot = slot(floor, dir);
+        HallCall call = calls.get(slot);
+        return call != null && call.status == Status.UNASSIGNED && calls.compareAndSet(slot, call,
+                new HallCall(floor, dir, 0, call.pressed, call.moved, Status.CLAIMED));
+    }
+
+    /**
+     * Records the elevator assigned to a pending hall call.
+     *
+     * @param floor the floor
+     * @param dir the direction, 1 for up and -1 for down
+     * @param car the number of the elevator
+     * @return false if the call is not pending
+     */
+    public boolean assign(int floor, int dir, int car) {
+        int slot = slot(floor, dir);
+        HallCall call;
+        do {
+            call = calls.get(slot);
+            if (call == null) {
+                return false;
+            }
+        } while (!calls.compareAndSet(slot, call,
+                new HallCall(floor, dir, car, call.pressed, call.moved, Status.ASSIGNED)));
+        return true;
+    }
+
+    /**
+     * Moves a pending hall call from one elevator to another, unless it has
+     * been served or moved meanwhile.
+     *
+     * @param floor the floor
+     * @param dir the direction, 1 for up and -1 for down
+     * @param from the number of the elevator assigned to the call
+     * @param to the number of the elevator to assign the call to
+     * @param now the time of the move
+     * @return true if the call has been moved
+     */
+    public boolean reassign(int floor, int dir, int from, int to, long now) {
+        int slot = slot(floor, dir);
+        HallCall call = calls.get(slot);
+        return call != null && call.car == from && calls.compareAndSet(slot, call,
+                new HallCall(floor, dir, to, call.pressed, now, Status.ASSIGNED));
+    }
+
+    /**
+     * Clears the hall call at the given floor in the given direction if the
+     * given elevator has been assigned to it, and records its waiting time.
+     *
+     * @param floor the floor
+     * @param dir the direction, 1 for up and -1 for down
+     * @param car the number of the elevator that has stopped at the floor
+     * @param now the time of the stop
+     * @return true if the call has been served
+     */
+    public boolean serve(int floor, int dir, int car, long now) {
+        if (floor < 0 || floor > topFloor || (dir != 1 && dir != -1)) {
+            return false;
+        }
+        int slot = slot(floor, dir);
+        HallCall call = calls.get(slot);
+        if (call == null || call.car != car || !calls.compareAndSet(slot, call, null)) {
+            return false;
+        }
+        long wait = now - call.pressed;
+        served.incrementAndGet();
+        totalWait.addAndGet(wait);
+        long max;
+        while (wait > (max = maxWait.get()) && !maxWait.compareAndSet(max, wait)) {
+        }
+        waits.incrementAndGet((int) Math.min(Math.max(wait, 0) / BUCKET, BUCKETS));
+        return true;
+    }
+
+    /**
+     * Marks a claimed hall call as unassigned if no elevator can take it. The
+     * call stays pending, with its time of the press, until it is claimed
+     * again (see {@link #reclaim(int, int)}).
+     *
+     * @param floor the floor
+     * @param dir the direction, 1 for up and -1 for down
+     * @return false if the call is not pending
+     */
+    public boolean unassign(int floor, int dir) {
+        int slot = slot(floor, dir);
+        HallCall call;
+        do {
+            call = calls.get(slot);
+            if (call == null) {
+                return false;
+            }
+        } while (!calls.compareAndSet(slot, call,
+                new HallCall(floor, dir, 0, call.pressed, call.moved, Status.UNASSIGNED)));
+        return true;
+    }
+
+    /**
+     * Returns the pending hall call at the given floor in the given
+     * direction.
+     *
+     * @param floor the floor
+     * @param dir the direction, 1 for up and -1 for down
+     * @return the hall call, or null if none is pending
+     */
+    public HallCall get(int floor, int dir) {
+        return calls.get(slot(floor, dir));
+    }
+
+    /**
+     * Checks whether the hall button at the given floor in the given
+     * direction is lit, i.e. its call is pending.
+     *
+     * @param floor the floor
+     * @param dir the direction, 1 for up and -1 for down
+     * @return true if the lamp of the button is lit
+     */
+    public boolean isLit(int floor, int dir) {
+        return get(floor, dir) != null;
+    }
+
+    /**
+     * Returns the number of pending hall calls.
+     *
+     * @return the number of pending calls
+     */
+    public int getPending() {
+        int pending = 0;
+        for (int i = 0; i < calls.length(); i++) {
+            if (calls.get(i) != null) {
+                pending++;
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Returns the pending hall calls.
+     *
+     * @return a snapshot of the pending calls, by floor and direction
+     */
+    public List<HallCall> getPendingCalls() {
+        ArrayList<HallCall> pending = new ArrayList<>();
+        for (int i = 0; i < calls.length(); i++) {
+            HallCall call = calls.get(i);
+            if (call != null) {
+                pending.add(call);
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Returns the number of hall calls served so far.
+     *
+     * @return the number of served calls
+     */
+    public long getServed() {
+        return served.get();
+    }
+
+    /**
+     * Returns the number of presses of a hall button whose call was pending
+     * already, and which have been merged into it.
+     *
+     * @return the number of merged presses
+     */
+    public long getMerged() {
+        return merged.get();
+    }
+
+    /**
+     * Returns the average waiting time of the served hall calls.
+     *
+     * @return the average waiting time in milliseconds, 0 if none
+     */
+    public long getAverageWait() {
+        long count = served.get();
+        return count == 0 ? 0 : totalWait.get() / count;
+    }
+
+    /**
+     * Returns a percentile of the waiting times of the served hall calls,
+     * rounded up to 100 ms.
+     *
+     * @param percent the percentile, e.g. 95
+     * @return the waiting time in milliseconds below which the given
+     * percentage of the calls has been served, 0 if none
+     */
+    public long getPercentileWait(double percent) {
+        long count = served.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percent / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += waits.get(i);
+            if (seen >= rank) {
+                return (i + 1L) * BUCKET;
+            }
+        }
+        return maxWait.get();
+    }
+
+    /**
+     * Returns the longest waiting time of the served hall calls.
+     *
+     * @return the longest waiting time in milliseconds
+     */
+    public long getMaxWait() {
+        return maxWait.get();
+    }
+}
@@ -0,0 +1,90 @@
+package elevator;
+
+import java.util.Random;
+
+/**
+ * The original dispatch of the controller, a cascade of distance heuristics:
+ * an elevator already heading for the floor in the direction of the call, an
+ * idle elevator close to the call, the closest elevator moving in the
+ * direction of the call or the one with the shortest detour to the call. A
+ * stopped elevator is never chosen; if all are stopped, none is.
+ */
+public class HeuristicDispatch implements DispatchStrategy {
+
+    @Override
+    public String getName() {
+        return "heuristic";
+    }
+
+    @Override
+    public Elevator select(Elevator[] elevators, int currentFloor, int dir, Random random) {
+        double movingDistance = Double.MAX_VALUE;
+        double emptyDistance = Double.MAX_VALUE;
+        double floorDistance = Double.MAX_VALUE;
+        Elevator emptyElevator = null;
+        Elevator movingElevator = null;
+        Elevator floorElevator = null;
+
+        for (Elevator tempElevator : elevators) {
+            if (tempElevator == null) {
+                continue;
+            }
+            if (tempElevator.isStop()) {
+                continue;
+            }
+
+            // read once, the elevator may finish its current observer meanwhile;
+            // a parking elevator is idle
+            ElevatorObserver current = tempElevator.isParking() ? null : tempElevator.getCurrentObserver();
+            double tempDistance = Math.abs(currentFloor - tempElevator.Getpos());
+            if (current != null && current.getButton().getDir() == dir) {
+                if (tempDistance < movingDistance) {
+                    movingElevator = tempElevator;
+                    movingDistance = tempDistance;
+                }
+            } else if (current == null) {
+                if (tempDistance < 0.5) {
+                    emptyElevator = tempElevator;
+                    break;
+                }
+                if (tempDistance < emptyDistance) {
+                    emptyElevator = tempElevator;
+                    emptyDistance = tempDistance;
+                }
+            } else if (current.getButton().getDir() == 1) {
+                int tempFloorDistance = (tempElevator.getQueueTopFloor() - tempElevator.getCurrentFloor())
+                        + (tempElevator.getQueueTopFloor() - currentFloor);
+                if (tempFloorDistance < floorDistance) {
+                    floorDistance = tempFloorDistance;
+                    floorElevator = tempElevator;
+                }
+            } else {
+                int tempFloorDistance = (tempElevator.getCurrentFloor() - tempElevator.getQueueBotFloor())
+                        + (currentFloor - tempElevator.getQueueBotFloor());
+                if (tempFloorDistance < floorDistance || floorElevator == null) {
+                    floorDistance = tempFloorDistance;
+                    floorElevator = tempElevator;
+                }
+            }
+        }
+        // the moving elevator heads in the direction of the call
+        boolean needToChangeCurrentDir = true;
+        if ((movingElevator != null && dir == -1 && currentFloor < movingElevator.Getpos())
+                || (movingElevator != null && dir == 1 && currentFloor > movingElevator.Getpos())) {
+            needToChangeCurrentDir = false;
+        }
+        if (movingElevator != null && !needToChangeCurrentDir) {
+            return movingElevator;
+        } else if (emptyElevator != null) {
+            return emptyElevator;
+        } else if (movingElevator != null && movingDistance < floorDistance) {
+            return movingElevator;
+        } else if (floorElevator != null) {
+            return floorElevator;
+        } else if (movingElevator != null) {
+            return movingElevator;
+        }
+        // all elevators are stopped
+        return null;
+    }
+}
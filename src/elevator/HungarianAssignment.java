@@ -0,0 +1,93 @@
+package elevator;
+
+import java.util.Arrays;
+
+/**
+ * Solves the assignment problem: assigns each row of a cost matrix to a
+ * distinct column so that the total cost is minimal, with the Hungarian
+ * method (Kuhn-Munkres with potentials) in O(rows<sup>2</sup> columns) time.
+ * The matrix must have at least as many columns as rows.
+ */
+final class HungarianAssignment {
+
+    private HungarianAssignment() {
+    }
+
+    /**
+     * Solves the assignment problem for the given costs, unless the deadline
+     * passes first.
+     *
+     * @param cost the costs, <code>cost[row][column]</code>, with at least as
+     * many columns as rows
+     * @param deadline the deadline in terms of <code>System.nanoTime()</code>
+     * @return the column assigned to each row, or null if the deadline has
+     * passed
+     * @throws IllegalArgumentException if there are more rows than columns
+     */
+    static int[] solve(double[][] cost, long deadline) {
+        int n = cost.length;
+        if (n == 0) {
+            return new int[0];
+        }
+        int m = cost[0].length;
+        if (n > m) {
+            throw new IllegalArgumentException("More rows than columns");
+        }
+        // 1-based, row and column 0 are sentinels
+        double[] u = new double[n + 1];
+        double[] v = new double[m + 1];
+        int[] p = new int[m + 1];
+        int[] way = new int[m + 1];
+        double[] minv = new double[m + 1];
+        boolean[] used = new boolean[m + 1];
+        for (int i = 1; i <= n; i++) {
+            if (System.nanoTime() - deadline > 0) {
+                return null;
+            }
+            p[0] = i;
+            int j0 = 0;
+            Arrays.fill(minv, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+            do {
+                used[j0] = true;
+                int i0 = p[j0];
+                double delta = Double.POSITIVE_INFINITY;
+                int j1 = 0;
+                for (int j = 1; j <= m; j++) {
+                    if (!used[j]) {
+                        double cur = cost[i0 - 1][j - 1] - u[i0] - v[j];
+                        if (cur < minv[j]) {
+                            minv[j] = cur;
+                            way[j] = j0;
+                        }
+                        if (minv[j] < delta) {
+                            delta = minv[j];
+                            j1 = j;
+                        }
+                    }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+        int[] assignment = new int[n];
+        for (int j = 1; j <= m; j++) {
+            if (p[j] != 0) {
+                assignment[p[j] - 1] = j - 1;
+            }
+        }
+        return assignment;
+    }
+}
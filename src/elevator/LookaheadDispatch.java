@@ -0,0 +1,505 @@
+package elevator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Dispatches a hall call by trying every candidate elevator in a forecast.
+ * The dispatcher takes a copy of the state of every available elevator (see
+ * {@link FleetState#slice(int)}) and of its queued stops, and simulates the
+ * next {@link #DEFAULT_HORIZON} ms of the elevator with and without the
+ * call: the cabin is stepped in ticks of {@link #TICK} ms with the stepping
+ * of the simulator, sweeps its stops as the controller does
+ * and dwells {@link EtaDispatch#DWELL} at each. A passenger picked up at a
+ * hall stop adds a stop halfway to the end of the building in the direction
+ * of the call. The call goes to the elevator that adds the least to the
+ * predicted total waiting time of its hall calls, the new one included; a
+ * call not reached within the horizon waits until the end of the horizon
+ * and the travel from the last position. The assignment does not change
+ * the route of the other elevators within the forecast, so only the
+ * candidate is stepped.
+ * <p>
+ * The candidates are evaluated in parallel by the calling thread and a
+ * worker pool (or one after the other on the calling thread), in the order
+ * of their estimated times of arrival (see {@link EtaDispatch}), and the
+ * decision is bounded by a time budget: the capture of the candidates and
+ * a forecast still running by then stop, the candidates not evaluated are
+ * skipped and the best one evaluated takes the call, or if none has been,
+ * the earliest elevator.
+ * The latencies of the decisions after the first {@link #WARMUP}, which
+ * run mostly interpreted code, are kept in a histogram for
+ * {@link #getPercentileLatency(double)}.
+ */
+public class LookaheadDispatch extends EtaDispatch {
+
+    /**
+     * The default length of the forecast in milliseconds
+     */
+    public static final long DEFAULT_HORIZON = 60000;
+    /**
+     * The default time budget of a decision in nanoseconds
+     */
+    public static final long DEFAULT_BUDGET = 2000000;
+    /**
+     * The time step of the forecast in milliseconds
+     */
+    public static final long TICK = 100;
+    /**
+     * The number of ticks of a forecast between two checks of the deadline,
+     * a power of 2
+     */
+    private static final int DEADLINE_TICKS = 16;
+    /**
+     * The number of the first decisions left out of the latencies, while
+     * the forecast is compiled
+     */
+    public static final int WARMUP = 200;
+    private static final long NOT_EVALUATED = Double.doubleToRawLongBits(Double.NaN);
+    private static final int UP = 1;
+    private static final int DOWN = 2;
+    private static final int CAR = 4;
+    /**
+     * The width of a bucket of the latency histogram in microseconds
+     */
+    private static final int BUCKET = 10;
+    private static final int BUCKETS = 1000;
+
+    private final ForkJoinPool pool;
+    private final int helperCount;
+    private volatile long horizon = DEFAULT_HORIZON;
+    private volatile long budget = DEFAULT_BUDGET;
+    private final AtomicLong decisions = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong overrides = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+    private final AtomicLongArray latencies = new AtomicLongArray(BUCKETS + 1);
+
+    /**
+     * Creates the dispatcher for elevators of the given velocity, with a
+     * worker thread per processor.
+     *
+     * @param velocity the velocity in floors per millisecond, 0 for the
+     * default velocity
+     */
+    public LookaheadDispatch(double velocity) {
+        this(velocity, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates the dispatcher for elevators of the given velocity, with the
+     * given number of worker threads.
+     *
+     * @param velocity the velocity in floors per millisecond, 0 for the
+     * default velocity
+     * @param threads the number of worker threads, 0 to evaluate the
+     * candidates one after the other on the calling thread; the calling
+     * thread evaluates candidates too, so at most one worker fewer than
+     * processors takes part
+     */
+    public LookaheadDispatch(double velocity, int threads) {
+        super(velocity);
+        if (threads < 0) {
+            throw new IllegalArgumentException("Illegal number of threads " + threads);
+        }
+        pool = threads == 0 ? null : new ForkJoinPool(threads);
+        // a worker on the processor of the calling thread only delays it
+        helperCount = Math.min(threads, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    @Override
+    public String getName() {
+        return "lookahead";
+    }
+
+    /**
+     * Sets the length of the forecast and the time budget of a decision.
+     *
+     * @param horizonMillis the length of the forecast in milliseconds
+     * @param budgetNanos the time budget in nanoseconds
+     */
+    public void setLimits(long horizonMillis, long budgetNanos) {
+        if (horizonMillis <= 0 || budgetNanos <= 0) {
+            throw new IllegalArgumentException("Illegal horizon " + horizonMillis
+                    + " or budget " + budgetNanos);
+        }
+        horizon = horizonMillis;
+        budget = budgetNanos;
+    }
+
+    /**
+     * The state of the candidates at the time of a decision, by elevator
+     * index: a copy of the state of the elevator as a fleet of one, the
+     * stops at every floor (a combination of UP, DOWN and CAR), the heading
+     * and the remaining dwell.
+     */
+    private static final class Plan {
+
+        final FleetState[] state;
+        final int[][] stops;
+        final int[] heading;
+        final long[] dwell;
+
+        Plan(int size) {
+            state = new FleetState[size];
+            stops = new int[size][];
+            heading = new int[size];
+            dwell = new long[size];
+        }
+    }
+
+    /**
+     * Copies the state of the given candidates, in their order, until the
+     * deadline; the state of a candidate not copied by then is null. The
+     * state is read without locking the simulation, as the ETA is.
+     */
+    private Plan capture(List<Elevator> candidates, int size, long deadline) {
+        Plan plan = new Plan(size);
+        for (Elevator elevator : candidates) {
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+            int i = elevator.getNumber() - 1;
+            FleetState state = elevator.copyState();
+            plan.state[i] = state;
+            int[] stops = new int[state.getTopFloor() + 1];
+            if (!elevator.isParking()) {
+                for (ElevatorButton button : elevator.getQueuedButtons()) {
+                    stops[button.getFloor()] |= button.isPanelButton() || button.getDir() == 0 ? CAR
+                            : button.getDir() == 1 ? UP : DOWN;
+                }
+            }
+            plan.stops[i] = stops;
+            int heading = state.getDirection(0);
+            ElevatorObserver current = elevator.getCurrentObserver();
+            if (heading == 0 && current != null && !elevator.isParking()) {
+                heading = current.getButton().getFloor() >= state.getPosition(0) ? 1 : -1;
+            }
+            plan.heading[i] = heading;
+            plan.dwell[i] = state.getDoorStatus(0) != 0 || state.getDoorDirection(0) != 0 ? DWELL : 0;
+        }
+        return plan;
+    }
+
+    @Override
+    public Elevator select(Elevator[] elevators, int floor, int dir, Random random) {
+        long start = System.nanoTime();
+        long deadline = start + budget;
+        ArrayList<Elevator> candidates = new ArrayList<>();
+        for (Elevator elevator : elevators) {
+            if (elevator != null && !elevator.isStop()) {
+                candidates.add(elevator);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        // the earliest first, they are the likeliest to win within the budget
+        double[] etas = new double[elevators.length];
+        for (Elevator elevator : candidates) {
+            etas[elevator.getNumber() - 1] = eta(elevator, floor, dir);
+        }
+        candidates.sort(Comparator.comparingDouble(elevator -> etas[elevator.getNumber() - 1]));
+        Plan plan = capture(candidates, elevators.length, deadline);
+        long limit = horizon;
+        int n = candidates.size();
+        // the costs as raw bits, NaN until evaluated
+        AtomicLongArray costs = new AtomicLongArray(n);
+        for (int i = 0; i < n; i++) {
+            costs.set(i, NOT_EVALUATED);
+        }
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(n);
+        // the candidates are taken in order by the workers and the calling
+        // thread, which does not wait for a worker to be scheduled
+        Runnable evaluate = () -> {
+            for (int i = next.getAndIncrement(); i < n; i = next.getAndIncrement()) {
+                int index = candidates.get(i).getNumber() - 1;
+                double cost = plan.state[index] != null && System.nanoTime() < deadline
+                        ? cost(plan, index, floor, dir, limit, deadline) : Double.NaN;
+                costs.set(i, Double.doubleToRawLongBits(cost));
+                done.countDown();
+            }
+        };
+        List<Future<?>> helpers = new ArrayList<>();
+        for (int i = 1; i < Math.min(n, helperCount + 1); i++) {
+            helpers.add(pool.submit(evaluate));
+        }
+        evaluate.run();
+        try {
+            // the forecasts still running on the workers stop at the deadline
+            done.await(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Future<?> helper : helpers) {
+            helper.cancel(false);
+        }
+        Elevator best = candidates.get(0);
+        int evaluated = 0;
+        int chosen = -1;
+        double least = 0;
+        for (int i = 0; i < n; i++) {
+            double cost = Double.longBitsToDouble(costs.get(i));
+            if (!Double.isNaN(cost)) {
+                evaluated++;
+                if (chosen < 0 || cost < least) {
+                    chosen = i;
+                    least = cost;
+                }
+            }
+        }
+        if (chosen < 0) {
+            fallbacks.incrementAndGet();
+        } else {
+            if (chosen > 0) {
+                overrides.incrementAndGet();
+            }
+            best = candidates.get(chosen);
+        }
+        skipped.addAndGet(candidates.size() - evaluated);
+        record(System.nanoTime() - start, budget);
+        return best;
+    }
+
+    private void record(long nanos, long budget) {
+        if (decisions.incrementAndGet() <= WARMUP) {
+            return;
+        }
+        latencies.incrementAndGet((int) Math.min(nanos / 1000 / BUCKET, BUCKETS));
+        maxLatency.accumulateAndGet(nanos, Math::max);
+        if (nanos > budget) {
+            overruns.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns how much the call adds to the predicted total waiting time of
+     * the hall calls of the elevator with the given index, in milliseconds,
+     * or NaN if the forecast has not finished by the deadline.
+     */
+    private double cost(Plan plan, int index, int floor, int dir, long limit, long deadline) {
+        double with = forecast(plan, index, floor, dir, limit, deadline);
+        return Double.isNaN(with) ? with : with - forecast(plan, index, -1, 0, limit, deadline);
+    }
+
+    /**
+     * Steps the elevator with the given index through its stops, with an
+     * additional hall call unless the floor is -1, and returns the predicted
+     * total waiting time of its hall calls, or NaN if the deadline (in
+     * nanoseconds of <code>System.nanoTime()</code>) passes meanwhile.
+     */
+    private double forecast(Plan plan, int index, int floor, int dir, long limit, long deadline) {
+        // the elevator is stepped alone, at the index 0 of its copy
+        FleetState fleet = plan.state[index].copy();
+        int topFloor = fleet.getTopFloor();
+        int[] stops = plan.stops[index].clone();
+        if (floor >= 0) {
+            stops[floor] |= dir == 1 ? UP : DOWN;
+        }
+        int heading = plan.heading[index];
+        long dwell = plan.dwell[index];
+        double step = TICK / getMillisPerFloor();
+        int[] moved = new int[1];
+        int target = -1;
+        double total = 0;
+        long time = 0;
+        for (int tick = 0; time < limit; time += TICK, tick++) {
+            if ((tick & (DEADLINE_TICKS - 1)) == 0 && System.nanoTime() >= deadline) {
+                return Double.NaN;
+            }
+            if (dwell > 0) {
+                dwell -= TICK;
+                continue;
+            }
+            double position = fleet.getPosition(0);
+            if (target < 0) {
+                target = next(stops, position, heading);
+                if (target < 0) {
+                    break;
+                }
+                if (Math.abs(target - position) < step / 2) {
+                    fleet.direction[0] = 0;
+                } else {
+                    heading = target > position ? 1 : -1;
+                    fleet.direction[0] = (byte) heading;
+                }
+            }
+            if (fleet.direction[0] != 0) {
+                fleet.step(step, 0, 1, moved);
+                position = fleet.getPosition(0);
+                if (heading == 1 ? position < target - 1e-6 : position > target + 1e-6) {
+                    continue;
+                }
+            }
+            fleet.setPosition(0, target);
+            fleet.direction[0] = 0;
+            heading = departure(stops, target, heading);
+            total += serve(stops, target, heading, time + TICK, topFloor);
+            dwell = DWELL;
+            target = -1;
+        }
+        double position = fleet.getPosition(0);
+        for (int f = 0; f <= topFloor; f++) {
+            int calls = ((stops[f] & UP) != 0 ? 1 : 0) + ((stops[f] & DOWN) != 0 ? 1 : 0);
+            total += calls * (limit + Math.abs(f - position) * getMillisPerFloor());
+        }
+        return total;
+    }
+
+    /**
+     * Returns the next floor to stop at: the closest stop ahead in the
+     * heading for the heading or a passenger, else the farthest stop ahead,
+     * else the same behind; or -1 if there are no stops.
+     */
+    private static int next(int[] stops, double position, int heading) {
+        if (heading == 0) {
+            int closest = -1;
+            for (int f = 0; f < stops.length; f++) {
+                if (stops[f] != 0 && (closest < 0 || Math.abs(f - position) < Math.abs(closest - position))) {
+                    closest = f;
+                }
+            }
+            return closest;
+        }
+        int ahead = ahead(stops, position, heading);
+        return ahead >= 0 ? ahead : ahead(stops, position, -heading);
+    }
+
+    private static int ahead(int[] stops, double position, int heading) {
+        int mask = (heading == 1 ? UP : DOWN) | CAR;
+        int farthest = -1;
+        if (heading == 1) {
+            for (int f = (int) Math.ceil(position - 1e-6); f < stops.length; f++) {
+                if ((stops[f] & mask) != 0) {
+                    return f;
+                }
+                if (stops[f] != 0) {
+                    farthest = f;
+                }
+            }
+        } else {
+            for (int f = (int) Math.floor(position + 1e-6); f >= 0; f--) {
+                if ((stops[f] & mask) != 0) {
+                    return f;
+                }
+                if (stops[f] != 0) {
+                    farthest = f;
+                }
+            }
+        }
+        return farthest;
+    }
+
+    /**
+     * Returns the heading in which the elevator leaves the given floor: the
+     * same if there are stops beyond it, else the other one.
+     */
+    private static int departure(int[] stops, int floor, int heading) {
+        if (heading == 0) {
+            return (stops[floor] & DOWN) != 0 && (stops[floor] & UP) == 0 ? -1 : 1;
+        }
+        for (int f = floor + heading; f >= 0 && f < stops.length; f += heading) {
+            if (stops[f] != 0) {
+                return heading;
+            }
+        }
+        return (stops[floor] & (heading == 1 ? UP : DOWN)) != 0 ? heading : -heading;
+    }
+
+    /**
+     * Clears the stops the elevator serves at the floor when leaving in the
+     * given heading, adds a stop for the passengers it picks up and returns
+     * the waiting time of the served hall calls.
+     */
+    private static double serve(int[] stops, int floor, int heading, long time, int topFloor) {
+        int hall = heading == 1 ? UP : DOWN;
+        double waited = 0;
+        if ((stops[floor] & hall) != 0) {
+            waited += time;
+            int target = heading == 1 ? (floor + topFloor + 1) / 2 : floor / 2;
+            if (target != floor) {
+                stops[target] |= CAR;
+            }
+        }
+        stops[floor] &= ~(hall | CAR);
+        return waited;
+    }
+
+    /**
+     * Returns the given percentile of the latencies of the decisions after
+     * the first {@link #WARMUP}, in buckets of 10 microseconds.
+     *
+     * @param percent the percentile, e.g. 50 or 99
+     * @return the latency in microseconds (upper bound of the bucket), 0 if
+     * there have been no decisions after the warmup
+     */
+    public long getPercentileLatency(double percent) {
+        long count = decisions.get() - WARMUP;
+        if (count <= 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percent / 100);
+        long seen = 0;
+        for (int i = 0; i <= BUCKETS; i++) {
+            seen += latencies.get(i);
+            if (seen >= rank) {
+                return i == BUCKETS ? getMaxLatency() : (i + 1L) * BUCKET;
+            }
+        }
+        return getMaxLatency();
+    }
+
+    /**
+     * Returns the greatest latency of the decisions after the first
+     * {@link #WARMUP}.
+     *
+     * @return the latency in microseconds, 0 if there have been no decisions
+     * after the warmup
+     */
+    public long getMaxLatency() {
+        return maxLatency.get() / 1000;
+    }
+
+    /**
+     * Returns the number of the decisions after the first {@link #WARMUP}
+     * that took longer than the budget.
+     *
+     * @return the number of decisions
+     */
+    public long getOverruns() {
+        return overruns.get();
+    }
+
+    /**
+     * Returns the metrics of the dispatch as " lookahead <i>decisions</i>
+     * warmup <i>count</i> p50 <i>us</i> p99 <i>us</i> max <i>us</i> overruns
+     * <i>count</i> overrides <i>count</i> skipped <i>count</i> fallbacks
+     * <i>count</i>": the number of decisions, of the first ones left out of
+     * the latencies, the latency percentiles and maximum of the others in
+     * microseconds and the number of them over the budget, the number of
+     * calls that went to another elevator than the earliest one, of
+     * candidates not evaluated within the budget, and of decisions without
+     * any.
+     *
+     * @return the metrics
+     */
+    @Override
+    public String getStats() {
+        return " lookahead " + decisions.get() + " warmup " + Math.min(decisions.get(), WARMUP)
+                + " p50 " + getPercentileLatency(50) + " p99 " + getPercentileLatency(99)
+                + " max " + getMaxLatency() + " overruns " + overruns.get()
+                + " overrides " + overrides.get() + " skipped " + skipped.get()
+                + " fallbacks " + fallbacks.get();
+    }
+}
@@ -0,0 +1,349 @@
+package elevator;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Learns where hall calls come from and chooses the floors where idle
+ * elevators wait for the next call. The policy counts the calls of every
+ * floor in two ways: in a recent counter that decays with a half-life of
+ * ten minutes, and in one counter per quarter of an hour of the day, which
+ * decays by half every day when its quarter begins again, together with the
+ * time the quarter has been observed. The predicted demand of a floor, in
+ * calls per millisecond, is the mean of the recent rate and the rate of the
+ * current quarter of the day learned so far (the recent rate alone on the
+ * first day). The time of day is the time of the clock modulo a day, i.e.
+ * the clocks of the simulation start at midnight.
+ * <p>
+ * Idle elevators are placed so that the expected distance from the next
+ * call to the closest of them is minimal (a weighted 1-median per elevator,
+ * solved exactly by dynamic programming over the floors, see
+ * {@link #place(double[], int)}). The learned state can be taken as an
+ * immutable {@link Snapshot}, e.g. to start the next run with the demand
+ * learned in this one: if the clock is behind the learned state, the state
+ * is taken to be from the day before.
+ * <p>
+ * The methods of a parking policy are synchronized.
+ */
+public class ParkingPolicy {
+
+    /**
+     * The length of a time-of-day slot in milliseconds: a quarter of an
+     * hour
+     */
+    public static final long SLOT = 15 * 60 * 1000;
+    /**
+     * The length of a day in milliseconds
+     */
+    public static final long DAY = 24 * 60 * 60 * 1000;
+    private static final int SLOTS = (int) (DAY / SLOT);
+    /**
+     * The half-life of the recent counters in milliseconds
+     */
+    public static final long HALF_LIFE = 10 * 60 * 1000;
+    /**
+     * The factor applied to the counters of a slot when it begins again,
+     * i.e. once a day
+     */
+    private static final double DAY_DECAY = 0.5;
+
+    /**
+     * The learned state of a parking policy at a point in time. Snapshots
+     * are immutable.
+     */
+    public static final class Snapshot implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private final long time;
+        private final double[] recent;
+        private final double[][] counts;
+        private final double[] exposure;
+
+        Snapshot(long time, double[] recent, double[][] counts, double[] exposure) {
+            this.time = time;
+            this.recent = recent.clone();
+            this.counts = new double[counts.length][];
+            for (int slot = 0; slot < counts.length; slot++) {
+                this.counts[slot] = counts[slot].clone();
+            }
+            this.exposure = exposure.clone();
+        }
+
+        /**
+         * Returns the time of the clock the state was last updated, -1 if
+         * the policy has not seen a call yet.
+         *
+         * @return the time in milliseconds of the clock
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * Returns the number of the top floor of the building the state has
+         * been learned in.
+         *
+         * @return the top floor
+         */
+        public int getTopFloor() {
+            return recent.length - 1;
+        }
+    }
+
+    private final int topFloor;
+    private final double[] recent;
+    private final double[][] counts;
+    private final double[] exposure;
+    private long time = -1;
+
+    /**
+     * Creates a policy without any demand learned for the floors 0 to the
+     * top floor.
+     *
+     * @param topFloor the number of the top floor
+     */
+    public ParkingPolicy(int topFloor) {
+        this.topFloor = topFloor;
+        recent = new double[topFloor + 1];
+        counts = new double[SLOTS][topFloor + 1];
+        exposure = new double[SLOTS];
+    }
+
+    private static int slot(long time) {
+        return (int) (Math.floorMod(time, DAY) / SLOT);
+    }
+
+    /**
+     * Brings the counters forward to the given time: decays the recent
+     * counters, adds the elapsed time to the slots it falls in and decays
+     * the counters of every slot that begins meanwhile.
+     */
+    private void advance(long now) {
+        if (time < 0) {
+            time = now;
+            return;
+        }
+        if (now < time) {
+            // e.g. a snapshot of an earlier run: the same time of day, the day before
+            time -= ((time - now) + DAY - 1) / DAY * DAY;
+        }
+        if (now == time) {
+            return;
+        }
+        double decay = Math.pow(0.5, (double) (now - time) / HALF_LIFE);
+        for (int floor = 0; floor <= topFloor; floor++) {
+            recent[floor] *= decay;
+        }
+        while (time < now) {
+            long end = Math.min(now, Math.floorDiv(time, SLOT) * SLOT + SLOT);
+            exposure[slot(time)] += end - time;
+            time = end;
+            if (time % SLOT == 0) {
+                // the slot begins again, a day after it began last
+                int slot = slot(time);
+                exposure[slot] *= DAY_DECAY;
+                for (int floor = 0; floor <= topFloor; floor++) {
+                    counts[slot][floor] *= DAY_DECAY;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts a hall call.
+     *
+     * @param floor the floor of the call
+     * @param now the time of the call in milliseconds of the clock
+     */
+    public synchronized void record(int floor, long now) {
+        if (floor < 0 || floor > topFloor) {
+            throw new IllegalArgumentException("Illegal floor " + floor);
+        }
+        advance(now);
+        recent[floor]++;
+        counts[slot(now)][floor]++;
+    }
+
+    /**
+     * Returns the predicted demand of every floor at the given time.
+     *
+     * @param now the time in milliseconds of the clock
+     * @return the predicted number of calls per millisecond, by floor
+     */
+    public synchronized double[] getDemand(long now) {
+        double[] demand = new double[topFloor + 1];
+        if (time < 0) {
+            return demand;
+        }
+        advance(now);
+        int slot = slot(now);
+        // a counter with a constant rate r settles at r times the mean life
+        double life = HALF_LIFE / Math.log(2);
+        // the current slot on previous days, less what has been seen today
+        double past = exposure[slot] - Math.floorMod(now, SLOT);
+        for (int floor = 0; floor <= topFloor; floor++) {
+            demand[floor] = recent[floor] / life;
+            if (past > 0) {
+                demand[floor] = (demand[floor] + counts[slot][floor] / exposure[slot]) / 2;
+            }
+        }
+        return demand;
+    }
+
+    /**
+     * Takes a snapshot of the learned state.
+     *
+     * @return the snapshot
+     */
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(time, recent, counts, exposure);
+    }
+
+    /**
+     * Replaces the learned state with the given snapshot.
+     *
+     * @param snapshot a snapshot of a policy for the same floors
+     * @throws IllegalArgumentException if the snapshot is of another
+     * building
+     */
+    public synchronized void restore(Snapshot snapshot) {
+        if (snapshot.getTopFloor() != topFloor) {
+            throw new IllegalArgumentException("Snapshot of " + (snapshot.getTopFloor() + 1)
+                    + " floors, not " + (topFloor + 1));
+        }
+        time = snapshot.time;
+        System.arraycopy(snapshot.recent, 0, recent, 0, recent.length);
+        for (int slot = 0; slot < SLOTS; slot++) {
+            System.arraycopy(snapshot.counts[slot], 0, counts[slot], 0, topFloor + 1);
+        }
+        System.arraycopy(snapshot.exposure, 0, exposure, 0, SLOTS);
+    }
+
+    /**
+     * Returns the expected distance in floors from the next call to the
+     * closest of the given positions.
+     *
+     * @param demand the demand of every floor (see
+     * {@link #getDemand(long)})
+     * @param positions the positions of the elevators
+     * @return the expected distance, 0 if there is no demand or no position
+     */
+    public static double expectedDistance(double[] demand, double[] positions) {
+        double total = 0;
+        double sum = 0;
+        for (int floor = 0; floor < demand.length; floor++) {
+            if (demand[floor] <= 0 || positions.length == 0) {
+                continue;
+            }
+            double closest = Double.MAX_VALUE;
+            for (double position : positions) {
+                closest = Math.min(closest, Math.abs(floor - position));
+            }
+            total += demand[floor];
+            sum += demand[floor] * closest;
+        }
+        return total == 0 ? 0 : sum / total;
+    }
+
+    /**
+     * Returns the floor for one more elevator that minimizes the expected
+     * distance from the next call to the closest elevator, given the
+     * positions of the others.
+     *
+     * @param demand the demand of every floor (see
+     * {@link #getDemand(long)})
+     * @param positions the positions of the other elevators
+     * @return the floor, the lowest of equally good ones
+     */
+    public static int placeNext(double[] demand, double[] positions) {
+        double[] with = Arrays.copyOf(positions, positions.length + 1);
+        int best = 0;
+        double bestDistance = Double.MAX_VALUE;
+        for (int floor = 0; floor < demand.length; floor++) {
+            with[positions.length] = floor;
+            double distance = expectedDistance(demand, with);
+            if (distance < bestDistance) {
+                best = floor;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the floors for the given number of elevators that minimize the
+     * expected distance from the next call to the closest elevator. Every
+     * elevator serves a range of consecutive floors from the weighted median
+     * of their demand; the ranges are chosen by dynamic programming in
+     * O(elevators floors<sup>2</sup>) time.
+     *
+     * @param demand the demand of every floor (see
+     * {@link #getDemand(long)})
+     * @param elevators the number of elevators
+     * @return the floors in ascending order, one per elevator, or null if
+     * there is no demand
+     */
+    public static int[] place(double[] demand, int elevators) {
+        int n = demand.length;
+        double[] weight = new double[n + 1];
+        double[] moment = new double[n + 1];
+        for (int floor = 0; floor < n; floor++) {
+            weight[floor + 1] = weight[floor] + Math.max(demand[floor], 0);
+            moment[floor + 1] = moment[floor] + Math.max(demand[floor], 0) * floor;
+        }
+        if (weight[n] == 0 || elevators <= 0) {
+            return null;
+        }
+        // the cost and the median of serving the floors a to b from one floor
+        double[][] cost = new double[n][n];
+        int[][] median = new int[n][n];
+        for (int a = 0; a < n; a++) {
+            int m = a;
+            for (int b = a; b < n; b++) {
+                double half = (weight[b + 1] - weight[a]) / 2;
+                while (m < b && weight[m + 1] - weight[a] < half) {
+                    m++;
+                }
+                median[a][b] = m;
+                cost[a][b] = (m * (weight[m + 1] - weight[a]) - (moment[m + 1] - moment[a]))
+                        + ((moment[b + 1] - moment[m + 1]) - m * (weight[b + 1] - weight[m + 1]));
+            }
+        }
+        int k = Math.min(elevators, n);
+        // best[c][b]: the least cost of the floors 0 to b with c + 1 elevators
+        double[][] best = new double[k][n];
+        int[][] from = new int[k][n];
+        best[0] = cost[0].clone();
+        for (int c = 1; c < k; c++) {
+            Arrays.fill(best[c], Double.MAX_VALUE);
+            for (int b = c; b < n; b++) {
+                for (int a = c; a <= b; a++) {
+                    double total = best[c - 1][a - 1] + cost[a][b];
+                    if (total < best[c][b]) {
+                        best[c][b] = total;
+                        from[c][b] = a;
+                    }
+                }
+            }
+        }
+        int[] floors = new int[elevators];
+        int b = n - 1;
+        for (int c = k - 1; c >= 0; c--) {
+            int a = c == 0 ? 0 : from[c][b];
+            floors[c] = median[a][b];
+            b = a - 1;
+        }
+        // more elevators than floors: the others wait at the busiest floor
+        int busiest = 0;
+        for (int floor = 1; floor < n; floor++) {
+            if (demand[floor] > demand[busiest]) {
+                busiest = floor;
+            }
+        }
+        for (int c = k; c < elevators; c++) {
+            floors[c] = busiest;
+        }
+        Arrays.sort(floors);
+        return floors;
+    }
+}
@@ -0,0 +1,327 @@
+package elevator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The passengers of a building who have told the controller where they go,
+ * from the time they enter their destination until they leave the elevator.
+ * A waiting passenger has either been assigned an elevator when entering the
+ * destination (destination dispatch), or boards any elevator that stops at
+ * the floor for the direction of the passenger and then presses the panel
+ * button of the destination (conventional). An elevator takes at most the
+ * capacity of passengers at a time; the passengers who do not fit keep
+ * waiting. The table records the waiting time (until boarding) and the
+ * journey time (until leaving) of the passengers.
+ * <p>
+ * The methods of a passenger table are synchronized.
+ */
+public class PassengerTable {
+
+    /**
+     * A passenger. Passengers are immutable; boarding replaces the entry of
+     * the table.
+     */
+    public static final class Passenger {
+
+        private final int floor;
+        private final int target;
+        private final int car;
+        private final long pressed;
+        private final long boarded;
+
+        Passenger(int floor, int target, int car, long pressed, long boarded) {
+            this.floor = floor;
+            this.target = target;
+            this.car = car;
+            this.pressed = pressed;
+            this.boarded = boarded;
+        }
+
+        public int getFloor() {
+            return floor;
+        }
+
+        public int getTarget() {
+            return target;
+        }
+
+        /**
+         * Returns the direction of the journey.
+         *
+         * @return 1 for up, -1 for down
+         */
+        public int getDir() {
+            return target > floor ? 1 : -1;
+        }
+
+        /**
+         * Returns the number of the assigned elevator, 0 if none.
+         *
+         * @return the number of the elevator
+         */
+        public int getCar() {
+            return car;
+        }
+
+        /**
+         * Returns the time the destination was entered in milliseconds of
+         * the clock.
+         *
+         * @return the time of the entry
+         */
+        public long getPressed() {
+            return pressed;
+        }
+    }
+
+    /**
+     * The default number of passengers an elevator takes at a time
+     */
+    public static final int DEFAULT_CAPACITY = 12;
+    private final ArrayList<Passenger> waiting = new ArrayList<>();
+    private final ArrayList<Passenger> riding = new ArrayList<>();
+    private int capacity = DEFAULT_CAPACITY;
+    private long delivered = 0;
+    private long totalWait = 0;
+    private long totalJourney = 0;
+    private long maxWait = 0;
+
+    /**
+     * Sets the number of passengers an elevator takes at a time.
+     *
+     * @param capacity the capacity of an elevator
+     */
+    public synchronized void setCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Illegal capacity " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the number of passengers an elevator takes at a time.
+     *
+     * @return the capacity of an elevator
+     */
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Adds a waiting passenger.
+     *
+     * @param floor the floor of the passenger
+     * @param target the destination of the passenger
+     * @param car the number of the assigned elevator, 0 for none
+     * @param pressed the time the destination was entered
+     */
+    public synchronized void add(int floor, int target, int car, long pressed) {
+        waiting.add(new Passenger(floor, target, car, pressed, 0));
+    }
+
+    /**
+     * Boards the passengers waiting at the given floor for the given
+     * direction into the given elevator, as many as it takes: first those
+     * assigned to the elevator, then those without an elevator, in the order
+     * they came.
+     *
+     * @param car the number of the elevator
+     * @param floor the floor
+     * @param dir the direction, 1 for up and -1 for down
+     * @param now the time of boarding
+     * @return the passengers who have boarded
+     */
+    public synchronized List<Passenger> board(int car, int floor, int dir, long now) {
+        ArrayList<Passenger> boarded = new ArrayList<>();
+        int free = capacity - countRiding(car);
+        for (int pass = 0; pass < 2 && free > 0; pass++) {
+            int wanted = pass == 0 ? car : 0;
+            for (Iterator<Passenger> i = waiting.iterator(); i.hasNext() && free > 0;) {
+                Passenger passenger = i.next();
+                if (passenger.car == wanted && passenger.floor == floor && passenger.getDir() == dir) {
+                    i.remove();
+                    Passenger rider = new Passenger(floor, passenger.target, car, passenger.pressed, now);
+                    riding.add(rider);
+                    boarded.add(rider);
+                    free--;
+                    long wait = now - passenger.pressed;
+                    totalWait += wait;
+                    maxWait = Math.max(maxWait, wait);
+                }
+            }
+        }
+        return boarded;
+    }
+
+    /**
+     * Lets the passengers of the given elevator whose destination is the
+     * given floor leave.
+     *
+     * @param car the number of the elevator
+     * @param floor the floor
+     * @param now the time of leaving
+     * @return the number of passengers who have left
+     */
+    public synchronized int alight(int car, int floor, long now) {
+        int left = 0;
+        for (Iterator<Passenger> i = riding.iterator(); i.hasNext();) {
+            Passenger passenger = i.next();
+            if (passenger.car == car && passenger.target == floor) {
+                i.remove();
+                totalJourney += now - passenger.pressed;
+                left++;
+            }
+        }
+        delivered += left;
+        return left;
+    }
+
+    /**
+     * Removes the passengers waiting at the given floor for the given
+     * direction who have been assigned to the given elevator, e.g. to assign
+     * them to another elevator.
+     *
+     * @param car the number of the elevator
+     * @param floor the floor
+     * @param dir the direction, 1 for up and -1 for down
+     * @return the removed passengers
+     */
+    public synchronized List<Passenger> withdraw(int car, int floor, int dir) {
+        ArrayList<Passenger> withdrawn = new ArrayList<>();
+        for (Iterator<Passenger> i = waiting.iterator(); i.hasNext();) {
+            Passenger passenger = i.next();
+            if (passenger.car == car && passenger.floor == floor && passenger.getDir() == dir) {
+                i.remove();
+                withdrawn.add(passenger);
+            }
+        }
+        return withdrawn;
+    }
+
+    /**
+     * Returns the number of passengers riding in or assigned to the given
+     * elevator.
+     *
+     * @param car the number of the elevator
+     * @return the load of the elevator
+     */
+    public synchronized int getLoad(int car) {
+        int load = countRiding(car);
+        for (Passenger passenger : waiting) {
+            if (passenger.car == car) {
+                load++;
+            }
+        }
+        return load;
+    }
+
+    private int countRiding(int car) {
+        int count = 0;
+        for (Passenger passenger : riding) {
+            if (passenger.car == car) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether a passenger waits at the given floor for the given
+     * direction for the given elevator.
+     *
+     * @param car the number of the elevator, 0 for passengers without an
+     * elevator
+     * @param floor the floor
+     * @param dir the direction, 1 for up and -1 for down
+     * @return true if the elevator has to pick up a passenger there
+     */
+    public synchronized boolean isPickup(int car, int floor, int dir) {
+        for (Passenger passenger : waiting) {
+            if (passenger.car == car && passenger.floor == floor && passenger.getDir() == dir) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a passenger riding in or assigned to the given elevator
+     * goes to the given floor.
+     *
+     * @param car the number of the elevator
+     * @param floor the floor
+     * @return true if the elevator stops at the floor for a passenger
+     */
+    public synchronized boolean isTarget(int car, int floor) {
+        for (Passenger passenger : riding) {
+            if (passenger.car == car && passenger.target == floor) {
+                return true;
+            }
+        }
+        for (Passenger passenger : waiting) {
+            if (passenger.car == car && passenger.target == floor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of waiting passengers.
+     *
+     * @return the number of waiting passengers
+     */
+    public synchronized int getWaiting() {
+        return waiting.size();
+    }
+
+    /**
+     * Returns the number of passengers riding in an elevator.
+     *
+     * @return the number of riding passengers
+     */
+    public synchronized int getRiding() {
+        return riding.size();
+    }
+
+    /**
+     * Returns the number of passengers who have reached their destination.
+     *
+     * @return the number of delivered passengers
+     */
+    public synchronized long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * Returns the average time the delivered and the riding passengers have
+     * waited for their elevator.
+     *
+     * @return the average waiting time in milliseconds, 0 if none
+     */
+    public synchronized long getAverageWait() {
+        long boarded = delivered + riding.size();
+        return boarded == 0 ? 0 : totalWait / boarded;
+    }
+
+    /**
+     * Returns the longest time a passenger has waited for an elevator.
+     *
+     * @return the longest waiting time in milliseconds
+     */
+    public synchronized long getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * Returns the average time from entering the destination to reaching it
+     * of the delivered passengers.
+     *
+     * @return the average journey time in milliseconds, 0 if none
+     */
+    public synchronized long getAverageJourney() {
+        return delivered == 0 ? 0 : totalJourney / delivered;
+    }
+}
@@ -0,0 +1,66 @@
+package elevator;
+
+/**
+ * The clock of the simulation used by the simulator and the controller to
+ * measure time, to sleep and to schedule commands. Two implementations are
+ * provided: {@link WallClock} (real time, the default) and
+ * {@link VirtualClock} (simulated time that jumps from one event to the next).
+ * <p>
+ * A virtual clock may only advance when all controller tasks are blocked,
+ * therefore the controller must tell the clock when a task starts running
+ * (<code>enter</code>) and when it stops or blocks (<code>leave</code>), unless
+ * it blocks in {@link #sleep(long)}, which does the accounting itself. The
+ * accounting methods are no-ops on a wall clock.
+ */
+public interface SimulationClock {
+
+    /**
+     * Returns the time elapsed since the start of the simulation.
+     *
+     * @return the current time in milliseconds
+     */
+    long currentTimeMillis();
+
+    /**
+     * Blocks the calling controller task for the given time.
+     *
+     * @param millis the time to sleep in milliseconds
+     * @throws InterruptedException if the task is interrupted
+     */
+    void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Runs the given task after the given delay. On a virtual clock the task
+     * is run by the simulation thread at the given simulated time.
+     *
+     * @param delayMillis the delay in milliseconds
+     * @param task the task to run
+     */
+    void schedule(long delayMillis, Runnable task);
+
+    /**
+     * Tells the clock that a controller task starts (or resumes) running.
+     * Called before a new task thread is started or on behalf of a blocked
+     * task that is being woken up.
+     */
+    void enter();
+
+    /**
+     * Tells the clock that a controller task has terminated or is about to
+     * block.
+     */
+    void leave();
+
+    /**
+     * Starts a controller task or wakes up a blocked one: runs the given
+     * action, which calls <code>enter</code> on behalf of the task. A
+     * sequential {@link VirtualClock} runs the actions in the simulation
+     * thread instead, one at a time in the order of the calls, each when the
+     * tasks woken by the previous one have blocked again, so that tasks
+     * woken at the same time do not run concurrently. Other clocks run the
+     * action at once.
+     *
+     * @param wakeup the action that starts or wakes up the task
+     */
+    void wake(Runnable wakeup);
+}
@@ -0,0 +1,268 @@
+package elevator;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The stops queued for one elevator, keyed by floor and direction: at most
+ * one stop per floor for each direction (down, none, up). A stop is found,
+ * added or removed in constant time, and the nearest floor with a stop above
+ * or below a position is found with the bit set of the floors with stops,
+ * i.e. in a few word operations for any building.
+ * <p>
+ * The stops of one floor are ordered by insertion, so the stop set orders
+ * stops as a list of stops stably sorted by floor does: {@link #first()} is
+ * the earliest stop of the lowest floor, and the nearest stop above or below
+ * a position is the latest stop of its floor.
+ * <p>
+ * A stop set is not synchronized.
+ *
+ * @param <T> the type of the stops
+ */
+public class StopSet<T> {
+
+    private final int topFloor;
+    private final Object[] stops;
+    private final long[] order;
+    private final int[] count;
+    private final BitSet floors;
+    private long sequence = 0;
+    private int size = 0;
+
+    /**
+     * Creates an empty stop set for the floors 0 to the top floor.
+     *
+     * @param topFloor the number of the top floor
+     */
+    public StopSet(int topFloor) {
+        this.topFloor = topFloor;
+        stops = new Object[(topFloor + 1) * 3];
+        order = new long[stops.length];
+        count = new int[topFloor + 1];
+        floors = new BitSet(topFloor + 1);
+    }
+
+    private static int slot(int floor, int dir) {
+        return floor * 3 + Integer.signum(dir) + 1;
+    }
+
+    /**
+     * Returns the stop at the given floor in the given direction.
+     *
+     * @param floor the floor
+     * @param dir the direction, -1, 0 or 1
+     * @return the stop, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int floor, int dir) {
+        if (floor < 0 || floor > topFloor) {
+            return null;
+        }
+        return (T) stops[slot(floor, dir)];
+    }
+
+    /**
+     * Adds a stop at the given floor in the given direction, unless there is
+     * one already.
+     *
+     * @param stop the stop
+     * @param floor the floor
+     * @param dir the direction, -1, 0 or 1
+     * @return false if there is a stop at the floor in the direction already
+     * @throws IllegalArgumentException if the floor is out of range
+     */
+    public boolean add(T stop, int floor, int dir) {
+        if (floor < 0 || floor > topFloor) {
+            throw new IllegalArgumentException("Illegal floor " + floor);
+        }
+        int slot = slot(floor, dir);
+        if (stops[slot] != null) {
+            return false;
+        }
+        stops[slot] = stop;
+        order[slot] = sequence++;
+        if (count[floor]++ == 0) {
+            floors.set(floor);
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the given stop (same reference) at the given floor in the
+     * given direction.
+     *
+     * @param stop the stop
+     * @param floor the floor
+     * @param dir the direction, -1, 0 or 1
+     * @return true if the stop has been removed
+     */
+    public boolean remove(T stop, int floor, int dir) {
+        if (floor < 0 || floor > topFloor) {
+            return false;
+        }
+        int slot = slot(floor, dir);
+        if (stops[slot] != stop || stop == null) {
+            return false;
+        }
+        stops[slot] = null;
+        if (--count[floor] == 0) {
+            floors.clear(floor);
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Checks whether the given stop (same reference) is at the given floor in
+     * the given direction.
+     *
+     * @param stop the stop
+     * @param floor the floor
+     * @param dir the direction, -1, 0 or 1
+     * @return true if the stop is in the set
+     */
+    public boolean contains(T stop, int floor, int dir) {
+        return stop != null && get(floor, dir) == stop;
+    }
+
+    /**
+     * Returns the number of stops.
+     *
+     * @return the number of stops
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether there are no stops.
+     *
+     * @return true if there are no stops
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the lowest floor with a stop.
+     *
+     * @return the floor, or -1 if there are no stops
+     */
+    public int lowestFloor() {
+        return floors.nextSetBit(0);
+    }
+
+    /**
+     * Returns the highest floor with a stop.
+     *
+     * @return the floor, or -1 if there are no stops
+     */
+    public int highestFloor() {
+        return floors.previousSetBit(topFloor);
+    }
+
+    /**
+     * Returns the number of floors with stops between the given floors.
+     *
+     * @param from the lowest floor, inclusive
+     * @param to the highest floor, inclusive
+     * @return the number of floors with stops
+     */
+    public int countFloors(int from, int to) {
+        from = Math.max(from, 0);
+        to = Math.min(to, topFloor);
+        int floors = 0;
+        for (int floor = this.floors.nextSetBit(from); floor >= 0 && floor <= to;
+                floor = this.floors.nextSetBit(floor + 1)) {
+            floors++;
+        }
+        return floors;
+    }
+
+    /**
+     * Returns all stops, by floor and, within a floor, by insertion.
+     *
+     * @return a list of the stops
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> toList() {
+        ArrayList<T> list = new ArrayList<>(size);
+        for (int floor = floors.nextSetBit(0); floor >= 0; floor = floors.nextSetBit(floor + 1)) {
+            long last = -1;
+            for (int k = 0; k < count[floor]; k++) {
+                // the stop inserted next after the last one
+                int next = -1;
+                for (int slot = floor * 3; slot < floor * 3 + 3; slot++) {
+                    if (stops[slot] != null && order[slot] > last
+                            && (next < 0 || order[slot] < order[next])) {
+                        next = slot;
+                    }
+                }
+                list.add((T) stops[next]);
+                last = order[next];
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Returns the earliest stop of the lowest floor with stops.
+     *
+     * @return the stop, or null if there are no stops
+     */
+    public T first() {
+        int floor = lowestFloor();
+        return floor < 0 ? null : stopAt(floor, false);
+    }
+
+    /**
+     * Returns the latest stop of the lowest floor above the given position,
+     * not higher than the given limit.
+     *
+     * @param position the position
+     * @param limit the highest floor to consider
+     * @return the stop, or null if there is none
+     */
+    public T above(double position, int limit) {
+        int from = (int) Math.floor(position) + 1;
+        if (from > topFloor || from > limit) {
+            return null;
+        }
+        int floor = floors.nextSetBit(Math.max(from, 0));
+        return floor < 0 || floor > limit ? null : stopAt(floor, true);
+    }
+
+    /**
+     * Returns the latest stop of the highest floor below the given position,
+     * not higher than the given limit.
+     *
+     * @param position the position
+     * @param limit the highest floor to consider
+     * @return the stop, or null if there is none
+     */
+    public T below(double position, int limit) {
+        int from = Math.min((int) Math.ceil(position) - 1, Math.min(limit, topFloor));
+        if (from < 0) {
+            return null;
+        }
+        int floor = floors.previousSetBit(from);
+        return floor < 0 ? null : stopAt(floor, true);
+    }
+
+    /**
+     * Returns the earliest or the latest stop of a floor with stops.
+     */
+    @SuppressWarnings("unchecked")
+    private T stopAt(int floor, boolean latest) {
+        int best = -1;
+        for (int slot = floor * 3; slot < floor * 3 + 3; slot++) {
+            if (stops[slot] != null && (best < 0
+                    || (latest ? order[slot] > order[best] : order[slot] < order[best]))) {
+                best = slot;
+            }
+        }
+        return (T) stops[best];
+    }
+}
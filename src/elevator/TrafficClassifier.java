@@ -0,0 +1,160 @@
+package elevator;
+
+import java.util.ArrayDeque;
+
+/**
+ * Classifies the traffic of a building from the hall calls of the last three
+ * minutes: up-peak if at least half of the calls go up from the lobby (floor
+ * 0), down-peak if at least 80% go down from other floors, and inter-floor
+ * otherwise, also while fewer than 15 calls are in the window. The mode
+ * switches with hysteresis: a peak ends only when its share has fallen
+ * below 35% (up-peak) or 60% (down-peak), and a mode is kept for at least
+ * two minutes.
+ * <p>
+ * The methods of a traffic classifier are synchronized.
+ */
+public class TrafficClassifier {
+
+    /**
+     * The traffic modes.
+     */
+    public enum Mode {
+        /**
+         * Balanced traffic between the floors
+         */
+        INTERFLOOR("inter-floor"),
+        /**
+         * Most passengers go up from the lobby
+         */
+        UP_PEAK("up-peak"),
+        /**
+         * Most passengers go down, e.g. to the lobby
+         */
+        DOWN_PEAK("down-peak");
+
+        private final String label;
+
+        Mode(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * The length of the window of calls in milliseconds
+     */
+    public static final long WINDOW = 3 * 60 * 1000;
+    /**
+     * The least time between two switches of the mode in milliseconds
+     */
+    public static final long HOLD = 2 * 60 * 1000;
+    private static final int MIN_CALLS = 15;
+    private static final double UP_ENTER = 0.5;
+    private static final double UP_EXIT = 0.35;
+    private static final double DOWN_ENTER = 0.8;
+    private static final double DOWN_EXIT = 0.6;
+    /**
+     * The calls in the window: time, floor and direction
+     */
+    private final ArrayDeque<long[]> calls = new ArrayDeque<>();
+    private int lobbyUp = 0;
+    private int down = 0;
+    private Mode mode = Mode.INTERFLOOR;
+    private long since = Long.MIN_VALUE;
+    private long switches = 0;
+
+    /**
+     * Adds a hall call to the window and switches the mode if the traffic
+     * has changed.
+     *
+     * @param floor the floor of the call
+     * @param dir the direction of the call, 1 for up and -1 for down
+     * @param now the time of the call in milliseconds of the clock
+     * @return true if the mode has switched
+     */
+    public synchronized boolean record(int floor, int dir, long now) {
+        while (!calls.isEmpty() && calls.peekFirst()[0] <= now - WINDOW) {
+            long[] old = calls.pollFirst();
+            count(old[1], old[2], -1);
+        }
+        calls.addLast(new long[]{now, floor, dir});
+        count(floor, dir, 1);
+        Mode next = classify();
+        if (next == mode || (since != Long.MIN_VALUE && now - since < HOLD)) {
+            return false;
+        }
+        mode = next;
+        since = now;
+        switches++;
+        return true;
+    }
+
+    private void count(long floor, long dir, int delta) {
+        if (floor == 0 && dir > 0) {
+            lobbyUp += delta;
+        } else if (floor > 0 && dir < 0) {
+            down += delta;
+        }
+    }
+
+    /**
+     * Returns the mode the traffic of the window suggests, given the current
+     * mode.
+     */
+    private Mode classify() {
+        if (calls.size() < MIN_CALLS) {
+            return Mode.INTERFLOOR;
+        }
+        double up = getLobbyUpShare();
+        double downShare = getDownShare();
+        if (mode == Mode.UP_PEAK && up >= UP_EXIT || up >= UP_ENTER) {
+            return Mode.UP_PEAK;
+        }
+        if (mode == Mode.DOWN_PEAK && downShare >= DOWN_EXIT || downShare >= DOWN_ENTER) {
+            return Mode.DOWN_PEAK;
+        }
+        return Mode.INTERFLOOR;
+    }
+
+    /**
+     * Returns the current traffic mode.
+     *
+     * @return the mode
+     */
+    public synchronized Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns the number of switches of the mode so far.
+     *
+     * @return the number of switches
+     */
+    public synchronized long getSwitches() {
+        return switches;
+    }
+
+    /**
+     * Returns the share of the calls in the window that go up from the
+     * lobby.
+     *
+     * @return the share, 0 if there are no calls
+     */
+    public synchronized double getLobbyUpShare() {
+        return calls.isEmpty() ? 0 : (double) lobbyUp / calls.size();
+    }
+
+    /**
+     * Returns the share of the calls in the window that go down from floors
+     * above the lobby.
+     *
+     * @return the share, 0 if there are no calls
+     */
+    public synchronized double getDownShare() {
+        return calls.isEmpty() ? 0 : (double) down / calls.size();
+    }
+}
@@ -0,0 +1,303 @@
+package elevator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+
+/**
+ * A simulated clock that counts time steps (ticks) of the simulation rather
+ * than real time. The clock is advanced by the simulation thread only when
+ * all controller tasks are blocked (see {@link SimulationClock}), so a run
+ * gives the same result as a run with the wall clock while the idle time
+ * (dwell of doors, gaps between scheduled commands) is skipped at once.
+ * <p>
+ * Sleeping tasks and scheduled tasks are kept in a queue of alarms ordered by
+ * the tick when they are due. Tasks scheduled for the same tick run in the
+ * order they were scheduled.
+ * <p>
+ * In the sequential mode (see {@link #setSequential(boolean)}), the clock
+ * wakes up the sleeping tasks and runs the scheduled tasks of a tick one at a
+ * time, in the order of the alarms, and waits until the controller has
+ * reacted to one before it goes on with the next. The tasks the controller
+ * starts or wakes up meanwhile (see {@link #wake(Runnable)}) are queued and
+ * woken the same way, in the order of the calls. Together with a seeded
+ * controller, a run in the sequential mode is deterministic: it can be
+ * recorded and replayed with identical results.
+ */
+public class VirtualClock implements SimulationClock {
+
+    private final double tickMillis;
+    private long tick = 0;
+    private int active = 0;
+    private long sequence = 0;
+    private long version = 0;
+    private volatile boolean sequential = false;
+    private final PriorityQueue<Alarm> alarms = new PriorityQueue<>();
+    private final ArrayDeque<Runnable> wakeups = new ArrayDeque<>();
+
+    /**
+     * Creates a virtual clock with the given duration of a time step.
+     *
+     * @param rate the nominal number of time steps per second, used to
+     * convert milliseconds to time steps
+     */
+    public VirtualClock(double rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Illegal rate " + rate);
+        }
+        this.tickMillis = 1000.0 / rate;
+    }
+
+    @Override
+    public synchronized long currentTimeMillis() {
+        return (long) (tick * tickMillis);
+    }
+
+    /**
+     * Sets whether alarms of the same tick are handled one at a time.
+     *
+     * @param sequential true for the sequential (deterministic) mode
+     */
+    public void setSequential(boolean sequential) {
+        this.sequential = sequential;
+    }
+
+    /**
+     * Checks whether alarms of the same tick are handled one at a time.
+     *
+     * @return true in the sequential mode
+     */
+    public boolean isSequential() {
+        return sequential;
+    }
+
+    /**
+     * Returns the current time step of the simulation.
+     *
+     * @return the current tick
+     */
+    public synchronized long getTick() {
+        return tick;
+    }
+
+    /**
+     * Converts a time to a number of time steps (rounded up).
+     *
+     * @param millis the time in milliseconds
+     * @return the number of ticks
+     */
+    public long toTicks(long millis) {
+        return (long) Math.ceil(millis / tickMillis - 1e-9);
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        synchronized (this) {
+            Alarm alarm = new Alarm(tick + Math.max(1, toTicks(millis)), sequence++, null);
+            alarms.add(alarm);
+            active--;
+            version++;
+            notifyAll();
+            try {
+                while (!alarm.rung) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                if (!alarm.rung) {
+                    alarms.remove(alarm);
+                    active++;
+                }
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void schedule(long delayMillis, Runnable task) {
+        alarms.add(new Alarm(tick + toTicks(delayMillis), sequence++, task));
+        version++;
+        notifyAll();
+    }
+
+    /**
+     * Schedules a task to run at the given time step.
+     *
+     * @param t the tick when the task must run, the current tick if it has
+     * passed
+     * @param task the task to run
+     */
+    public synchronized void scheduleAt(long t, Runnable task) {
+        alarms.add(new Alarm(Math.max(tick, t), sequence++, task));
+        version++;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void enter() {
+        active++;
+        version++;
+    }
+
+    @Override
+    public synchronized void leave() {
+        active--;
+        version++;
+        notifyAll();
+    }
+
+    /**
+     * Queues the wakeup in the sequential mode, until the simulation thread
+     * waits for the controller (see {@link #awaitQuiescence()}); otherwise
+     * runs it at once.
+     *
+     * @param wakeup the action that starts or wakes up the task
+     */
+    @Override
+    public void wake(Runnable wakeup) {
+        if (!sequential) {
+            wakeup.run();
+            return;
+        }
+        synchronized (this) {
+            wakeups.add(wakeup);
+            version++;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until no controller task is running. The queued wakeups (see
+     * {@link #wake(Runnable)}) are run in the calling (simulation) thread
+     * meanwhile, each once the controller has reacted to the previous one.
+     *
+     * @throws InterruptedException if the simulation thread is interrupted
+     */
+    public void awaitQuiescence() throws InterruptedException {
+        while (true) {
+            Runnable wakeup;
+            synchronized (this) {
+                while (active > 0) {
+                    wait();
+                }
+                wakeup = wakeups.poll();
+                if (wakeup == null) {
+                    return;
+                }
+            }
+            wakeup.run();
+        }
+    }
+
+    /**
+     * Blocks until a controller task has started, an alarm has been added or
+     * the timeout has elapsed. Called by the idle simulation thread.
+     *
+     * @param timeout the maximum time to wait in milliseconds (real time)
+     * @throws InterruptedException if the simulation thread is interrupted
+     */
+    public synchronized void awaitActivity(long timeout) throws InterruptedException {
+        long seen = version;
+        long deadline = System.currentTimeMillis() + timeout;
+        long wait = timeout;
+        while (version == seen && wait > 0) {
+            wait(wait);
+            wait = deadline - System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Returns the tick of the earliest alarm (a sleeping task or a scheduled
+     * task).
+     *
+     * @return the tick of the next alarm, or -1 if there is none
+     */
+    public synchronized long nextAlarm() {
+        return alarms.isEmpty() ? -1 : alarms.peek().tick;
+    }
+
+    /**
+     * Advances the clock to the given tick, wakes up the tasks sleeping until
+     * this tick and runs the tasks scheduled until this tick in the calling
+     * (simulation) thread. In the sequential mode, the alarms (including
+     * those added for this tick by the woken tasks) are handled one at a time
+     * and the method returns when the controller has reacted to the last one.
+     *
+     * @param t the new tick, not less than the current tick
+     * @throws InterruptedException if the simulation thread is interrupted
+     */
+    public void advanceTo(long t) throws InterruptedException {
+        if (sequential) {
+            advanceSequentially(t);
+            return;
+        }
+        ArrayList<Runnable> due = new ArrayList<>();
+        synchronized (this) {
+            tick = Math.max(tick, t);
+            while (!alarms.isEmpty() && alarms.peek().tick <= tick) {
+                Alarm alarm = alarms.poll();
+                if (alarm.task == null) {
+                    alarm.rung = true;
+                    active++;
+                } else {
+                    due.add(alarm.task);
+                }
+            }
+            version++;
+            notifyAll();
+        }
+        for (Runnable task : due) {
+            task.run();
+        }
+    }
+
+    private void advanceSequentially(long t) throws InterruptedException {
+        synchronized (this) {
+            tick = Math.max(tick, t);
+            version++;
+        }
+        while (true) {
+            awaitQuiescence();
+            Alarm alarm;
+            synchronized (this) {
+                if (active > 0 || !wakeups.isEmpty()) {
+                    // woken from outside the controller meanwhile
+                    continue;
+                }
+                if (alarms.isEmpty() || alarms.peek().tick > tick) {
+                    return;
+                }
+                alarm = alarms.poll();
+                if (alarm.task == null) {
+                    alarm.rung = true;
+                    active++;
+                    version++;
+                    notifyAll();
+                    continue;
+                }
+            }
+            alarm.task.run();
+        }
+    }
+
+    private static class Alarm implements Comparable<Alarm> {
+
+        final long tick;
+        final long sequence;
+        final Runnable task;
+        boolean rung = false;
+
+        Alarm(long tick, long sequence, Runnable task) {
+            this.tick = tick;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Alarm t) {
+            if (tick != t.tick) {
+                return tick < t.tick ? -1 : 1;
+            }
+            return Long.compare(sequence, t.sequence);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package elevator;
+
+import java.lang.reflect.Method;
+
+/**
+ * Creates virtual threads when the Java runtime supports them (Java 21 and
+ * later) and platform threads otherwise. The sources are compiled for Java 8,
+ * so the virtual thread builder is looked up by reflection once.
+ */
+final class VirtualThreads {
+
+    private static final Method ofVirtual;
+    private static final Method name;
+    private static final Method unstarted;
+
+    static {
+        Method of = null;
+        Method n = null;
+        Method u = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            of = Thread.class.getMethod("ofVirtual");
+            n = builder.getMethod("name", String.class);
+            u = builder.getMethod("unstarted", Runnable.class);
+        } catch (ReflectiveOperationException e) {
+            of = null;
+        }
+        ofVirtual = of;
+        name = n;
+        unstarted = u;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Checks whether the Java runtime supports virtual threads.
+     *
+     * @return true if virtual threads are available
+     */
+    static boolean isAvailable() {
+        return ofVirtual != null;
+    }
+
+    /**
+     * Creates an unstarted thread that runs the given task: a virtual thread
+     * if requested and available, otherwise a platform thread.
+     *
+     * @param threadName the name of the thread
+     * @param task the task to run
+     * @param virtual true to create a virtual thread if available
+     * @return the thread
+     */
+    static Thread newThread(String threadName, Runnable task, boolean virtual) {
+        if (virtual && ofVirtual != null) {
+            try {
+                Object builder = name.invoke(ofVirtual.invoke(null), threadName);
+                return (Thread) unstarted.invoke(builder, task);
+            } catch (ReflectiveOperationException e) {
+                // fall through to a platform thread
+            }
+        }
+        return new Thread(task, threadName);
+    }
+}
@@ -0,0 +1,50 @@
+package elevator;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The real-time clock of the simulation. Sleeping is <code>Thread.sleep</code>
+ * and scheduled tasks are run by a timer thread.
+ */
+public class WallClock implements SimulationClock {
+
+    private final long start = System.nanoTime();
+    private ScheduledExecutorService timer;
+
+    @Override
+    public long currentTimeMillis() {
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    @Override
+    public synchronized void schedule(long delayMillis, Runnable task) {
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "WallClock");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        timer.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void enter() {
+    }
+
+    @Override
+    public void leave() {
+    }
+
+    @Override
+    public void wake(Runnable wakeup) {
+        wakeup.run();
+    }
+}
@@ -0,0 +1,312 @@
+package elevator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatches hall calls in a tall building by zones. The available (not
+ * stopped) elevators form groups of {@link #GROUP_SIZE} consecutive numbers,
+ * and the floors above the lobby are divided into one zone of consecutive
+ * floors per group. A call above the lobby goes to the group of its zone,
+ * to the member with the earliest estimated time of arrival (see
+ * {@link EtaDispatch}); calls at the lobby go to the earliest elevator of
+ * any group.
+ * <p>
+ * The zones follow the load: the calls are counted per floor with a
+ * half-life of {@link #HALF_LIFE}, and at most once per {@link #REBALANCE}
+ * the boundaries are moved so that every group has a share of the work in
+ * proportion to its size. A call at a floor weighs the time to travel
+ * there from the lobby and a dwell, so the zones are shorter higher up. A
+ * call of a lobby passenger counts at its destination, if known.
+ * <p>
+ * Cross-zone calls are handled explicitly: a hall call is lent to an
+ * elevator of another group only if it arrives more than {@link #SLACK}
+ * earlier than the best elevator of the zone, and a destination passenger
+ * travelling between two zones may take an elevator of either (see
+ * {@link #getTripGroup(Elevator[], int, int)}). Both are counted. The
+ * controller adds the slack to the cost of the elevators outside the zone
+ * when it moves hall calls or assigns passengers (see
+ * {@link #extraCost(Elevator[], Elevator, int, int)}).
+ */
+public class ZonedDispatch extends EtaDispatch {
+
+    /**
+     * The number of elevators of a group
+     */
+    public static final int GROUP_SIZE = 3;
+    /**
+     * The half-life of the counted calls in milliseconds
+     */
+    public static final long HALF_LIFE = 5 * 60 * 1000;
+    /**
+     * The least time between two moves of the zone boundaries in
+     * milliseconds
+     */
+    public static final long REBALANCE = 60 * 1000;
+    /**
+     * How much later than the earliest elevator of another group the best
+     * elevator of the zone of a call may arrive and still take the call, in
+     * milliseconds: a dwell
+     */
+    public static final long SLACK = DWELL;
+
+    private double[] load;
+    private long time = Long.MIN_VALUE;
+    private long rebalanced = Long.MIN_VALUE;
+    /**
+     * The first floor of every zone and the floor above the top floor, by
+     * the number of groups they have been computed for
+     */
+    private volatile int[] bounds;
+    private final AtomicLong lent = new AtomicLong();
+    private final AtomicLong crossTrips = new AtomicLong();
+    private final AtomicLong rebalances = new AtomicLong();
+
+    /**
+     * Creates the dispatcher for elevators of the given velocity.
+     *
+     * @param velocity the velocity in floors per millisecond, 0 for the
+     * default velocity
+     */
+    public ZonedDispatch(double velocity) {
+        super(velocity);
+    }
+
+    @Override
+    public String getName() {
+        return "zoned";
+    }
+
+    /**
+     * Reports a new call, before it is assigned: counts it at its floor, or
+     * at the destination for a lobby passenger, and rebalances the zones if
+     * they have not moved for {@link #REBALANCE}.
+     *
+     * @param elevators the elevators of the building; may contain null slots
+     * @param floor the floor of the call
+     * @param dir the direction of the call, 1 for up and -1 for down
+     * @param target the destination of the passenger, -1 for a hall call
+     * @param now the time of the call in milliseconds of the clock
+     */
+    @Override
+    public void record(Elevator[] elevators, int floor, int dir, int target, long now) {
+        ArrayList<Elevator> available = available(elevators);
+        if (available.isEmpty()) {
+            return;
+        }
+        int groups = groups(available);
+        synchronized (this) {
+            if (load == null) {
+                load = new double[available.get(0).getTopFloor() + 1];
+            }
+            if (time != Long.MIN_VALUE && now > time) {
+                double decay = Math.pow(0.5, (double) (now - time) / HALF_LIFE);
+                for (int f = 0; f < load.length; f++) {
+                    load[f] *= decay;
+                }
+            }
+            time = Math.max(time, now);
+            int counted = floor > 0 ? floor : target;
+            if (counted > 0 && counted < load.length) {
+                load[counted]++;
+            }
+            if (floor > 0 && target > 0 && bounds != null && bounds.length == groups + 1
+                    && zone(bounds, floor) != zone(bounds, target)) {
+                crossTrips.incrementAndGet();
+            }
+            if (rebalanced == Long.MIN_VALUE || now - rebalanced >= REBALANCE) {
+                rebalanced = now;
+                int[] next = balance(groups, available.size());
+                if (bounds != null && !Arrays.equals(bounds, next)) {
+                    rebalances.incrementAndGet();
+                }
+                bounds = next;
+            }
+        }
+    }
+
+    /**
+     * Returns the boundaries of the zones for the given numbers of groups
+     * and elevators that give every group a share of the work in proportion
+     * to its size. Every floor counts a call more, so that there are zones
+     * before any call has been counted.
+     */
+    private int[] balance(int groups, int cars) {
+        int topFloor = load.length - 1;
+        double[] work = new double[topFloor + 1];
+        double total = 0;
+        for (int f = 1; f <= topFloor; f++) {
+            work[f] = (load[f] + 1) * (f * getMillisPerFloor() + DWELL);
+            total += work[f];
+        }
+        int[] next = new int[groups + 1];
+        next[0] = 1;
+        next[groups] = topFloor + 1;
+        double sum = 0;
+        int f = 1;
+        for (int g = 1; g < groups; g++) {
+            // the elevators of the groups below, see getGroup
+            double share = total * ((g * cars + groups - 1) / groups) / cars;
+            // at least one floor per zone
+            while (f <= topFloor - (groups - g) && (f <= next[g - 1] || sum + work[f] / 2 < share)) {
+                sum += work[f];
+                f++;
+            }
+            next[g] = f;
+        }
+        return next;
+    }
+
+    /**
+     * Returns the zones for the given available elevators, balanced now if
+     * they are for another number of groups.
+     */
+    private int[] zones(ArrayList<Elevator> available, int groups) {
+        int[] current = bounds;
+        if (current != null && current.length == groups + 1) {
+            return current;
+        }
+        synchronized (this) {
+            if (load == null) {
+                load = new double[available.get(0).getTopFloor() + 1];
+            }
+            if (bounds == null || bounds.length != groups + 1) {
+                bounds = balance(groups, available.size());
+            }
+            return bounds;
+        }
+    }
+
+    private static int zone(int[] bounds, int floor) {
+        int g = 0;
+        while (g + 2 < bounds.length && floor >= bounds[g + 1]) {
+            g++;
+        }
+        return g;
+    }
+
+    private static int groups(ArrayList<Elevator> available) {
+        return Math.max(1, Math.min(available.size() / GROUP_SIZE, available.get(0).getTopFloor()));
+    }
+
+    private static ArrayList<Elevator> available(Elevator[] elevators) {
+        ArrayList<Elevator> available = new ArrayList<>();
+        for (Elevator elevator : elevators) {
+            if (elevator != null && !elevator.isStop()) {
+                available.add(elevator);
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Returns the group of elevators that serves the zone of the given
+     * floor. The available elevators are divided evenly among the groups in
+     * the order of their numbers.
+     *
+     * @param elevators the elevators of the building; may contain null slots
+     * @param floor the floor above the lobby
+     * @return the elevators of the group, empty if all are stopped
+     */
+    public List<Elevator> getGroup(Elevator[] elevators, int floor) {
+        ArrayList<Elevator> available = available(elevators);
+        ArrayList<Elevator> group = new ArrayList<>();
+        if (available.isEmpty()) {
+            return group;
+        }
+        int groups = groups(available);
+        int zone = zone(zones(available, groups), floor);
+        for (int i = 0; i < available.size(); i++) {
+            if (i * groups / available.size() == zone) {
+                group.add(available.get(i));
+            }
+        }
+        return group;
+    }
+
+    /**
+     * Returns the elevators that may serve a destination passenger: the
+     * group of the zone of the floor above the lobby the passenger travels
+     * from or to, or the groups of both zones for a trip between two zones.
+     *
+     * @param elevators the elevators of the building; may contain null slots
+     * @param floor the floor of the passenger
+     * @param target the destination of the passenger
+     * @return the elevators, empty if all are stopped
+     */
+    public List<Elevator> getTripGroup(Elevator[] elevators, int floor, int target) {
+        List<Elevator> group = getGroup(elevators, floor > 0 ? floor : target);
+        if (floor > 0 && target > 0) {
+            for (Elevator elevator : getGroup(elevators, target)) {
+                if (!group.contains(elevator)) {
+                    group.add(elevator);
+                }
+            }
+        }
+        return group;
+    }
+
+    /**
+     * Returns the slack for an elevator outside the zone of a hall call above
+     * the lobby, or outside the zones of the trip of a passenger (see
+     * {@link #getTripGroup(Elevator[], int, int)}), none otherwise.
+     */
+    @Override
+    public double extraCost(Elevator[] elevators, Elevator elevator, int floor, int target) {
+        if (target < 0 && floor == 0) {
+            return 0;
+        }
+        List<Elevator> zoned = target < 0 ? getGroup(elevators, floor)
+                : getTripGroup(elevators, floor, target);
+        return zoned.contains(elevator) ? 0 : SLACK;
+    }
+
+    @Override
+    public Elevator select(Elevator[] elevators, int floor, int dir, Random random) {
+        Elevator best = super.select(elevators, floor, dir, random);
+        if (best == null || floor == 0) {
+            return best;
+        }
+        Elevator zoned = null;
+        double zonedEta = Double.MAX_VALUE;
+        for (Elevator elevator : getGroup(elevators, floor)) {
+            double eta = eta(elevator, floor, dir);
+            if (eta < zonedEta) {
+                zoned = elevator;
+                zonedEta = eta;
+            }
+        }
+        if (zoned != null && zonedEta <= eta(best, floor, dir) + SLACK) {
+            return zoned;
+        }
+        lent.incrementAndGet();
+        return best;
+    }
+
+    private static String format(int[] bounds) {
+        StringBuilder zones = new StringBuilder();
+        for (int g = 0; g + 1 < bounds.length; g++) {
+            zones.append(g == 0 ? "" : ",").append(bounds[g]).append('-').append(bounds[g + 1] - 1);
+        }
+        return zones.toString();
+    }
+
+    /**
+     * Returns the metrics of the dispatch as " zones <i>ranges</i> lent
+     * <i>count</i> cross <i>count</i> rebalanced <i>count</i>": the current
+     * zones, e.g. "1-7,8-15", the number of hall calls lent to another
+     * group, of destination passengers travelling between two zones and of
+     * moves of the zone boundaries.
+     *
+     * @return the metrics
+     */
+    @Override
+    public String getStats() {
+        int[] current = bounds;
+        return " zones " + (current == null ? "-" : format(current)) + " lent " + lent.get()
+                + " cross " + crossTrips.get() + " rebalanced " + rebalances.get();
+    }
+}
@@ -0,0 +1,200 @@
+package elevator.demo;
+
+import elevator.Building;
+import elevator.Elevators;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Runs the scripts of the comparisons: writes a script of timed commands
+ * (see {@link Script}) and runs it in a seeded building with a virtual
+ * clock, without the positions and with the commands the building reports
+ * on the standard output discarded, so the runs take no more than a few
+ * seconds.
+ */
+final class DemoRunner {
+
+    private DemoRunner() {
+    }
+
+    /**
+     * A script of timed commands in a temporary file, deleted on exit.
+     */
+    static final class Script implements AutoCloseable {
+
+        private final File file;
+        private final PrintWriter writer;
+        private int commands = 0;
+        private long end = 0;
+
+        /**
+         * Creates an empty script.
+         *
+         * @param prefix the prefix of the name of the file
+         * @throws IOException if the file cannot be created
+         */
+        Script(String prefix) throws IOException {
+            file = File.createTempFile(prefix, ".txt");
+            file.deleteOnExit();
+            writer = new PrintWriter(file);
+        }
+
+        /**
+         * Adds a command, e.g. "b 4 1", at the given time in milliseconds.
+         */
+        void add(long time, String command) {
+            writer.println(time + " " + command);
+            commands++;
+            end = Math.max(end, time);
+        }
+
+        /**
+         * Adds the press of a hall button.
+         */
+        void addHallCall(long time, int floor, int dir) {
+            add(time, "b " + floor + " " + dir);
+        }
+
+        /**
+         * Adds a passenger entering the destination at a floor.
+         */
+        void addPassenger(long time, int floor, int target) {
+            add(time, "t " + floor + " " + target);
+        }
+
+        /**
+         * Returns the number of commands added.
+         */
+        int getCommands() {
+            return commands;
+        }
+
+        /**
+         * Returns the time of the last command in milliseconds.
+         */
+        long getEnd() {
+            return end;
+        }
+
+        /**
+         * Returns the path of the file.
+         */
+        String getPath() {
+            return file.getPath();
+        }
+
+        @Override
+        public void close() {
+            writer.close();
+        }
+    }
+
+    /**
+     * Returns a script of random hall calls at one every 2 seconds on
+     * average, up from the lobby, down from the top floor and either way
+     * between.
+     */
+    static Script hallCalls(Random random, int calls, int topFloor) throws IOException {
+        try (Script script = new Script("calls")) {
+            long time = 0;
+            for (int i = 0; i < calls; i++) {
+                time += random.nextInt(4000);
+                int floor = random.nextInt(topFloor + 1);
+                script.addHallCall(time, floor, floor == 0 ? 1 : floor == topFloor ? -1
+                        : random.nextBoolean() ? 1 : -1);
+            }
+            return script;
+        }
+    }
+
+    /**
+     * Returns a script of random passengers at one every interval on
+     * average: the given share up from the lobby, the given share down to
+     * the lobby and the rest between two other floors.
+     */
+    static Script passengers(Random random, int count, int interval, int topFloor, double up, double down)
+            throws IOException {
+        try (Script script = new Script("passengers")) {
+            long time = 0;
+            for (int i = 0; i < count; i++) {
+                time += random.nextInt(2 * interval);
+                int floor = 0;
+                int target = 1 + random.nextInt(topFloor);
+                double kind = random.nextDouble();
+                if (kind >= up + down) {
+                    floor = 1 + random.nextInt(topFloor);
+                    do {
+                        target = 1 + random.nextInt(topFloor);
+                    } while (target == floor);
+                } else if (kind >= up) {
+                    floor = target;
+                    target = 0;
+                }
+                script.addPassenger(time, floor, target);
+            }
+            return script;
+        }
+    }
+
+    /**
+     * Runs a script in a new seeded building with a virtual clock until the
+     * script has been played and the elevators are idle.
+     *
+     * @param name the name of the building
+     * @param elevators the number of elevators
+     * @param topFloor the top floor
+     * @param seed the seed of the building
+     * @param script the script
+     * @param setup sets up the building before it starts, e.g. its dispatch
+     * @return the building
+     */
+    static Building run(String name, int elevators, int topFloor, long seed, Script script,
+            Consumer<Building> setup) throws IOException, InterruptedException {
+        PrintStream console = System.out;
+        // the building reports every command on the standard output
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        try {
+            Building building = new Building(name, elevators, topFloor, Elevators.step, false, 0, true);
+            building.setPositionOutput(false);
+            building.setSeed(seed);
+            setup.accept(building);
+            building.loadScript(script.getPath());
+            building.start();
+            building.join();
+            return building;
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    /**
+     * Returns the metrics from the given name on, e.g. " zones ", in a line
+     * of metrics, or an empty string if there are none.
+     */
+    static String metrics(String stats, String from) {
+        int start = stats.indexOf(from);
+        return start < 0 ? "" : stats.substring(start + 1);
+    }
+
+    /**
+     * Returns the value after the given name in a line of metrics.
+     */
+    static String field(String stats, String name) {
+        String[] words = stats.trim().split(" ");
+        for (int i = 0; i + 1 < words.length; i++) {
+            if (words[i].equals(name)) {
+                return words[i + 1];
+            }
+        }
+        return "";
+    }
+}
@@ -0,0 +1,51 @@
+package elevator.demo;
+
+import elevator.PassengerTable;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the handling capacity of conventional hall buttons with the
+ * destination dispatch (see
+ * <code>elevator.ElevatorController.useDestinationDispatch</code>) in up-peak
+ * traffic. Generates random passengers, most of them going up from the lobby,
+ * and runs the same passengers as destination entries ("t <i>f target</i>")
+ * in a seeded building with a virtual clock in both modes. The handling
+ * capacity is the number of passengers delivered while passengers arrive,
+ * per five minutes; the waiting time is measured until boarding, the
+ * journey time until reaching the destination.
+ * <p>
+ * Usage: <code>java elevator.demo.DestinationComparison [elevators [topFloor [passengers [interval [seed]]]]]</code>
+ * <p>
+ * Defaults to 4 elevators, the top floor 15, 600 passengers at one every
+ * 1000 ms on average (85% up from the lobby, 10% down to the lobby, the rest
+ * between other floors), and the seed 1.
+ */
+public class DestinationComparison {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int elevators = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int topFloor = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 600;
+        int interval = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+        DemoRunner.Script script = DemoRunner.passengers(new Random(seed), count, interval, topFloor, 0.85, 0.1);
+        long end = script.getEnd();
+        System.out.println(count + " passengers in " + end / 1000 + " s, " + elevators + " elevators, "
+                + (topFloor + 1) + " floors, capacity " + PassengerTable.DEFAULT_CAPACITY);
+        System.out.println("mode         per 5 min  delivered  avg wait ms  max wait ms  avg journey ms");
+        for (boolean destination : new boolean[]{false, true}) {
+            long[] handled = new long[1];
+            PassengerTable passengers = DemoRunner.run(destination ? "destination" : "conventional",
+                    elevators, topFloor, seed, script, building -> {
+                        building.setDispatch("eta");
+                        building.useDestinationDispatch(destination);
+                        building.getSimulator().getClock().schedule(end,
+                                () -> handled[0] = building.getController().getPassengers().getDelivered());
+                    }).getController().getPassengers();
+            System.out.printf("%-12s %10d %10d %12d %12d %15d%n", destination ? "destination" : "conventional",
+                    handled[0] * 300000 / end, passengers.getDelivered(), passengers.getAverageWait(),
+                    passengers.getMaxWait(), passengers.getAverageJourney());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package elevator.demo;
+
+import elevator.Elevators;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that a seeded run with a virtual clock is deterministic. Generates
+ * random hall calls and car buttons, with every hall button pressed at once
+ * twice and elevator 1 stopped by its stop button after the first burst,
+ * and runs them twice as <code>java elevator.Elevators -headless -virtual
+ * -number <i>elevators</i> -top <i>topFloor</i> -seed <i>seed</i> -script
+ * <i>file</i></code> in a new process: as they are, with the batch dispatch,
+ * with the reassignment of pending calls and in the actor mode. Fails (exit
+ * status 1) if the two outputs of a setting differ, and prints the first
+ * line that differs.
+ * <p>
+ * Usage: <code>java elevator.demo.DeterminismCheck [elevators [topFloor [calls [seed]]]]</code>
+ * <p>
+ * Defaults to 4 elevators, the top floor 9, 300 random hall calls at one
+ * every 1250 ms on average and the seed 42.
+ */
+public class DeterminismCheck {
+
+    private static final String[][] SETTINGS = {
+        {},
+        {"-batch", "300"},
+        {"-dispatch", "eta", "-reassign", "3000"},
+        {"-actors", "2"}
+    };
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int elevators = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int topFloor = args.length > 1 ? Integer.parseInt(args[1]) : 9;
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        Random random = new Random(seed);
+        DemoRunner.Script script = new DemoRunner.Script("calls");
+        try {
+            long time = 0;
+            for (int i = 0; i < count; i++) {
+                time += random.nextInt(2500);
+                int floor = random.nextInt(topFloor + 1);
+                script.addHallCall(time, floor, floor == 0 ? 1 : floor == topFloor ? -1
+                        : random.nextBoolean() ? 1 : -1);
+                if (i % 7 == 0) {
+                    script.add(time, "p " + (1 + random.nextInt(elevators)) + " " + random.nextInt(topFloor + 1));
+                }
+                if (i == count / 3 || i == 2 * count / 3) {
+                    // every hall button, some of whose calls elevator 1 takes before it stops
+                    for (int f = 0; f <= topFloor; f++) {
+                        for (int d = f == 0 ? 1 : -1; d <= (f == topFloor ? -1 : 1); d += 2) {
+                            script.addHallCall(time, f, d);
+                        }
+                    }
+                    if (i == count / 3) {
+                        script.add(time, "p 1 " + Elevators.SPECIAL_FOR_STOP);
+                    }
+                }
+            }
+        } finally {
+            script.close();
+        }
+        System.out.println(script.getCommands() + " commands, " + elevators + " elevators, "
+                + (topFloor + 1) + " floors, seed " + seed);
+        System.out.println("options                        lines  identical");
+        boolean failed = false;
+        for (String[] setting : SETTINGS) {
+            List<String> command = new ArrayList<>(Arrays.asList(
+                    new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath(),
+                    "-cp", System.getProperty("java.class.path"), "elevator.Elevators", "-headless", "-virtual",
+                    "-number", String.valueOf(elevators), "-top", String.valueOf(topFloor),
+                    "-seed", String.valueOf(seed), "-script", script.getPath()));
+            command.addAll(Arrays.asList(setting));
+            String[] lines = run(command);
+            String[] others = run(command);
+            int differs = -1;
+            for (int i = 0; i < Math.max(lines.length, others.length) && differs < 0; i++) {
+                if (i >= lines.length || i >= others.length || !lines[i].equals(others[i])) {
+                    differs = i;
+                }
+            }
+            System.out.printf("%-30s %6d  %s%n", setting.length == 0 ? "-" : String.join(" ", setting),
+                    lines.length, differs < 0 ? "yes" : "no, from line " + (differs + 1) + ": "
+                    + (differs < lines.length ? lines[differs] : "(end)") + " | "
+                    + (differs < others.length ? others[differs] : "(end)"));
+            failed |= differs >= 0;
+        }
+        if (failed) {
+            System.out.println("FAILED: the runs with the same seed differ");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Runs the command and returns the lines of its standard output; its
+     * standard error is discarded.
+     */
+    private static String[] run(List<String> command) throws IOException, InterruptedException {
+        File errors = File.createTempFile("errors", ".txt");
+        errors.deleteOnExit();
+        Process process = new ProcessBuilder(command).redirectError(errors).start();
+        process.getOutputStream().close();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream input = process.getInputStream()) {
+            for (int n; (n = input.read(buffer)) > 0; ) {
+                output.write(buffer, 0, n);
+            }
+        }
+        if (process.waitFor() != 0) {
+            throw new IOException(command.get(3) + " exited with " + process.exitValue());
+        }
+        return output.toString().split("\n");
+    }
+}
@@ -0,0 +1,39 @@
+package elevator.demo;
+
+import elevator.HallCallTable;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the waiting times of hall calls under the dispatch strategies (see
+ * <code>elevator.DispatchStrategy</code>). Generates random hall calls and
+ * runs the same calls in a seeded building with a virtual clock for every
+ * strategy, so the runs are deterministic and take no more than a few
+ * seconds.
+ * <p>
+ * Usage: <code>java elevator.demo.DispatchComparison [elevators [topFloor [calls [seed]]]]</code>
+ * <p>
+ * Defaults to 4 elevators, the top floor 9, 200 hall calls at one every 2
+ * seconds on average, and the seed 1.
+ */
+public class DispatchComparison {
+
+    private static final String[] STRATEGIES = {"heuristic", "eta"};
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int elevators = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int topFloor = args.length > 1 ? Integer.parseInt(args[1]) : 9;
+        int calls = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        DemoRunner.Script script = DemoRunner.hallCalls(new Random(seed), calls, topFloor);
+        System.out.println(calls + " hall calls, " + elevators + " elevators, "
+                + (topFloor + 1) + " floors");
+        System.out.println("strategy   served  avg wait ms  max wait ms");
+        for (String strategy : STRATEGIES) {
+            HallCallTable hallCalls = DemoRunner.run(strategy, elevators, topFloor, seed, script,
+                    building -> building.setDispatch(strategy)).getController().getHallCalls();
+            System.out.printf("%-10s %6d %12d %12d%n", strategy, hallCalls.getServed(),
+                    hallCalls.getAverageWait(), hallCalls.getMaxWait());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package elevator.demo;
+
+import elevator.ElevatorController;
+import elevator.HallCallTable;
+import elevator.LookaheadDispatch;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the look-ahead dispatch (see
+ * <code>elevator.LookaheadDispatch</code>) with the ETA dispatch it starts
+ * from, and the latency of its decisions on the calling thread and on a
+ * worker pool, with the default budget of 2 ms and with a tight one.
+ * Generates random passengers, 40% up from the lobby, 30% down to the
+ * lobby and the rest between other floors, and runs the same passengers as
+ * destination entries ("t <i>f target</i>") with hall buttons in a seeded
+ * building with a virtual clock for every setting. Since the decisions are
+ * bounded by real time, the runs of the look-ahead dispatch may differ
+ * slightly from one another. The latencies leave out the first
+ * {@link LookaheadDispatch#WARMUP} decisions of a run, taken while the
+ * forecast is compiled.
+ * <p>
+ * Usage: <code>java elevator.demo.LookaheadComparison [elevators [topFloor [passengers [interval [seed]]]]]</code>
+ * <p>
+ * Defaults to 6 elevators, the top floor 19, 1500 passengers at one every
+ * 1500 ms on average and the seed 1.
+ */
+public class LookaheadComparison {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int elevators = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int topFloor = args.length > 1 ? Integer.parseInt(args[1]) : 19;
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 1500;
+        int interval = args.length > 3 ? Integer.parseInt(args[3]) : 1500;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+        DemoRunner.Script script = DemoRunner.passengers(new Random(seed), count, interval, topFloor, 0.4, 0.3);
+        int processors = Runtime.getRuntime().availableProcessors();
+        String[] settings = {"eta", "calling thread", processors + " workers",
+            processors + " workers, 100 us"};
+        System.out.println(count + " passengers in " + script.getEnd() / 1000 + " s, " + elevators
+                + " elevators, " + (topFloor + 1) + " floors");
+        System.out.println("dispatch                         avg wait ms  p95 ms  avg journey ms"
+                + "  p50 us  p90 us  p99 us  max us  overruns  overrides  skipped  fallbacks");
+        for (int setting = 0; setting < settings.length; setting++) {
+            int threads = setting == 1 ? 0 : processors;
+            long budget = setting == 3 ? 100000 : LookaheadDispatch.DEFAULT_BUDGET;
+            LookaheadDispatch[] lookahead = new LookaheadDispatch[1];
+            ElevatorController controller = DemoRunner.run(settings[setting], elevators, topFloor, seed, script,
+                    setting == 0 ? building -> building.setDispatch("eta") : building -> {
+                        lookahead[0] = new LookaheadDispatch(building.getSimulator().getVelocity(), threads);
+                        lookahead[0].setLimits(LookaheadDispatch.DEFAULT_HORIZON, budget);
+                        building.getController().setDispatchStrategy(lookahead[0]);
+                    }).getController();
+            HallCallTable hallCalls = controller.getHallCalls();
+            System.out.printf("%-32s %12d %7d %15d", setting == 0 ? "eta" : "lookahead, " + settings[setting],
+                    hallCalls.getAverageWait(), hallCalls.getPercentileWait(95),
+                    controller.getPassengers().getAverageJourney());
+            if (lookahead[0] != null) {
+                LookaheadDispatch dispatch = lookahead[0];
+                String stats = dispatch.getStats();
+                System.out.printf(" %7d %7d %7d %7d %9d %10s %8s %10s", dispatch.getPercentileLatency(50),
+                        dispatch.getPercentileLatency(90), dispatch.getPercentileLatency(99),
+                        dispatch.getMaxLatency(), dispatch.getOverruns(), DemoRunner.field(stats, "overrides"),
+                        DemoRunner.field(stats, "skipped"), DemoRunner.field(stats, "fallbacks"));
+            }
+            System.out.println();
+        }
+        System.out.println("latencies after the first " + LookaheadDispatch.WARMUP + " decisions of a run");
+    }
+}
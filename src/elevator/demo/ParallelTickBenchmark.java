@@ -0,0 +1,44 @@
+package elevator.demo;
+
+/**
+ * Compares sequential and parallel time steps (ticks) of the headless
+ * simulator for fleets of different sizes in a tall building, with all
+ * elevators kept moving as in {@link TickBenchmark}. A parallel tick pays for
+ * forking and joining tasks, so it only wins for large fleets; the threshold
+ * (the minimum number of elevators per chunk) keeps small fleets sequential.
+ * <p>
+ * Usage: <code>java elevator.demo.ParallelTickBenchmark [parallelism [threshold [topFloor [ticks [n1 n2 ...]]]]]</code>
+ * <p>
+ * Defaults to the number of available processors, a threshold of 1 (so that
+ * every fleet is stepped in parallel), the top floor 199, 20000 ticks and
+ * fleets of 10, 100 and 1000 elevators.
+ */
+public class ParallelTickBenchmark {
+
+    public static void main(String[] args) {
+        int parallelism = args.length > 0 ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        int threshold = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        int topFloor = args.length > 2 ? Integer.parseInt(args[2]) : 199;
+        int ticks = args.length > 3 ? Integer.parseInt(args[3]) : 20000;
+        int[] sizes = {10, 100, 1000};
+        if (args.length > 4) {
+            sizes = new int[args.length - 4];
+            for (int i = 4; i < args.length; i++) {
+                sizes[i - 4] = Integer.parseInt(args[i]);
+            }
+        }
+        // warm up the JIT with the largest fleet, both ways
+        int largest = sizes[sizes.length - 1];
+        TickBenchmark.run(largest, topFloor, ticks, 1, threshold);
+        TickBenchmark.run(largest, topFloor, ticks, parallelism, threshold);
+        System.out.println("parallelism " + parallelism + ", threshold " + threshold);
+        System.out.println("elevators  sequential ns/tick  parallel ns/tick  speedup");
+        for (int size : sizes) {
+            long sequential = TickBenchmark.run(size, topFloor, ticks, 1, threshold);
+            long parallel = TickBenchmark.run(size, topFloor, ticks, parallelism, threshold);
+            System.out.printf("%9d %19d %17d %8.2f%n", size, sequential / ticks,
+                    parallel / ticks, (double) sequential / parallel);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package elevator.demo;
+
+import elevator.ElevatorButton;
+import elevator.StopSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Compares the stop queue of an elevator kept as a sorted list (insert and
+ * sort, linear scans for duplicates and for the next stop, as the queue of
+ * an <code>Elevator</code> used to be) with a {@link StopSet}. Every round
+ * presses a random button (skipped if queued already), looks up the next stop
+ * above and below a random position, and removes the stop at that position
+ * if there is one, so the queues hold about half of the buttons.
+ * <p>
+ * Usage: <code>java elevator.demo.StopSetBenchmark [topFloor [rounds]]</code>
+ * <p>
+ * Defaults to the top floor 199 (200 floors) and 1000000 rounds.
+ */
+public class StopSetBenchmark {
+
+    private static final Comparator<ElevatorButton> BY_FLOOR
+            = (a, b) -> Integer.compare(a.getFloor(), b.getFloor());
+
+    public static void main(String[] args) {
+        int topFloor = args.length > 0 ? Integer.parseInt(args[0]) : 199;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        // warm up the JIT
+        runList(topFloor, rounds);
+        runStopSet(topFloor, rounds);
+        long list = runList(topFloor, rounds);
+        long stopSet = runStopSet(topFloor, rounds);
+        System.out.println((topFloor + 1) + " floors, " + rounds + " rounds");
+        System.out.println("queue     ns/round");
+        System.out.printf("list     %9.1f%n", (double) list / rounds);
+        System.out.printf("stop set %9.1f%n", (double) stopSet / rounds);
+        System.out.printf("speedup  %9.2f%n", (double) list / stopSet);
+    }
+
+    /**
+     * Runs the rounds on a sorted list and returns the time spent.
+     */
+    static long runList(int topFloor, int rounds) {
+        ArrayList<ElevatorButton> queue = new ArrayList<>();
+        Random random = new Random(topFloor);
+        long found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            ElevatorButton button = randomButton(random, topFloor);
+            boolean queued = false;
+            for (ElevatorButton other : queue) {
+                if (other.getFloor() == button.getFloor() && other.getDir() == button.getDir()) {
+                    queued = true;
+                    break;
+                }
+            }
+            if (!queued) {
+                queue.add(button);
+                Collections.sort(queue, BY_FLOOR);
+            }
+            double position = random.nextDouble() * topFloor;
+            ElevatorButton up = null;
+            for (ElevatorButton other : queue) {
+                if (up != null && other.getFloor() > up.getFloor()) {
+                    break;
+                }
+                if (other.getFloor() > position) {
+                    up = other;
+                }
+            }
+            ElevatorButton down = null;
+            for (ElevatorButton other : queue) {
+                if (other.getFloor() < position) {
+                    down = other;
+                }
+            }
+            found += (up != null ? 1 : 0) + (down != null ? 1 : 0);
+            ElevatorButton removed = up != null ? up : down;
+            if (removed != null && random.nextBoolean()) {
+                queue.remove(removed);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        if (found < 0) {
+            System.out.println(found);
+        }
+        return nanos;
+    }
+
+    /**
+     * Runs the rounds on a stop set and returns the time spent.
+     */
+    static long runStopSet(int topFloor, int rounds) {
+        StopSet<ElevatorButton> queue = new StopSet<>(topFloor);
+        Random random = new Random(topFloor);
+        long found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            ElevatorButton button = randomButton(random, topFloor);
+            queue.add(button, button.getFloor(), button.getDir());
+            double position = random.nextDouble() * topFloor;
+            ElevatorButton up = queue.above(position, topFloor);
+            ElevatorButton down = queue.below(position, topFloor);
+            found += (up != null ? 1 : 0) + (down != null ? 1 : 0);
+            ElevatorButton removed = up != null ? up : down;
+            if (removed != null && random.nextBoolean()) {
+                queue.remove(removed, removed.getFloor(), removed.getDir());
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        if (found < 0) {
+            System.out.println(found);
+        }
+        return nanos;
+    }
+
+    private static ElevatorButton randomButton(Random random, int topFloor) {
+        int floor = random.nextInt(topFloor + 1);
+        int dir = floor == 0 ? 1 : floor == topFloor ? -1 : random.nextBoolean() ? 1 : -1;
+        return new ElevatorButton(floor, dir, false);
+    }
+}
@@ -0,0 +1,127 @@
+package elevator.demo;
+
+import elevator.ElevatorController;
+import elevator.Elevators;
+import elevator.HallCallTable;
+import elevator.HallCallTable.HallCall;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that the hall calls of a stopped elevator are taken by the other
+ * elevators. Generates random hall calls, with every hall button pressed at
+ * once in the middle, runs them in a seeded building with a virtual clock
+ * once as they are and once with elevator 1 stopped by its stop button right
+ * after these calls, and fails (exit status 1) if in the second run the
+ * stopped elevator has handed no call back to the dispatch, a call is still
+ * assigned to it a second after the stop, a call has been lost, i.e. the
+ * served calls and the presses merged into a pending call do not add up to
+ * the scripted calls, a call is still pending at the end, or the longest
+ * wait exceeds the bound.
+ * <p>
+ * Usage: <code>java elevator.demo.StopUnderLoad [elevators [topFloor [calls [seed [bound]]]]]</code>
+ * <p>
+ * Defaults to 4 elevators, the top floor 9, 200 random hall calls at one
+ * every 2 seconds on average, the seed 1 and a bound of {@link #BOUND} ms.
+ */
+public class StopUnderLoad {
+
+    /**
+     * The default bound of the longest wait in milliseconds
+     */
+    public static final long BOUND = 30000;
+    /**
+     * The time after the stop by which its calls must have been moved, in
+     * milliseconds
+     */
+    private static final long REASSIGNED = 1000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int elevators = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int topFloor = args.length > 1 ? Integer.parseInt(args[1]) : 9;
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        Random random = new Random(seed);
+        DemoRunner.Script script = new DemoRunner.Script("calls");
+        DemoRunner.Script stopped = new DemoRunner.Script("stop");
+        long stop = 0;
+        try {
+            long time = 0;
+            for (int i = 0; i < count; i++) {
+                time += random.nextInt(4000);
+                int floor = random.nextInt(topFloor + 1);
+                int dir = floor == 0 ? 1 : floor == topFloor ? -1 : random.nextBoolean() ? 1 : -1;
+                if (i == count / 2) {
+                    // every hall button, some of whose calls elevator 1 takes before it stops
+                    for (int f = 0; f <= topFloor; f++) {
+                        for (int d = f == 0 ? 1 : -1; d <= (f == topFloor ? -1 : 1); d += 2) {
+                            script.addHallCall(time, f, d);
+                            stopped.addHallCall(time, f, d);
+                        }
+                    }
+                    stopped.add(time, "p 1 " + Elevators.SPECIAL_FOR_STOP);
+                    stop = time;
+                }
+                script.addHallCall(time, floor, dir);
+                stopped.addHallCall(time, floor, dir);
+            }
+        } finally {
+            script.close();
+            stopped.close();
+        }
+        int scripted = script.getCommands();
+        PrintStream console = System.out;
+        console.println(scripted + " hall calls, " + elevators + " elevators, "
+                + (topFloor + 1) + " floors");
+        console.println("run        served  merged  pending  drained  avg wait ms  max wait ms");
+        ElevatorController all = DemoRunner.run("all", elevators, topFloor, seed, script, building -> {
+        }).getController();
+        // the calls still assigned to the stopped elevator a moment after the stop
+        List<HallCall> kept = new ArrayList<>();
+        long check = stop + REASSIGNED;
+        ElevatorController one = DemoRunner.run("stop", elevators, topFloor, seed, stopped,
+                building -> building.getSimulator().getClock().schedule(check, () -> {
+                    for (HallCall call : building.getController().getHallCalls().getPendingCalls()) {
+                        if (call.getCar() == 1) {
+                            kept.add(call);
+                        }
+                    }
+                })).getController();
+        print(console, "all", all);
+        print(console, "1 stopped", one);
+        long bound = args.length > 4 ? Long.parseLong(args[4]) : BOUND;
+        HallCallTable calls = one.getHallCalls();
+        if (one.getDrainedCalls() == 0) {
+            console.println("FAILED: the stopped elevator has handed no call back");
+            System.exit(1);
+        }
+        if (!kept.isEmpty()) {
+            console.println("FAILED: " + kept.size() + " calls are still assigned to the stopped elevator "
+                    + REASSIGNED + " ms after the stop");
+            System.exit(1);
+        }
+        if (calls.getPending() != 0) {
+            console.println("FAILED: " + calls.getPending() + " calls have not been served");
+            System.exit(1);
+        }
+        if (calls.getServed() + calls.getMerged() != scripted) {
+            console.println("FAILED: " + (scripted - calls.getServed() - calls.getMerged())
+                    + " calls have been lost");
+            System.exit(1);
+        }
+        if (calls.getMaxWait() > bound) {
+            console.println("FAILED: the longest wait must not exceed " + bound + " ms");
+            System.exit(1);
+        }
+        console.println("OK");
+    }
+
+    private static void print(PrintStream console, String name, ElevatorController controller) {
+        HallCallTable calls = controller.getHallCalls();
+        console.printf("%-10s %6d %7d %8d %8d %12d %12d%n", name, calls.getServed(), calls.getMerged(),
+                calls.getPending(), controller.getDrainedCalls(), calls.getAverageWait(), calls.getMaxWait());
+    }
+}
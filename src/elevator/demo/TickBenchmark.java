@@ -0,0 +1,106 @@
+package elevator.demo;
+
+import elevator.Elevator;
+import elevator.ElevatorSimulator;
+import elevator.Elevators;
+import elevator.FleetState;
+import elevator.WallClock;
+import java.util.Arrays;
+
+/**
+ * Measures the cost of one time step (tick) of the headless simulator for
+ * fleets of different sizes in a tall building. All elevators are kept moving
+ * (they bounce between the bottom and the top floor) and all doors are kept
+ * opening or closing, which is the worst case for a tick. The cost per tick
+ * should grow linearly with the number of elevators, i.e. the cost per tick
+ * and elevator should stay about the same.
+ * <p>
+ * Usage: <code>java elevator.demo.TickBenchmark [-fixed] [topFloor [ticks [n1 n2 ...]]]</code>
+ * <p>
+ * With <code>-fixed</code>, positions are fixed-point numbers (see
+ * <code>FleetState</code>).
+ * <p>
+ * Defaults to the top floor 199 (200 floors), 20000 ticks and fleets of 10,
+ * 30, 100, 300 and 1000 elevators.
+ */
+public class TickBenchmark {
+
+    private static final int BATCH = 100;
+    private static boolean fixed = false;
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("-fixed")) {
+            fixed = true;
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        int topFloor = args.length > 0 ? Integer.parseInt(args[0]) : 199;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int[] sizes = {10, 30, 100, 300, 1000};
+        if (args.length > 2) {
+            sizes = new int[args.length - 2];
+            for (int i = 2; i < args.length; i++) {
+                sizes[i - 2] = Integer.parseInt(args[i]);
+            }
+        }
+        // warm up the JIT with the largest fleet
+        run(sizes[sizes.length - 1], topFloor, ticks);
+        System.out.println("elevators  ns/tick  ns/tick/elevator");
+        for (int size : sizes) {
+            long nanos = run(size, topFloor, ticks);
+            System.out.printf("%9d %8d %10.1f%n", size, nanos / ticks,
+                    (double) nanos / ticks / size);
+        }
+    }
+
+    /**
+     * Runs the given number of ticks and returns the time spent in ticks.
+     */
+    static long run(int size, int topFloor, int ticks) {
+        return run(size, topFloor, ticks, 1, ElevatorSimulator.DefaultThreshold);
+    }
+
+    /**
+     * Runs the given number of ticks with the given parallelism and threshold
+     * (see <code>ElevatorSimulator.setParallelism</code>) and returns the time
+     * spent in ticks.
+     */
+    static long run(int size, int topFloor, int ticks, int parallelism, int threshold) {
+        FleetState fleet = new FleetState(size, topFloor, fixed);
+        Elevator[] elevators = new Elevator[size];
+        for (int i = 0; i < size; i++) {
+            elevators[i] = new Elevator(fleet, i + 1);
+            elevators[i].Setpos(i % topFloor);
+            elevators[i].Setdir(i % 2 == 0 ? Elevators.UP : Elevators.DOWN);
+            elevators[i].Setdoor(Elevators.OPEN);
+        }
+        ElevatorSimulator simulator = new ElevatorSimulator(elevators, fleet,
+                Elevators.step, 0, new WallClock());
+        simulator.setPositionOutput(false);
+        simulator.setParallelism(parallelism, threshold);
+        long nanos = 0;
+        for (int done = 0; done < ticks; done += BATCH) {
+            long start = System.nanoTime();
+            for (int i = 0; i < BATCH; i++) {
+                simulator.tick();
+            }
+            nanos += System.nanoTime() - start;
+            keepMoving(elevators);
+        }
+        return nanos;
+    }
+
+    /**
+     * Reverses the elevators that have stopped at the bottom or the top floor
+     * and the doors that are completely open or closed.
+     */
+    static void keepMoving(Elevator[] elevators) {
+        for (Elevator elevator : elevators) {
+            if (elevator.Getdir() == Elevators.STOP) {
+                elevator.Setdir(elevator.Getpos() < 1 ? Elevators.UP : Elevators.DOWN);
+            }
+            if (elevator.Getdoor() == Elevators.STOP) {
+                elevator.Setdoor(elevator.Getdoorstat() == 0 ? Elevators.OPEN : Elevators.CLOSE);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package elevator.demo;
+
+import elevator.ElevatorController;
+import elevator.HallCallTable;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the adaptive dispatch (see <code>elevator.AdaptiveDispatch</code>)
+ * with the fixed strategies on a synthetic day: a morning up-peak (85% of
+ * the passengers go up from the lobby), inter-floor traffic at midday (70%
+ * between other floors) and an evening down-peak (85% go down to the
+ * lobby), each phase as long and with passengers arriving at the same
+ * average interval. The passengers are destination entries ("t <i>f
+ * target</i>") with conventional buttons, run in a seeded building with a
+ * virtual clock for every strategy. The waiting times of the hall calls
+ * are reported for each phase, by the time the calls are served.
+ * <p>
+ * Usage: <code>java elevator.demo.TrafficModeComparison [elevators [topFloor [phaseMinutes [interval [seed]]]]]</code>
+ * <p>
+ * Defaults to 4 elevators, the top floor 15, phases of 20 minutes, a
+ * passenger every 4000 ms on average and the seed 1.
+ */
+public class TrafficModeComparison {
+
+    private static final String[] STRATEGIES = {"heuristic", "eta", "adaptive"};
+    private static final String[] PHASES = {"up-peak", "inter-floor", "down-peak"};
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int elevators = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int topFloor = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+        long phase = (args.length > 2 ? Integer.parseInt(args[2]) : 20) * 60000L;
+        int interval = args.length > 3 ? Integer.parseInt(args[3]) : 4000;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+        Random random = new Random(seed);
+        DemoRunner.Script script = new DemoRunner.Script("day");
+        try {
+            for (long time = random.nextInt(2 * interval); time < PHASES.length * phase;
+                    time += random.nextInt(2 * interval)) {
+                int kind = (int) (time / phase);
+                double share = random.nextDouble();
+                int floor = 1 + random.nextInt(topFloor);
+                int target;
+                if (kind == 0 && share < 0.85 || kind == 1 && share < 0.15) {
+                    target = floor;
+                    floor = 0;
+                } else if (kind == 2 && share < 0.85 || kind == 1 && share < 0.3) {
+                    target = 0;
+                } else {
+                    do {
+                        target = 1 + random.nextInt(topFloor);
+                    } while (target == floor);
+                }
+                script.addPassenger(time, floor, target);
+            }
+        } finally {
+            script.close();
+        }
+        System.out.println(script.getCommands() + " passengers in " + PHASES.length + " phases of "
+                + phase / 60000 + " min, " + elevators + " elevators, " + (topFloor + 1) + " floors");
+        System.out.printf("%-10s %13s %13s %13s %13s  %s%n", "strategy", "up-peak ms", "inter-floor ms",
+                "down-peak ms", "all ms", "metrics");
+        for (String strategy : STRATEGIES) {
+            long[] served = new long[PHASES.length + 1];
+            long[] waited = new long[PHASES.length + 1];
+            ElevatorController controller = DemoRunner.run(strategy, elevators, topFloor, seed, script,
+                    building -> {
+                        building.setDispatch(strategy);
+                        HallCallTable hallCalls = building.getController().getHallCalls();
+                        for (int i = 1; i < PHASES.length; i++) {
+                            int end = i;
+                            building.getSimulator().getClock().schedule(i * phase, () -> {
+                                served[end] = hallCalls.getServed();
+                                waited[end] = hallCalls.getServed() * hallCalls.getAverageWait();
+                            });
+                        }
+                    }).getController();
+            HallCallTable hallCalls = controller.getHallCalls();
+            served[PHASES.length] = hallCalls.getServed();
+            waited[PHASES.length] = hallCalls.getServed() * hallCalls.getAverageWait();
+            System.out.printf("%-10s", strategy);
+            for (int i = 1; i <= PHASES.length; i++) {
+                long calls = served[i] - served[i - 1];
+                System.out.printf(" %13d", calls == 0 ? 0 : (waited[i] - waited[i - 1]) / calls);
+            }
+            System.out.printf(" %13d  %s%n", hallCalls.getAverageWait(),
+                    DemoRunner.metrics(controller.getStats(), " traffic "));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package elevator.demo;
+
+import elevator.Building;
+import elevator.ElevatorController;
+import elevator.Elevators;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares platform and virtual threads for the blocking controller: presses
+ * many hall buttons at once, each handled on its own thread as a click in the
+ * GUI is (see <code>ElevatorController.dispatch</code>), in a building with
+ * many elevators, so that a queue worker blocks for every busy elevator. The
+ * benchmark reports the time until all buttons are handled and the largest
+ * number of controller threads alive at the same time.
+ * <p>
+ * Usage: <code>java elevator.demo.VirtualThreadBenchmark [calls [elevators [topFloor]]]</code>
+ * <p>
+ * Defaults to 10000 hall calls, 1000 elevators and the top floor 99. Virtual
+ * threads require Java 21 or later; with an older runtime, both runs use
+ * platform threads.
+ */
+public class VirtualThreadBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int elevators = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int topFloor = args.length > 2 ? Integer.parseInt(args[2]) : 99;
+        if (!ElevatorController.isVirtualThreadsAvailable()) {
+            System.out.println("virtual threads are not available in Java "
+                    + System.getProperty("java.version") + ", using platform threads");
+        }
+        PrintStream console = System.out;
+        console.println(calls + " hall calls, " + elevators + " elevators");
+        console.println("threads   handled ms  peak threads");
+        for (boolean virtual : new boolean[]{false, true}) {
+            // the controller reports every button on the standard output
+            System.setOut(new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+            }));
+            long[] result;
+            try {
+                result = run(calls, elevators, topFloor, virtual);
+            } finally {
+                System.setOut(console);
+            }
+            console.printf("%-8s %11d %13d%n", virtual ? "virtual" : "platform",
+                    result[0], result[1]);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Presses the given number of random hall buttons at once and returns the
+     * time in milliseconds until all are handled and the largest number of
+     * live controller threads.
+     */
+    static long[] run(int calls, int elevators, int topFloor, boolean virtual)
+            throws InterruptedException {
+        Building building = new Building(virtual ? "virtual" : "platform", elevators,
+                topFloor, Elevators.step, false, 0, false);
+        building.setPositionOutput(false);
+        building.useVirtualThreads(virtual);
+        building.start();
+        ElevatorController controller = building.getController();
+        Random random = new Random(calls);
+        CountDownLatch handled = new CountDownLatch(calls);
+        long[] peak = new long[1];
+        Thread sampler = new Thread(() -> {
+            while (handled.getCount() > 0) {
+                peak[0] = Math.max(peak[0], controller.getLiveThreads());
+                Thread.yield();
+            }
+        });
+        sampler.setDaemon(true);
+        sampler.start();
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            int floor = random.nextInt(topFloor + 1);
+            int dir = floor == 0 ? 1 : floor == topFloor ? -1 : random.nextBoolean() ? 1 : -1;
+            controller.dispatch(() -> {
+                try {
+                    controller.pressButton(floor, dir);
+                } finally {
+                    handled.countDown();
+                }
+            });
+        }
+        handled.await();
+        long millis = (System.nanoTime() - start) / 1000000;
+        sampler.join();
+        peak[0] = Math.max(peak[0], controller.getLiveThreads());
+        building.halt();
+        return new long[]{millis, peak[0]};
+    }
+}
@@ -0,0 +1,92 @@
+package elevator.demo;
+
+import elevator.ElevatorController;
+import elevator.PassengerTable;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the zoned dispatch (see <code>elevator.ZonedDispatch</code>) with
+ * the ETA dispatch in a tall building, with hall buttons and with the
+ * destination dispatch. Generates random passengers, 60% up from the
+ * lobby, 25% down to the lobby and the rest between other floors. The load
+ * shifts halfway: in the first half, three quarters of the floors above the
+ * lobby the passengers travel from or to are in the lower half of the
+ * building, in the second half in the upper half. The same passengers run
+ * as destination entries ("t <i>f target</i>") in a seeded building with a
+ * virtual clock for every mode. The handling capacity is the number of
+ * passengers delivered while passengers arrive, per five minutes; the
+ * waiting time is measured until boarding, the journey time until reaching
+ * the destination.
+ * <p>
+ * Usage: <code>java elevator.demo.ZonedComparison [elevators [topFloor [passengers [interval [seed]]]]]</code>
+ * <p>
+ * Defaults to 12 elevators, the top floor 59, 3000 passengers at one every
+ * 600 ms on average and the seed 1.
+ */
+public class ZonedComparison {
+
+    private static final String[] STRATEGIES = {"eta", "zoned"};
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int elevators = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+        int topFloor = args.length > 1 ? Integer.parseInt(args[1]) : 59;
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 3000;
+        int interval = args.length > 3 ? Integer.parseInt(args[3]) : 600;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+        Random random = new Random(seed);
+        DemoRunner.Script script = new DemoRunner.Script("passengers");
+        try {
+            long time = 0;
+            for (int i = 0; i < count; i++) {
+                time += random.nextInt(2 * interval);
+                boolean lower = random.nextDouble() < 0.75 == i < count / 2;
+                int floor = 0;
+                int target = floor(random, topFloor, lower);
+                double kind = random.nextDouble();
+                if (kind >= 0.85) {
+                    floor = floor(random, topFloor, lower);
+                    do {
+                        target = 1 + random.nextInt(topFloor);
+                    } while (target == floor);
+                } else if (kind >= 0.6) {
+                    floor = target;
+                    target = 0;
+                }
+                script.addPassenger(time, floor, target);
+            }
+        } finally {
+            script.close();
+        }
+        long end = script.getEnd();
+        System.out.println(count + " passengers in " + end / 1000 + " s, " + elevators + " elevators, "
+                + (topFloor + 1) + " floors, capacity " + PassengerTable.DEFAULT_CAPACITY);
+        System.out.println("strategy mode          per 5 min  delivered  avg wait ms  avg journey ms  metrics");
+        for (boolean destination : new boolean[]{false, true}) {
+            for (String strategy : STRATEGIES) {
+                long[] handled = new long[1];
+                ElevatorController controller = DemoRunner.run(strategy, elevators, topFloor, seed, script,
+                        building -> {
+                            building.setDispatch(strategy);
+                            building.useDestinationDispatch(destination);
+                            building.getSimulator().getClock().schedule(end,
+                                    () -> handled[0] = building.getController().getPassengers().getDelivered());
+                        }).getController();
+                PassengerTable passengers = controller.getPassengers();
+                System.out.printf("%-8s %-12s %10d %10d %12d %15d  %s%n", strategy,
+                        destination ? "destination" : "conventional", handled[0] * 300000 / end,
+                        passengers.getDelivered(), passengers.getAverageWait(), passengers.getAverageJourney(),
+                        DemoRunner.metrics(controller.getStats(), " zones "));
+            }
+        }
+    }
+
+    /**
+     * Returns a random floor above the lobby in the lower or the upper half
+     * of the building.
+     */
+    private static int floor(Random random, int topFloor, boolean lower) {
+        int half = (topFloor + 1) / 2;
+        return lower ? 1 + random.nextInt(half) : 1 + half + random.nextInt(topFloor - half);
+    }
+}
@@ -21,7 +21,8 @@ import elevator.rmi.IllegalParamException;
 /**
  * The helper class <code>PositionListener</code> that implements the
  * <code>java.awt.event.ActionListener</code> interface for receiving action
- * events from an the elevator timer and create an action event
+ * events from an the elevator timer (or the simulation thread of a headless
+ * Elevators) and create an action event
  * with a current position of one elevator with a given  number or all elevators
  * (special case).
  * An object with the <code>PositionListener</code> class forwards the
@@ -58,7 +59,8 @@ public class PositionListener implements ActionListener {
     this.listener = listener;
     this.number = number;
     timer = ElevatorGUI.timer;
-    if (timer != null) timer.addActionListener(this);
+    if (Elevators.simulator != null) Elevators.simulator.addActionListener(this);
+    else if (timer != null) timer.addActionListener(this);
     if (number == numberOfElevators)
       newPositions = oldPositions = io.whereAre();
     else newPosition = oldPosition = io.whereIs(number + 1);
@@ -110,7 +112,8 @@ public class PositionListener implements ActionListener {
   private void removePositionListener() {
     System.err.println("Got RemoteException while calling back to a position listener");
     System.err.println("Removing the listener");
-    timer.removeActionListener(this);
+    if (Elevators.simulator != null) Elevators.simulator.removeActionListener(this);
+    else timer.removeActionListener(this);
     listener = null; // hopefully will be gc-ed also
   }
 }
\ No newline at end of file